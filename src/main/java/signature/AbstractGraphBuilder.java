@@ -1,22 +1,50 @@
 package signature;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 
 /**
  * Class to reconstruct a graph from a signature string (or a colored tree).
  * 
+ * A signature can be read straight into the graph, without a colored tree,
+ * with {@link #makeFromSignature(CharSequence)}. The builder keeps its
+ * {@link SignatureParser} from one signature to the next, so building many
+ * graphs with the same builder only makes each vertex symbol and edge label
+ * into a string once.
+ * 
  * @author maclean
  *
  */
 public abstract class AbstractGraphBuilder {
     
-    private Map<Integer, Integer> colorToVertexIndexMap;
+    /**
+     * The vertex made for each color, or -1 if there is none yet
+     */
+    private int[] colorToVertexIndex;
+    
+    /**
+     * The largest color that has a vertex, so that only the colors up to it
+     * are cleared
+     */
+    private int maxColor;
     
     private int vertexCount;
     
+    private SignatureParser parser;
+    
+    /**
+     * The vertex and vertex symbol code for each node of a signature, as it
+     * is read
+     */
+    private int[] nodeVertexIndices;
+    
+    private int[] nodeSymbolCodes;
+    
     public AbstractGraphBuilder() {
-        this.colorToVertexIndexMap = new HashMap<Integer, Integer>();
+        this.colorToVertexIndex = new int[16];
+        Arrays.fill(colorToVertexIndex, -1);
+        this.maxColor = -1;
         this.vertexCount = 0;
     }
     
@@ -25,39 +53,145 @@ public abstract class AbstractGraphBuilder {
         ColoredTree.Node root = tree.getRoot();
         this.makeVertex(root.label);
         this.vertexCount = 1;
-        for (ColoredTree.Node child : root.children) {
-            this.makeFromColoredTreeNode(root, child, 0);
+        
+        // the nodes still to make, each with the index of its parent vertex,
+        // in the same depth-first order as the string
+        Deque<ColoredTree.Node> nodes = new ArrayDeque<ColoredTree.Node>();
+        Deque<Integer> parentIndices = new ArrayDeque<Integer>();
+        for (int i = root.children.size() - 1; i >= 0; i--) {
+            nodes.push(root.children.get(i));
+            parentIndices.push(0);
+        }
+        while (!nodes.isEmpty()) {
+            ColoredTree.Node node = nodes.pop();
+            int vertexIndex = this.makeVertexForNode(node.label, node.color);
+            int parentIndex = parentIndices.pop();
+            this.makeEdge(parentIndex, vertexIndex,
+                    node.parent.label, node.label, node.edgeLabel);
+            for (int i = node.children.size() - 1; i >= 0; i--) {
+                nodes.push(node.children.get(i));
+                parentIndices.push(vertexIndex);
+            }
         }
         
         // Important! resets so that the builder can be used again
-        this.vertexCount = 0;
-        colorToVertexIndexMap.clear();
+        reset();
+    }
+    
+    /**
+     * Make the graph for a signature string in one pass over the text, with
+     * no colored tree in between.
+     * 
+     * @param signature the signature string
+     */
+    public void makeFromSignature(CharSequence signature) {
+        this.makeGraph();
+        try {
+            getParser().parse(signature, new NodeVisitor());
+        } finally {
+            reset();
+        }
+    }
+    
+    /**
+     * Make the graph for a signature string from the bytes of its text, one
+     * byte per character.
+     * 
+     * @param signature the signature string, as bytes
+     */
+    public void makeFromSignature(byte[] signature) {
+        this.makeGraph();
+        try {
+            getParser().parse(signature, new NodeVisitor());
+        } finally {
+            reset();
+        }
+    }
+    
+    /**
+     * Make the graph for a signature in the binary form of a
+     * {@link SignatureCodec}.
+     * 
+     * @param encodedSignature the binary form of the signature
+     * @param codec the codec that encoded it
+     */
+    public void makeFromSignature(byte[] encodedSignature, SignatureCodec codec) {
+        makeFromSignature(codec.decode(encodedSignature));
     }
     
-    private void makeFromColoredTreeNode(
-            ColoredTree.Node parent, ColoredTree.Node node, int parentIndex) {
-        int vertexIndex;
-        if (node.isColored()) {
-            if (this.colorToVertexIndexMap.containsKey(node.color)) {
-                vertexIndex = this.colorToVertexIndexMap.get(node.color);
+    private SignatureParser getParser() {
+        if (parser == null) {
+            parser = new SignatureParser();
+            nodeVertexIndices = new int[16];
+            nodeSymbolCodes = new int[16];
+        }
+        return parser;
+    }
+    
+    /**
+     * Makes the vertex and the edge to its parent as each node is read.
+     */
+    private class NodeVisitor implements SignatureVisitor {
+        
+        public void visitNode(int nodeIndex, int parentIndex, int height,
+                int vertexSymbolCode, int edgeLabelCode, int color) {
+            if (nodeIndex == nodeVertexIndices.length) {
+                nodeVertexIndices = Arrays.copyOf(nodeVertexIndices, nodeIndex * 2);
+                nodeSymbolCodes = Arrays.copyOf(nodeSymbolCodes, nodeIndex * 2);
+            }
+            String symbol = parser.getVertexSymbol(vertexSymbolCode);
+            int vertexIndex;
+            if (parentIndex == -1) {
+                // as in a colored tree, the root is never colored
+                vertexIndex = makeVertexForNode(symbol, -1);
             } else {
-                this.makeVertex(node.label);
-                this.vertexCount++;
-                vertexIndex = this.vertexCount - 1;
-                this.colorToVertexIndexMap.put(node.color, vertexIndex);
+                vertexIndex = makeVertexForNode(symbol, color);
+                makeEdge(nodeVertexIndices[parentIndex], vertexIndex,
+                        parser.getVertexSymbol(nodeSymbolCodes[parentIndex]),
+                        symbol, parser.getEdgeLabel(edgeLabelCode));
             }
-        } else {
-            this.makeVertex(node.label);
-            this.vertexCount++;
-            vertexIndex = this.vertexCount - 1;
+            nodeVertexIndices[nodeIndex] = vertexIndex;
+            nodeSymbolCodes[nodeIndex] = vertexSymbolCode;
         }
-        
-        this.makeEdge(parentIndex, vertexIndex, parent.label, node.label, node.edgeLabel);
-        for (ColoredTree.Node child : node.children) {
-            this.makeFromColoredTreeNode(node, child, vertexIndex);
+    }
+    
+    /**
+     * Make the vertex for a node - unless it is colored, and the vertex for
+     * its color is already made.
+     * 
+     * @param label the label of the node
+     * @param color the color of the node, or -1
+     * @return the index of the vertex for the node
+     */
+    private int makeVertexForNode(String label, int color) {
+        if (color != -1) {
+            if (color >= colorToVertexIndex.length) {
+                int oldLength = colorToVertexIndex.length;
+                colorToVertexIndex = Arrays.copyOf(
+                        colorToVertexIndex, Math.max(color + 1, oldLength * 2));
+                Arrays.fill(colorToVertexIndex, oldLength,
+                        colorToVertexIndex.length, -1);
+            }
+            int vertexIndex = colorToVertexIndex[color];
+            if (vertexIndex == -1) {
+                this.makeVertex(label);
+                vertexIndex = this.vertexCount++;
+                colorToVertexIndex[color] = vertexIndex;
+                maxColor = Math.max(maxColor, color);
+            }
+            return vertexIndex;
+        } else {
+            this.makeVertex(label);
+            return this.vertexCount++;
         }
     }
     
+    private void reset() {
+        this.vertexCount = 0;
+        Arrays.fill(colorToVertexIndex, 0, maxColor + 1, -1);
+        maxColor = -1;
+    }
+    
     /**
      * Make the initial, empty, graph to be filled. It is up to the 
      * implementing class to store the graph instance.
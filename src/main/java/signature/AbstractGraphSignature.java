@@ -1,10 +1,15 @@
 package signature;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * A signature for an entire graph.
@@ -27,6 +32,16 @@ public abstract class AbstractGraphSignature {
     
     private String graphSignature; // XXX
     
+    /**
+     * If not null, the vertex signatures are made as separate tasks on this
+     */
+    private Executor executor;
+    
+    /**
+     * The counts of the roots looked at by the last canonical string
+     */
+    private volatile RootSelectionStatistics rootSelectionStatistics;
+    
     /**
      * Create a graph signature with a default separator.
      */
@@ -72,6 +87,107 @@ public abstract class AbstractGraphSignature {
         return this.height;
     }
     
+    /**
+     * Set an executor to make the vertex signatures with. Each vertex is a 
+     * separate task, and the results are put back in vertex order, so the
+     * strings, classes, and labels are the same as without an executor.
+     * 
+     * @param executor the executor to use, or null to work sequentially
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+    
+    public Executor getExecutor() {
+        return executor;
+    }
+    
+    /**
+     * A computation for a single vertex of the graph.
+     */
+    private interface VertexFunction<T> {
+        
+        public T compute(int vertexIndex);
+        
+    }
+    
+    /**
+     * Compute a result for each vertex, either in turn or - if there is an
+     * executor - as separate tasks.
+     * 
+     * @param function the computation to run for each vertex
+     * @return the results in vertex order
+     */
+    private <T> List<T> computeForVertices(final VertexFunction<T> function) {
+        int vertexCount = getVertexCount();
+        List<T> results = new ArrayList<T>(vertexCount);
+        if (executor == null) {
+            for (int i = 0; i < vertexCount; i++) {
+                results.add(function.compute(i));
+            }
+            return results;
+        }
+        
+        List<FutureTask<T>> tasks = new ArrayList<FutureTask<T>>(vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            final int vertexIndex = i;
+            FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+                public T call() {
+                    return function.compute(vertexIndex);
+                }
+            });
+            tasks.add(task);
+            executor.execute(task);
+        }
+        for (FutureTask<T> task : tasks) {
+            try {
+                results.add(task.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                        "interrupted while making vertex signatures", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                } else {
+                    throw new IllegalStateException(cause);
+                }
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Make the canonical signature string for each vertex, at the height 
+     * this graph signature was created with.
+     * 
+     * @return the strings in vertex order
+     */
+    private List<String> computeSignatureStrings() {
+        return computeForVertices(new VertexFunction<String>() {
+            public String compute(int vertexIndex) {
+                return signatureStringForVertex(vertexIndex);
+            }
+        });
+    }
+    
+    /**
+     * Make the canonical signature string for each vertex, at a height.
+     * 
+     * @param height the height of the signatures
+     * @return the strings in vertex order
+     */
+    private List<String> computeSignatureStrings(final int height) {
+        return computeForVertices(new VertexFunction<String>() {
+            public String compute(int vertexIndex) {
+                return signatureStringForVertex(vertexIndex, height);
+            }
+        });
+    }
+    
     /**
      * Get the vertex count of the graph that this is the signature of.
      * 
@@ -109,20 +225,62 @@ public abstract class AbstractGraphSignature {
      */
     public abstract AbstractVertexSignature signatureForVertex(int vertexIndex);
     
+    /**
+     * Get the symbol of a vertex, as the root of its signature would print
+     * it. This is used to choose the roots that can give the canonical string
+     * without canonizing them, so implementations that return null (the 
+     * default) have every vertex canonized.
+     * 
+     * @param vertexIndex the vertex index
+     * @return the vertex symbol, or null if it is not known
+     */
+    protected String getVertexSymbol(int vertexIndex) {
+        return null;
+    }
+    
+    /**
+     * Get the number of vertices connected to a vertex. This is only used if
+     * {@link #getVertexSymbol(int)} is implemented.
+     * 
+     * @param vertexIndex the vertex index
+     * @return the degree of the vertex
+     */
+    protected int getVertexDegree(int vertexIndex) {
+        return 0;
+    }
+    
     /**
      * Run through the vertices of the graph, generating a signature string for
      * each vertex, and return the one that is lexicographically minimal.
      * 
+     * At full height, not every vertex is canonized. Each root has a key - 
+     * the start of its signature string, which is its symbol and whether it
+     * has any children - that is known before any search, and a root whose 
+     * key is greater than the smallest key cannot give the minimal string.
+     * Without an executor, the roots that are left are also taken in order
+     * and skipped if an automorphism found while canonizing an earlier root
+     * maps them onto it, as in {@link #getSymmetryClasses(int)}. 
+     * 
+     * The searches of all the roots - in turn, or as tasks on the executor -
+     * share one {@link CanonicalBound}, the smallest root string so far. A
+     * root is cut as soon as one of its leaves is greater than the bound,
+     * as the string of the root would be too. The counts of the roots that
+     * were skipped and cut are kept (see {@link #getRootSelectionStatistics()}).
+     * 
      * @return the lexicographically minimal vertex string
      */
     public String toCanonicalString() {
         String canonicalString = null;
-        for (int i = 0; i < this.getVertexCount(); i++) {
-            String signatureString = this.signatureStringForVertex(i);
-            if (canonicalString == null ||
-                    canonicalString.compareTo(signatureString) > 0) {
-                canonicalString = signatureString; 
+        if (height != -1) {
+            RootSelectionStatistics statistics = new RootSelectionStatistics();
+            statistics.addRoots(getVertexCount());
+            for (String signatureString : computeSignatureStrings()) {
+                statistics.addCanonizedRoot();
+                canonicalString = minimum(canonicalString, signatureString);
             }
+            this.rootSelectionStatistics = statistics;
+        } else {
+            canonicalString = canonizeRoots(new CanonicalBound()).getSignature();
         }
         if (canonicalString == null) {
             return "";
@@ -131,6 +289,156 @@ public abstract class AbstractGraphSignature {
         }
     }
     
+    /**
+     * Canonize the roots that can give the canonical string at full height,
+     * with one bound shared between all their searches.
+     * 
+     * @param bound the bound, which ends up with the canonical string
+     * @return the bound
+     */
+    private CanonicalBound canonizeRoots(final CanonicalBound bound) {
+        RootSelectionStatistics statistics = new RootSelectionStatistics();
+        statistics.addRoots(getVertexCount());
+        final boolean[] candidates = selectCandidateRoots(statistics);
+        if (executor == null) {
+            canonizeRootsByOrbit(candidates, bound, statistics);
+        } else {
+            List<String> signatureStrings = computeForVertices(
+                    new VertexFunction<String>() {
+                public String compute(int vertexIndex) {
+                    if (!candidates[vertexIndex]) {
+                        return null;
+                    }
+                    AbstractVertexSignature signature = 
+                        signatureForVertex(vertexIndex);
+                    String signatureString = 
+                        signature.toBoundedCanonicalString(bound);
+                    signature.release();
+                    return signatureString;
+                }
+            });
+            for (int i = 0; i < signatureStrings.size(); i++) {
+                if (candidates[i]) {
+                    statistics.addCanonizedRoot();
+                    if (signatureStrings.get(i) == null) {
+                        statistics.addBoundCutRoot();
+                    }
+                }
+            }
+        }
+        this.rootSelectionStatistics = statistics;
+        return bound;
+    }
+    
+    /**
+     * Get the counts of the roots that the last canonization (by 
+     * {@link #toCanonicalString()}, {@link #toCanonicalResult()} or a 
+     * canonical hash) canonized and skipped.
+     * 
+     * @return the statistics, or null if there has been no call yet
+     */
+    public RootSelectionStatistics getRootSelectionStatistics() {
+        return rootSelectionStatistics;
+    }
+    
+    private static String minimum(String canonicalString, String signatureString) {
+        if (canonicalString == null ||
+                canonicalString.compareTo(signatureString) > 0) {
+            return signatureString;
+        } else {
+            return canonicalString;
+        }
+    }
+    
+    /**
+     * Get the start of the signature string of a vertex, as far as it is 
+     * fixed before the search : the root node, and the bracket before its 
+     * children if it has any. This is a prefix of the full height signature
+     * string, so a root whose key is greater than another's - and not just
+     * longer - has a greater string. A key that is a proper prefix of 
+     * another is only possible for a root with no children, whose key is its
+     * whole string, so that is smaller too.
+     * 
+     * @param vertexIndex the vertex index
+     * @return the key, or null if the vertex symbol is not known
+     */
+    private String getRootKey(int vertexIndex) {
+        String symbol = getVertexSymbol(vertexIndex);
+        if (symbol == null) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(symbol.length() + 3);
+        key.append(AbstractVertexSignature.START_NODE_SYMBOL);
+        key.append(symbol);
+        key.append(AbstractVertexSignature.END_NODE_SYMBOL);
+        if (getVertexDegree(vertexIndex) > 0) {
+            key.append(AbstractVertexSignature.START_BRANCH_SYMBOL);
+        }
+        return key.toString();
+    }
+    
+    /**
+     * Find the roots that have the smallest key.
+     * 
+     * @param statistics the counts to add the skipped roots to
+     * @return true for each vertex that has to be canonized
+     */
+    private boolean[] selectCandidateRoots(RootSelectionStatistics statistics) {
+        int n = getVertexCount();
+        boolean[] candidates = new boolean[n];
+        String[] keys = new String[n];
+        String bestKey = null;
+        for (int i = 0; i < n; i++) {
+            keys[i] = getRootKey(i);
+            if (keys[i] == null) {
+                Arrays.fill(candidates, true);
+                return candidates;
+            }
+            bestKey = minimum(bestKey, keys[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            candidates[i] = keys[i].equals(bestKey);
+            if (!candidates[i]) {
+                statistics.addKeySkippedRoot();
+            }
+        }
+        return candidates;
+    }
+    
+    /**
+     * Canonize the candidate roots in order, skipping any that the 
+     * automorphisms found so far put in the orbit of an earlier root. Since
+     * an automorphism keeps the key of a vertex, every vertex in the orbit
+     * of a candidate is a candidate too. The automorphisms of a root that is
+     * cut are still used, as every one that was found is real.
+     * 
+     * @param candidates the roots that can give the canonical string
+     * @param bound the bound that gets the smallest signature string
+     * @param statistics the counts to add the roots to
+     */
+    private void canonizeRootsByOrbit(boolean[] candidates, 
+            CanonicalBound bound, RootSelectionStatistics statistics) {
+        int n = getVertexCount();
+        OrbitPartition orbits = new OrbitPartition(n);
+        for (int i = 0; i < n; i++) {
+            if (!candidates[i]) continue;
+            if (orbits.find(i) != i) {
+                statistics.addOrbitSkippedRoot();
+                continue;
+            }
+            AbstractVertexSignature signature = signatureForVertex(i);
+            String signatureString = signature.toBoundedCanonicalString(bound);
+            for (int[] automorphism : signature.getAutomorphisms(n)) {
+                orbits.addAutomorphism(automorphism);
+            }
+            signature.release();
+            statistics.addCanonizedRoot();
+            if (signatureString == null) {
+                statistics.addBoundCutRoot();
+            }
+        }
+    }
+    
     /**
      * For all the vertices in the graph, get the signature string and group the
      * resulting list of strings into symmetry classes. All vertices in one
@@ -143,25 +451,131 @@ public abstract class AbstractGraphSignature {
         return getSymmetryClasses(-1);
     }
         
+    /**
+     * Group the vertices into symmetry classes by their signature strings at
+     * a height. At full height (-1), and without an executor, only one vertex
+     * of each orbit is canonized : the automorphisms found while canonizing 
+     * a vertex are added to an {@link OrbitPartition}, and the vertices they
+     * put in the same orbit as one already canonized are skipped. Vertices 
+     * in different orbits that turn out to have the same string are joined.
+     * 
+     * @param height the height of the signatures, or -1 for full height
+     * @return a list of symmetry classes, in order of their first vertices
+     */
     public List<SymmetryClass> getSymmetryClasses(int height) {
+        if (height == -1 && executor == null) {
+            return getSymmetryClassesFromOrbits();
+        }
         List<SymmetryClass> symmetryClasses = new ArrayList<SymmetryClass>();
+        Map<String, SymmetryClass> classesBySignature = 
+            new HashMap<String, SymmetryClass>();
+        List<String> signatureStrings = computeSignatureStrings(height);
         for (int i = 0; i < this.getVertexCount(); i++) {
-            String signatureString = this.signatureStringForVertex(i, height);
-            SymmetryClass foundClass = null;
-            for (SymmetryClass symmetryClass : symmetryClasses) {
-                if (symmetryClass.hasSignature(signatureString)) {
-                    foundClass = symmetryClass;
-                    break;
-                }
-            }
+            String signatureString = signatureStrings.get(i);
+            SymmetryClass foundClass = classesBySignature.get(signatureString);
             if (foundClass == null) {
                 foundClass = new SymmetryClass(signatureString);
                 symmetryClasses.add(foundClass);
+                classesBySignature.put(signatureString, foundClass);
             } 
             foundClass.addIndex(i);
         }
         return symmetryClasses;
     }
+    
+    /**
+     * Make the symmetry classes by canonizing one vertex from each orbit.
+     * 
+     * @return a list of symmetry classes, in order of their first vertices
+     */
+    private List<SymmetryClass> getSymmetryClassesFromOrbits() {
+        int n = getVertexCount();
+        OrbitPartition orbits = new OrbitPartition(n);
+        String[] signatureStrings = new String[n];
+        joinOrbitsBySignature(orbits, signatureStrings);
+        
+        List<SymmetryClass> symmetryClasses = new ArrayList<SymmetryClass>();
+        SymmetryClass[] classesByRoot = new SymmetryClass[n];
+        for (int i = 0; i < n; i++) {
+            int root = orbits.find(i);
+            if (classesByRoot[root] == null) {
+                classesByRoot[root] = new SymmetryClass(signatureStrings[root]);
+                symmetryClasses.add(classesByRoot[root]);
+            }
+            classesByRoot[root].addIndex(i);
+        }
+        return symmetryClasses;
+    }
+    
+    /**
+     * Join the orbits of the vertices that have the same signature string at
+     * full height, so that the orbits are the symmetry classes. The vertices
+     * are taken in order, and the orbits are joined with the smallest vertex
+     * as the root, so a vertex that is still the root of its orbit has no 
+     * vertex with a string in that orbit yet. Such a vertex is canonized if 
+     * its string is not known, and the automorphisms found are added to the
+     * orbits, so that the other vertices they reach are skipped. Every root 
+     * at the end has a string.
+     * 
+     * @param orbits the orbits found so far, which are joined
+     * @param signatureStrings the strings known so far, or null for each
+     *        vertex that has not been canonized - which are filled in
+     */
+    private void joinOrbitsBySignature(
+            OrbitPartition orbits, String[] signatureStrings) {
+        int n = signatureStrings.length;
+        Map<String, Integer> firstWithSignature = new HashMap<String, Integer>();
+        for (int i = 0; i < n; i++) {
+            if (orbits.find(i) != i) continue;
+            if (signatureStrings[i] == null) {
+                AbstractVertexSignature signature = signatureForVertex(i);
+                signatureStrings[i] = signature.toCanonicalString();
+                for (int[] automorphism : signature.getAutomorphisms(n)) {
+                    orbits.addAutomorphism(automorphism);
+                }
+                signature.release();
+            }
+            Integer other = firstWithSignature.get(signatureStrings[i]);
+            if (other == null) {
+                firstWithSignature.put(signatureStrings[i], i);
+            } else {
+                orbits.union(i, other);
+            }
+        }
+    }
+    
+    /**
+     * Canonize, with the executor, the vertices that are the root of their 
+     * orbit and whose signature string is not known.
+     * 
+     * @param orbits the orbits found so far
+     * @param signatureStrings the strings known so far, which are filled in
+     */
+    private void computeOrbitRootSignatures(
+            OrbitPartition orbits, final String[] signatureStrings) {
+        final boolean[] missing = new boolean[signatureStrings.length];
+        for (int i = 0; i < missing.length; i++) {
+            missing[i] = signatureStrings[i] == null && orbits.find(i) == i;
+        }
+        List<String> computed = computeForVertices(
+                new VertexFunction<String>() {
+            public String compute(int vertexIndex) {
+                if (!missing[vertexIndex]) {
+                    return null;
+                }
+                AbstractVertexSignature signature = 
+                    signatureForVertex(vertexIndex);
+                String signatureString = signature.toCanonicalString();
+                signature.release();
+                return signatureString;
+            }
+        });
+        for (int i = 0; i < missing.length; i++) {
+            if (missing[i]) {
+                signatureStrings[i] = computed.get(i);
+            }
+        }
+    }
 
     /**
      * Generate signature strings for each vertex of the graph, and count up
@@ -172,8 +586,7 @@ public abstract class AbstractGraphSignature {
      */
     public String toFullString() {
         Map<String, Integer> sigmap = new HashMap<String, Integer>(); 
-        for (int i = 0; i < this.getVertexCount(); i++) {
-            String signatureString = this.signatureStringForVertex(i);
+        for (String signatureString : computeSignatureStrings()) {
             if (sigmap.containsKey(signatureString)) {
                 int count = sigmap.get(signatureString);
                 sigmap.put(signatureString, count + 1);
@@ -196,6 +609,62 @@ public abstract class AbstractGraphSignature {
         return buffer.toString();
     }
     
+    /**
+     * Get a 64 bit hash of the canonical string (see {@link SignatureHash}).
+     * 
+     * @return the hash of {@link #toCanonicalString()}
+     */
+    public long canonicalHash64() {
+        return canonicalHash128()[0];
+    }
+    
+    /**
+     * Get a 128 bit hash of the canonical string. At full height, the roots
+     * are searched as in {@link #toCanonicalString()}, but their leaves are
+     * hashed as they are written, and the hash of the winning leaf is used
+     * rather than hashing the finished string again.
+     * 
+     * @return the hash of {@link #toCanonicalString()}, as the high and low
+     * longs
+     */
+    public long[] canonicalHash128() {
+        if (height != -1) {
+            return SignatureHash.hash128(toCanonicalString());
+        }
+        long[] hash = canonizeRoots(new CanonicalBound(true)).getHash128();
+        return (hash == null)? SignatureHash.hash128("") : hash;
+    }
+    
+    /**
+     * Get a 64 bit hash of the multiset of vertex signature strings - which 
+     * is what {@link #toFullString()} prints - without sorting or counting
+     * the strings.
+     * 
+     * @return the hash of the vertex signatures
+     */
+    public long fullHash64() {
+        List<String> signatureStrings = computeSignatureStrings();
+        long[] hashes = new long[signatureStrings.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = SignatureHash.hash64(signatureStrings.get(i));
+        }
+        return SignatureHash.multisetHash64(hashes);
+    }
+    
+    /**
+     * Get a 128 bit hash of the multiset of vertex signature strings.
+     * 
+     * @return the hash of the vertex signatures, as the high and low longs
+     */
+    public long[] fullHash128() {
+        List<String> signatureStrings = computeSignatureStrings();
+        long[][] hashes = new long[signatureStrings.size()][];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = SignatureHash.hash128(signatureStrings.get(i));
+        }
+        return SignatureHash.multisetHash128(hashes);
+    }
+    
     /**
      * Use the lexicographically largest (or smallest) as the graph signature
      */
@@ -228,11 +697,7 @@ public abstract class AbstractGraphSignature {
      * @return a list of canonical signature strings
      */
     public List<String> getVertexSignatureStrings() {
-        List<String> vertexSignatures = new ArrayList<String>();
-        for (int i = 0; i < this.getVertexCount(); i++) {
-            vertexSignatures.add(this.signatureStringForVertex(i));
-        }
-        return vertexSignatures;
+        return computeSignatureStrings();
     }
     
     /**
@@ -242,12 +707,12 @@ public abstract class AbstractGraphSignature {
      * @return a list of vertex signatures
      */
     public List<AbstractVertexSignature> getVertexSignatures() {
-        List<AbstractVertexSignature> signatures = 
-            new ArrayList<AbstractVertexSignature>();
-        for (int i = 0; i < this.getVertexCount(); i++) {
-            signatures.add(this.signatureForVertex(i));
-        }
-        return signatures;
+        return computeForVertices(
+                new VertexFunction<AbstractVertexSignature>() {
+            public AbstractVertexSignature compute(int vertexIndex) {
+                return signatureForVertex(vertexIndex);
+            }
+        });
     }
     
     /**
@@ -274,32 +739,186 @@ public abstract class AbstractGraphSignature {
     public void reconstructCanonicalGraph(
             AbstractVertexSignature signature, AbstractGraphBuilder builder) {
         String canonicalString = this.toCanonicalString();
-        ColoredTree tree = AbstractVertexSignature.parse(canonicalString);
-        builder.makeFromColoredTree(tree);
+        builder.makeFromSignature(canonicalString);
     }
     
     public int[] getCanonicalLabels() {
         int n = getVertexCount();
-        AbstractVertexSignature canonicalSignature = null;
+        List<String> signatureStrings = computeForVertices(
+                new VertexFunction<String>() {
+            public String compute(int vertexIndex) {
+                AbstractVertexSignature signature =
+                    unprunedSignatureForVertex(vertexIndex);
+                String signatureString = signature.toCanonicalString();
+                signature.release();
+                return signatureString;
+            }
+        });
+        int canonicalVertex = -1;
         String canonicalSignatureString = null;
         for (int i = 0; i < n; i++) {
-            AbstractVertexSignature signatureForVertexI = signatureForVertex(i);
-            String signatureString = signatureForVertexI.toCanonicalString();
-            if (canonicalSignature == null ||
+            String signatureString = signatureStrings.get(i);
+            if (canonicalVertex == -1 ||
                     signatureString.compareTo(canonicalSignatureString) < 0) {
-                canonicalSignature = signatureForVertexI;
+                canonicalVertex = i;
                 canonicalSignatureString = signatureString;
             }
         }
-        return canonicalSignature.getCanonicalLabelling(n);
+        
+        // repeat the search for the chosen vertex, rather than keeping the
+        // signatures for every vertex until the end
+        AbstractVertexSignature canonicalSignature = 
+            unprunedSignatureForVertex(canonicalVertex);
+        canonicalSignature.toCanonicalString();
+        int[] labels = canonicalSignature.getCanonicalLabelling(n);
+        canonicalSignature.release();
+        return labels;
+    }
+    
+    /**
+     * Canonize the graph once, getting the canonical string, a canonical 
+     * labelling, the root the string is for, and the orbits of the vertices.
+     * The roots are chosen, skipped and cut as in {@link #toCanonicalString()},
+     * and the labels come from the canonical leaf of the winning root, so no
+     * search has to be repeated.
+     * 
+     * The vertices are labelled in the order they first appear in the 
+     * canonical string, which is not the same labelling as 
+     * {@link #getCanonicalLabels()}. The orbits are the symmetry classes at
+     * full height : the vertices with the same signature string. The strings
+     * of the roots that were not cut are used, together with the 
+     * automorphisms their searches found; then each vertex that is still the 
+     * root of its orbit, and whose string is not known, is canonized in full
+     * - as for {@link #getSymmetryClasses()}. The signatures are made at full
+     * height, whatever the height of this graph signature, and the 
+     * {@link #getRootSelectionStatistics()} only count the first part.
+     * 
+     * @return the result of the canonization
+     */
+    public CanonicalResult toCanonicalResult() {
+        final int n = getVertexCount();
+        if (n == 0) {
+            return new CanonicalResult(
+                    "", -1, new int[0], new int[0], new ArrayList<int[]>());
+        }
+        final CanonicalBound bound = new CanonicalBound();
+        RootSelectionStatistics statistics = new RootSelectionStatistics();
+        statistics.addRoots(n);
+        final boolean[] candidates = selectCandidateRoots(statistics);
+        final boolean[] canonized = new boolean[n];
+        final OrbitPartition orbits = new OrbitPartition(n);
+        final List<List<int[]>> rootAutomorphisms = 
+            new ArrayList<List<int[]>>();
+        List<CanonicalResult> results;
+        if (executor == null) {
+            results = new ArrayList<CanonicalResult>();
+            for (int i = 0; i < n; i++) {
+                rootAutomorphisms.add(null);
+                if (!candidates[i] || orbits.find(i) != i) {
+                    if (candidates[i]) {
+                        statistics.addOrbitSkippedRoot();
+                    }
+                    results.add(null);
+                    continue;
+                }
+                AbstractVertexSignature signature = signatureForVertex(i);
+                results.add(signature.toBoundedCanonicalResult(n, bound));
+                canonized[i] = true;
+                for (int[] automorphism : signature.getAutomorphisms(n)) {
+                    orbits.addAutomorphism(automorphism);
+                }
+                signature.release();
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                rootAutomorphisms.add(null);
+                canonized[i] = candidates[i];
+            }
+            results = computeForVertices(
+                    new VertexFunction<CanonicalResult>() {
+                public CanonicalResult compute(int vertexIndex) {
+                    if (!candidates[vertexIndex]) {
+                        return null;
+                    }
+                    AbstractVertexSignature signature = 
+                        signatureForVertex(vertexIndex);
+                    CanonicalResult result = 
+                        signature.toBoundedCanonicalResult(n, bound);
+                    if (result != null) {
+                        List<int[]> automorphisms = 
+                            signature.getAutomorphisms(n);
+                        synchronized (rootAutomorphisms) {
+                            rootAutomorphisms.set(vertexIndex, automorphisms);
+                        }
+                    }
+                    signature.release();
+                    return result;
+                }
+            });
+        }
+        
+        // the first root with the smallest string is always canonized, and
+        // never cut, so it is the winner that a search of every root finds
+        CanonicalResult winner = null;
+        for (int i = 0; i < n; i++) {
+            CanonicalResult result = results.get(i);
+            if (canonized[i]) {
+                statistics.addCanonizedRoot();
+                if (result == null) {
+                    statistics.addBoundCutRoot();
+                }
+            }
+            if (result != null && (winner == null || result.getSignature()
+                    .compareTo(winner.getSignature()) < 0)) {
+                winner = result;
+            }
+        }
+        this.rootSelectionStatistics = statistics;
+        
+        String[] signatureStrings = new String[n];
+        for (int i = 0; i < n; i++) {
+            CanonicalResult result = results.get(i);
+            if (result != null) {
+                signatureStrings[i] = result.getSignature();
+            }
+            if (rootAutomorphisms.get(i) != null) {
+                for (int[] automorphism : rootAutomorphisms.get(i)) {
+                    orbits.addAutomorphism(automorphism);
+                }
+            }
+        }
+        if (executor != null) {
+            computeOrbitRootSignatures(orbits, signatureStrings);
+        }
+        joinOrbitsBySignature(orbits, signatureStrings);
+        
+        int[] orbitRepresentatives = new int[n];
+        for (int i = 0; i < n; i++) {
+            orbitRepresentatives[i] = orbits.find(i);
+        }
+        return new CanonicalResult(winner.getSignature(), winner.getRoot(), 
+                winner.getLabels(), orbitRepresentatives, 
+                winner.getAutomorphisms());
+    }
+    
+    /**
+     * Make a signature for a vertex that searches every branch. The labelling
+     * depends on the order that the whole search leaves the DAG in, so no
+     * branches can be skipped.
+     * 
+     * @param vertexIndex the vertex to use
+     * @return a signature that does not use automorphisms
+     */
+    private AbstractVertexSignature unprunedSignatureForVertex(int vertexIndex) {
+        AbstractVertexSignature signature = signatureForVertex(vertexIndex);
+        signature.setUsingAutomorphisms(false);
+        return signature;
     }
     
     public String reconstructCanonicalEdgeString() {
         String canonicalString = this.toCanonicalString();
         VirtualGraphBuilder builder = new VirtualGraphBuilder();
-        
-        builder.makeFromColoredTree(
-                AbstractVertexSignature.parse(canonicalString));
+        builder.makeFromSignature(canonicalString);
         return builder.toEdgeString();
     }
  
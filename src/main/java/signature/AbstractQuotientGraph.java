@@ -1,6 +1,7 @@
 package signature;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -84,6 +85,20 @@ public abstract class AbstractQuotientGraph {
     
     public abstract boolean isConnected(int i, int j);
     
+    /**
+     * Get the neighbours of a vertex in the original graph, in increasing 
+     * order. If this is available, the quotient graph is constructed with a 
+     * single pass over the edges; otherwise, every pair of vertices is tested
+     * with {@link #isConnected(int, int)}, which is much slower for large
+     * graphs.
+     * 
+     * @param vertexIndex the index of a vertex in the original graph
+     * @return the neighbours, or null if they are not available
+     */
+    public int[] getConnected(int vertexIndex) {
+        return null;
+    }
+    
     public List<String> getVertexSignatureStrings() {
         List<String> signatureStrings = new ArrayList<String>();
         for (Vertex vertex : vertices) {
@@ -102,6 +117,73 @@ public abstract class AbstractQuotientGraph {
             vertices.add(new Vertex(members, signatureString));
         }
         
+        if (!symmetryClasses.isEmpty() 
+                && getConnected(symmetryClasses.get(0).iterator().next()) != null) {
+            constructFromEdges(symmetryClasses);
+        } else {
+            constructFromPairs(symmetryClasses);
+        }
+    }
+    
+    /**
+     * Make the edges by giving each vertex the index of its class, and then
+     * counting the edges between each pair of classes in one pass over the
+     * edges of the graph.
+     * 
+     * @param symmetryClasses the classes that are the quotient vertices
+     */
+    private void constructFromEdges(List<SymmetryClass> symmetryClasses) {
+        int vertexCount = 0;
+        for (SymmetryClass symmetryClass : symmetryClasses) {
+            for (int x : symmetryClass) {
+                vertexCount = Math.max(vertexCount, x + 1);
+            }
+        }
+        int[] classIndices = new int[vertexCount];
+        Arrays.fill(classIndices, -1);
+        for (int i = 0; i < symmetryClasses.size(); i++) {
+            for (int x : symmetryClasses.get(i)) {
+                classIndices[x] = i;
+            }
+        }
+        
+        // each edge is seen from its lower vertex, and parallel edges or 
+        // loops are not counted - the same as with isConnected
+        ClassPairCounts counts = new ClassPairCounts();
+        long classCount = symmetryClasses.size();
+        for (int x = 0; x < vertexCount; x++) {
+            int classX = classIndices[x];
+            if (classX == -1) continue;
+            int[] connected = getConnected(x);
+            int previous = x;
+            for (int y : connected) {
+                if (y <= previous || y >= vertexCount) continue;
+                previous = y;
+                int classY = classIndices[y];
+                if (classY == -1) continue;
+                int i = Math.min(classX, classY);
+                int j = Math.max(classX, classY);
+                counts.increment(i * classCount + j);
+            }
+        }
+        
+        // the class pairs are in the same order as they would be by pairs
+        long[] classPairs = counts.getKeys();
+        Arrays.sort(classPairs);
+        for (long classPair : classPairs) {
+            int i = (int) (classPair / classCount);
+            int j = (int) (classPair % classCount);
+            edges.add(new Edge(i, j, counts.get(classPair)));
+        }
+    }
+    
+    /**
+     * Make the edges by testing every pair of vertices in every pair of 
+     * classes for a connection.
+     * 
+     * @param symmetryClasses the classes that are the quotient vertices
+     */
+    private void constructFromPairs(List<SymmetryClass> symmetryClasses) {
         // compare all vertices (classwise) for connectivity
         List<Edge> visitedEdges = new ArrayList<Edge>();
         for (int i = 0; i < symmetryClasses.size(); i++) {
@@ -138,6 +220,74 @@ public abstract class AbstractQuotientGraph {
         return false;
     }
     
+    /**
+     * A map from a pair of classes (as one long) to the number of edges 
+     * between them, using open addressing on arrays rather than boxed keys.
+     */
+    private static class ClassPairCounts {
+        
+        private long[] keys;
+        
+        private int[] counts;
+        
+        private int size;
+        
+        public ClassPairCounts() {
+            keys = new long[16];
+            counts = new int[16];
+        }
+        
+        private int find(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (key ^ (key >>> 32)) * 0x9E3779B9 & mask;
+            while (counts[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+        
+        public void increment(long key) {
+            int slot = find(key);
+            if (counts[slot] == 0) {
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot]++;
+            if (size * 2 > keys.length) {
+                grow();
+            }
+        }
+        
+        public int get(long key) {
+            return counts[find(key)];
+        }
+        
+        public long[] getKeys() {
+            long[] keysInUse = new long[size];
+            int k = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (counts[slot] != 0) {
+                    keysInUse[k++] = keys[slot];
+                }
+            }
+            return keysInUse;
+        }
+        
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldCounts.length * 2];
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldCounts[slot] != 0) {
+                    int newSlot = find(oldKeys[slot]);
+                    keys[newSlot] = oldKeys[slot];
+                    counts[newSlot] = oldCounts[slot];
+                }
+            }
+        }
+    }
+    
     public String toString() {
         StringBuffer buffer = new StringBuffer();
         int i = 0;
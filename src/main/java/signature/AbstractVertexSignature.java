@@ -2,10 +2,10 @@ package signature;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * The base class for signatures that are created from a vertex of a graph. A
@@ -43,17 +43,78 @@ public abstract class AbstractVertexSignature {
     private int vertexCount;
     
     /**
-     * Mapping between the vertex indices in the original graph and the vertex   
-     * indices stored in the Nodes. This is necessary for signatures with a
-     * height less than the graph diameter. It is also the order in which the
-     * vertices were visited to make the DAG.
+     * Mapping from the vertex indices in the original graph to the vertex   
+     * indices stored in the Nodes, or -1 for vertices that are not in the
+     * signature. This is necessary for signatures with a height less than the
+     * graph diameter. It belongs to the workspace, and is only held while the
+     * DAG is built.
      */
-    private Map<Integer, Integer> vertexMapping;
+    private int[] internalIndices;
+    
+    /**
+     * The inverse of the mapping, from the vertex indices stored in the Nodes
+     * to the vertex indices in the original graph. This is also the order in
+     * which the vertices were visited to make the DAG.
+     */
+    private int[] originalIndices;
+    
+    /**
+     * The table of vertex symbols, and the code in it of the symbol of each
+     * vertex (by internal index). The symbols are only looked up once, when
+     * the signature is made; after that the DAG is sorted by the codes, and
+     * the strings are only needed to print.
+     */
+    private SymbolTable vertexSymbols;
+    
+    private int[] vertexSymbolCodes;
+    
+    /**
+     * The table of edge labels, and the code in it of the label of each arc 
+     * of the DAG (by arc index)
+     */
+    private SymbolTable edgeLabels;
+    
+    private int[] arcLabelCodes;
+    
+    /**
+     * The label of each arc, only kept while the DAG is built from the 
+     * string labels (when there is no accessor)
+     */
+    private String[] arcLabelBuffer;
+    
+    /**
+     * The int view of the graph that the DAG is built from, or null to use
+     * the methods that give arrays and strings
+     */
+    private GraphAccessor accessor;
     
     public enum InvariantType { STRING, INTEGER };
     
     private InvariantType invariantType;
     
+    /**
+     * If true, automorphisms found during canonization are used to skip
+     * equivalent branches of the search
+     */
+    private boolean usingAutomorphisms;
+    
+    /**
+     * The number of levels of the search that are split into parallel tasks,
+     * when canonizing with a pool
+     */
+    private int parallelDepth;
+    
+    /**
+     * The counts for the last canonization
+     */
+    private CanonizationStatistics statistics;
+    
+    /**
+     * The automorphisms found by the last canonization, as permutations of 
+     * the internal vertex indices
+     */
+    private List<int[]> foundAutomorphisms;
+    
     /**
      * Create an abstract vertex signature.
      */
@@ -70,6 +131,46 @@ public abstract class AbstractVertexSignature {
     public AbstractVertexSignature(InvariantType invariantType) {
         this.vertexCount = 0;
         this.invariantType = invariantType;
+        this.usingAutomorphisms = true;
+        this.parallelDepth = 1;
+        this.statistics = new CanonizationStatistics();
+    }
+    
+    /**
+     * Set whether automorphisms are used to prune the canonization search.
+     * 
+     * @param usingAutomorphisms if false, every branch is searched
+     */
+    public void setUsingAutomorphisms(boolean usingAutomorphisms) {
+        this.usingAutomorphisms = usingAutomorphisms;
+    }
+    
+    public boolean isUsingAutomorphisms() {
+        return usingAutomorphisms;
+    }
+    
+    /**
+     * Set the number of levels of the search tree that are split into tasks
+     * by {@link #toCanonicalString(ForkJoinPool)}.
+     * 
+     * @param parallelDepth the number of levels, at least one
+     */
+    public void setParallelDepth(int parallelDepth) {
+        this.parallelDepth = parallelDepth;
+    }
+    
+    public int getParallelDepth() {
+        return parallelDepth;
+    }
+    
+    /**
+     * Get the counts of leaves, automorphisms and pruned branches for the
+     * last canonization.
+     * 
+     * @return the statistics of the search
+     */
+    public CanonizationStatistics getStatistics() {
+        return statistics;
     }
     
     /**
@@ -88,13 +189,10 @@ public abstract class AbstractVertexSignature {
      * @return the vertex index in the original graph
      */
     public int getOriginalVertexIndex(int vertexIndex) {
-        for (int originalVertexIndex : vertexMapping.keySet()) {
-            int internalVertexIndex = vertexMapping.get(originalVertexIndex);
-            if (internalVertexIndex == vertexIndex) {
-                return originalVertexIndex;
-            }
+        if (vertexIndex < 0 || vertexIndex >= vertexCount) {
+            return -1;
         }
-        return -1;
+        return originalIndices[vertexIndex];
     }
 
     /**
@@ -124,13 +222,32 @@ public abstract class AbstractVertexSignature {
      */
     public void create(int rootVertexIndex, int graphVertexCount, int height) {
         this.height = height;
-        vertexMapping = new HashMap<Integer, Integer>();
-        vertexMapping.put(rootVertexIndex, 0);
-        dag = new DAG(0, graphVertexCount);
+        SignatureWorkspace workspace = SignatureWorkspace.getWorkspace();
+        internalIndices = workspace.getInternalIndices(graphVertexCount);
+        originalIndices = new int[Math.min(16, graphVertexCount)];
+        internalIndices[rootVertexIndex] = 0;
+        originalIndices[0] = rootVertexIndex;
+        dag = workspace.acquireDAG(0, graphVertexCount);
         vertexCount = 1;
-        build(1, dag.getRootLayer(), new ArrayList<DAG.Arc>(), height);
+        accessor = getGraphAccessor();
+        arcLabelCodes = new int[16];
+        if (accessor == null) {
+            arcLabelBuffer = new String[arcLabelCodes.length];
+        }
+        try {
+            build(workspace.getUsedArcs(), 
+                    workspace.getLayerNodes(graphVertexCount), height);
+        } finally {
+            // only the entries for the vertices that were reached are cleared
+            for (int i = 0; i < vertexCount; i++) {
+                internalIndices[originalIndices[i]] = -1;
+            }
+            internalIndices = null;
+        }
+        createEdgeLabelCodes();
+        createVertexSymbolCodes();
         if (invariantType == InvariantType.STRING) {
-            createWithStringLabels();
+            dag.initializeWithIntLabels(vertexSymbolCodes);
         } else if (invariantType == InvariantType.INTEGER){
             createWithIntLabels();
         } else {
@@ -139,88 +256,195 @@ public abstract class AbstractVertexSignature {
         }
     }
     
+    /**
+     * Give the DAG of this signature back to the workspace of the current
+     * thread, so that the next signature made on this thread can use it. This
+     * is for signatures that are made just to get a string : after it is
+     * called, nothing else can be done with the signature.
+     */
+    public void release() {
+        if (dag != null) {
+            SignatureWorkspace.getWorkspace().releaseDAG(dag);
+            dag = null;
+        }
+    }
+    
     private void createWithIntLabels() {
         int[] vertexLabels = new int[vertexCount];
-        for (int externalIndex : vertexMapping.keySet()) {
-            int internalIndex = vertexMapping.get(externalIndex);
-            vertexLabels[internalIndex] = getIntLabel(externalIndex);
+        for (int internalIndex = 0; internalIndex < vertexCount; internalIndex++) {
+            vertexLabels[internalIndex] = 
+                getIntLabel(originalIndices[internalIndex]);
         }
         dag.initializeWithIntLabels(vertexLabels);
     }
     
-    private void createWithStringLabels() {
-        String[] vertexLabels = new String[vertexCount];
-        for (int externalIndex : vertexMapping.keySet()) {
-            int internalIndex = vertexMapping.get(externalIndex);
-            vertexLabels[internalIndex] = getVertexSymbol(externalIndex);
+    /**
+     * Find the code of the symbol of each vertex, in the table for the graph
+     * if there is one - or if there is not (or it is missing a symbol), in a
+     * table of the symbols of just the vertices of this signature.
+     */
+    private void createVertexSymbolCodes() {
+        SymbolTable table = getVertexSymbolTable();
+        int[] codes = new int[vertexCount];
+        boolean allKnown = table != null;
+        for (int i = 0; allKnown && i < vertexCount; i++) {
+            int original = originalIndices[i];
+            codes[i] = (accessor == null)? 
+                    getVertexSymbolCode(original) 
+                  : accessor.vertexLabelCode(original);
+            allKnown = codes[i] != SymbolTable.UNKNOWN;
         }
-        dag.initializeWithStringLabels(vertexLabels);
+        if (!allKnown) {
+            String[] symbols = new String[vertexCount];
+            for (int i = 0; i < vertexCount; i++) {
+                symbols[i] = getVertexSymbol(originalIndices[i]);
+            }
+            table = new SymbolTable(Arrays.asList(symbols));
+            codes = table.encode(symbols);
+        }
+        vertexSymbols = table;
+        vertexSymbolCodes = codes;
     }
-
-    private void build(int layer, 
-            List<DAG.Node> previousLayer, List<DAG.Arc> usedArcs, int height) {
-        if (height == 0) return;
-        List<DAG.Node> nextLayer = new ArrayList<DAG.Node>();
-        List<DAG.Arc> layerArcs = new ArrayList<DAG.Arc>();
-        for (DAG.Node node : previousLayer) {
-            int mappedIndex = getOriginalVertexIndex(node.vertexIndex);
-            int[] connected = getConnected(mappedIndex);
-            Arrays.sort(connected);
-            for (int connectedVertex : connected) {
-                addNode(
-                  layer, node, connectedVertex, layerArcs, usedArcs, nextLayer);
-            }
-        }
-        usedArcs.addAll(layerArcs);
-        if (nextLayer.isEmpty()) {
+    
+    /**
+     * Find the code of the label of each arc, from the labels stored while 
+     * the DAG was built. The codes from an accessor are already in the table.
+     */
+    private void createEdgeLabelCodes() {
+        if (accessor != null) {
+            edgeLabels = getEdgeLabelTable();
             return;
-        } else {
-            dag.addLayer(nextLayer);
-            build(layer + 1, nextLayer, usedArcs, height - 1);
         }
+        String[] labels = 
+            Arrays.copyOf(arcLabelBuffer, dag.getStore().getArcCount());
+        arcLabelBuffer = null;
+        SymbolTable table = getEdgeLabelTable();
+        if (table == null || !table.containsAll(labels)) {
+            table = new SymbolTable(Arrays.asList(labels));
+        }
+        edgeLabels = table;
+        arcLabelCodes = table.encode(labels);
     }
 
-    private void addNode(int layer, DAG.Node parentNode, int vertexIndex,
-            List<DAG.Arc> layerArcs, List<DAG.Arc> usedArcs, 
-            List<DAG.Node> nextLayer) {
+    /**
+     * Build the DAG layer by layer, each from the nodes of the previous layer,
+     * until a layer is empty or the height is reached. The nodes of a layer
+     * are made together, so a layer is a range of node indices in the DAG - 
+     * and the arcs to a layer are a range of arcs. An edge of the graph can
+     * only be used for arcs in one layer, so once a layer is finished, its
+     * arcs are added to the set of used arcs.
+     * 
+     * @param usedArcs the arcs used in all previous layers
+     * @param layerNodes a table from vertex to node in the new layer
+     * @param height the maximum height, or -1 for no limit
+     */
+    private void build(VertexPairSet usedArcs, int[] layerNodes, int height) {
+        CompactDAG store = dag.getStore();
+        int previousLayerStart = 0;
+        int previousLayerEnd = 1;
+        for (int layer = 1; layer != height + 1; layer++) {
+            int nextLayerStart = dag.getNodeCount();
+            int layerArcStart = store.getArcCount();
+            for (int node = previousLayerStart; node < previousLayerEnd; node++) {
+                int mappedIndex = getOriginalVertexIndex(dag.getVertexIndex(node));
+                if (accessor != null) {
+                    int degree = accessor.degree(mappedIndex);
+                    for (int i = 0; i < degree; i++) {
+                        int child = addNode(layer, node, 
+                                accessor.neighbor(mappedIndex, i), 
+                                usedArcs, layerNodes, nextLayerStart);
+                        if (child != -1) {
+                            addArc(child, node, 
+                                    accessor.edgeColor(mappedIndex, i),
+                                    accessor.edgeLabelCode(mappedIndex, i), 
+                                    null);
+                        }
+                    }
+                    continue;
+                }
+                int[] connected = getConnected(mappedIndex);
+                Arrays.sort(connected);
+                for (int connectedVertex : connected) {
+                    int child = addNode(layer, node, connectedVertex, 
+                            usedArcs, layerNodes, nextLayerStart);
+                    if (child != -1) {
+                        String edgeLabel = 
+                            getEdgeLabel(mappedIndex, connectedVertex);
+                        addArc(child, node, convertEdgeLabelToColor(edgeLabel),
+                                SymbolTable.UNKNOWN, edgeLabel);
+                    }
+                }
+            }
+            for (int arc = layerArcStart; arc < store.getArcCount(); arc++) {
+                usedArcs.add(store.getVertexIndex(store.getArcParent(arc)),
+                             store.getVertexIndex(store.getArcChild(arc)));
+            }
+            int nextLayerEnd = dag.getNodeCount();
+            if (nextLayerStart == nextLayerEnd) {
+                return;
+            }
+            previousLayerStart = nextLayerStart;
+            previousLayerEnd = nextLayerEnd;
+        }
+    }
+
+    /**
+     * Find or make the node for a vertex in the layer being built, unless the
+     * edge to it from the parent has already been used.
+     * 
+     * @return the node, or -1 if there should be no arc to it
+     */
+    private int addNode(int layer, int parentNode, int vertexIndex,
+            VertexPairSet usedArcs, int[] layerNodes, int nextLayerStart) {
         
         // look up the mapping or create a new mapping for the vertex index
-        int mappedVertexIndex;
-        if (vertexMapping.containsKey(vertexIndex)) {
-            mappedVertexIndex = vertexMapping.get(vertexIndex);
-        } else {
-            vertexMapping.put(vertexIndex, vertexCount);
+        int mappedVertexIndex = internalIndices[vertexIndex];
+        if (mappedVertexIndex == -1) {
             mappedVertexIndex = vertexCount;
+            if (mappedVertexIndex == originalIndices.length) {
+                originalIndices = 
+                    Arrays.copyOf(originalIndices, mappedVertexIndex * 2);
+            }
+            internalIndices[vertexIndex] = mappedVertexIndex;
+            originalIndices[mappedVertexIndex] = vertexIndex;
             vertexCount++;
         }
         
         // find an existing node if there is one
-        DAG.Arc arc = dag.new Arc(parentNode.vertexIndex, mappedVertexIndex);
-        if (usedArcs.contains(arc)) return;
-        DAG.Node existingNode = null;
-        for (DAG.Node otherNode : nextLayer) {
-            if (otherNode.vertexIndex == mappedVertexIndex) {
-                existingNode = otherNode;
-                break;
-            }
+        int parentVertexIndex = dag.getVertexIndex(parentNode);
+        if (usedArcs.contains(parentVertexIndex, mappedVertexIndex)) return -1;
+        int existingNode = layerNodes[mappedVertexIndex];
+        if (existingNode < nextLayerStart 
+                || existingNode >= dag.getNodeCount()
+                || dag.getVertexIndex(existingNode) != mappedVertexIndex) {
+            
+            // if there isn't, make a new node and add it to the layer
+            existingNode = dag.addNode(mappedVertexIndex, layer);
+            layerNodes[mappedVertexIndex] = existingNode;
         }
         
-        // if there isn't, make a new node and add it to the layer
-        if (existingNode == null) {
-            existingNode = dag.makeNode(mappedVertexIndex, layer);
-            nextLayer.add(existingNode);
+        return existingNode;
+    }
+    
+    /**
+     * Add an arc from a parent node to a child node, storing the color of the
+     * edge on the arc and its label (as a code, or a string) with the
+     * signature.
+     */
+    private void addArc(int childNode, int parentNode, 
+            int edgeColor, int labelCode, String label) {
+        int arc = dag.getStore().getArcCount();
+        if (arc == arcLabelCodes.length) {
+            arcLabelCodes = Arrays.copyOf(arcLabelCodes, arc * 2);
+            if (arcLabelBuffer != null) {
+                arcLabelBuffer = Arrays.copyOf(arcLabelBuffer, arc * 2);
+            }
         }
-        
-        // add the edge label to the node's edge label list
-        int originalParentIndex = 
-            getOriginalVertexIndex(parentNode.vertexIndex);
-        String edgeLabel = getEdgeLabel(originalParentIndex, vertexIndex);
-        int edgeColor = convertEdgeLabelToColor(edgeLabel);
-        existingNode.addEdgeColor(parentNode.vertexIndex, edgeColor);
-        parentNode.addEdgeColor(mappedVertexIndex, edgeColor);
-        
-        dag.addRelation(existingNode, parentNode);
-        layerArcs.add(arc);
+        arcLabelCodes[arc] = labelCode;
+        if (arcLabelBuffer != null) {
+            arcLabelBuffer[arc] = label;
+        }
+        dag.addRelation(childNode, parentNode, edgeColor);
     }
     
     /**
@@ -229,74 +453,697 @@ public abstract class AbstractVertexSignature {
      * @return the canonical string form
      */
     public String toCanonicalString() {
-        StringBuffer stringBuffer = new StringBuffer();
+        return toCanonicalString(null);
+    }
+    
+    /**
+     * Convert this signature into a canonical signature string, splitting the
+     * top levels of the search (see {@link #setParallelDepth(int)}) into tasks
+     * for a pool. At each split level the first branch is searched in place, 
+     * to find automorphisms and a first best string; then each remaining 
+     * branch that is not pruned gets its own copy of the DAG and invariants.
+     * The tasks share the best string so far, so that they can abandon leaves
+     * that another task has beaten. Since the canonical string is the largest
+     * leaf string, it does not depend on the order that the tasks finish in.
+     * 
+     * @param pool the pool to run the tasks in, or null to search sequentially
+     * @return the canonical string form
+     */
+    public String toCanonicalString(ForkJoinPool pool) {
+        return searchForBestLeaf(pool, false).signature;
+    }
+    
+    /**
+     * Get a 64 bit hash of the canonical string (see {@link SignatureHash}),
+     * which is worked out as the leaves of the search are written, rather 
+     * than from the finished string.
+     * 
+     * @return the hash of the canonical string
+     */
+    public long canonicalHash64() {
+        return searchForBestLeaf(null, true).getHash128()[0];
+    }
+    
+    /**
+     * Get a 128 bit hash of the canonical string (see {@link SignatureHash}).
+     * 
+     * @return the hash, as the high and low longs
+     */
+    public long[] canonicalHash128() {
+        return searchForBestLeaf(null, true).getHash128();
+    }
+    
+    /**
+     * Canonize this signature as one of the roots of a graph, against the
+     * smallest root string that the other roots have given so far. If any
+     * leaf is found to be greater than the bound - as soon as the character
+     * that makes it greater is written - then so is the canonical string of
+     * this root, so the search stops. Otherwise the canonical string is 
+     * offered to the bound.
+     * 
+     * @param bound the smallest root string so far, shared by all the roots
+     * @return the canonical string, or null if the search was cut
+     */
+    public String toBoundedCanonicalString(CanonicalBound bound) {
+        Leaf leaf = searchForBoundedLeaf(bound, false);
+        return (leaf == null)? null : leaf.signature;
+    }
+    
+    /**
+     * Search for the canonical leaf against a bound, and offer it to the 
+     * bound if the search is not cut. If the bound is hashing, the leaves are
+     * hashed as they are written, and the hash of the best leaf goes to the
+     * bound with it.
+     * 
+     * @param bound the smallest root string so far
+     * @param recordingOrder if true, the best leaf keeps its print order
+     * @return the best leaf, or null if the search was cut
+     */
+    private Leaf searchForBoundedLeaf(
+            CanonicalBound bound, boolean recordingOrder) {
+        boolean hashing = bound.isHashing();
+        BestLeaf best = new BestLeaf("", bound);
+        search(null, hashing, recordingOrder, best);
+        if (best.isCut()) {
+            return null;
+        }
+        Leaf leaf = best.getLeaf();
+        bound.offer(leaf.signature, (hashing)? leaf.getHash128() : null);
+        return leaf;
+    }
+    
+    /**
+     * Search for the canonical leaf.
+     * 
+     * @param pool the pool to run the tasks in, or null to search sequentially
+     * @param hashing if true, the leaves are hashed as they are written
+     * @return the best leaf
+     */
+    private Leaf searchForBestLeaf(ForkJoinPool pool, boolean hashing) {
+        final BestLeaf best = new BestLeaf("");
+        search(pool, hashing, false, best);
+        return best.getLeaf();
+    }
+    
+    /**
+     * Run the search for the canonical leaf.
+     * 
+     * @param pool the pool to run the tasks in, or null to search sequentially
+     * @param hashing if true, the leaves are hashed as they are written
+     * @param recordingOrder if true, the best leaf keeps its print order
+     * @param best the best leaf, which is filled in
+     * @return the search, with the automorphisms it found
+     */
+    private Search search(ForkJoinPool pool, 
+            boolean hashing, boolean recordingOrder, BestLeaf best) {
 //        System.out.println("CANONIZING " + 
 //                getOriginalVertexIndex(dag.getRoot().vertexIndex)
 //                + " " + vertexMapping);
 //        System.out.println(dag);
-        TMP_COLORING_COUNT = 0;
-        this.canonize(0, stringBuffer);
+        final Search search = new Search(dag, pool);
+        search.hashing = hashing;
+        search.recordingOrder = recordingOrder;
+        if (pool == null) {
+            search.canonize(0, best);
+        } else {
+            pool.invoke(new SearchTask(search, -1, 0, best));
+        }
+        statistics = search.statistics;
+        foundAutomorphisms = search.automorphisms;
+        TMP_COLORING_COUNT = statistics.getLeafCount();
 //        System.out.println("invariants " + dag.copyInvariants());
-//        System.out.println("occur" + getOccurrences());
-        
 //        System.out.println("COLORINGS " + TMP_COLORING_COUNT);
-//        System.out.println(stringBuffer.toString());
-        return stringBuffer.toString();
+        return search;
+    }
+    
+    /**
+     * Get the automorphisms that the last canonization discovered during its
+     * search, as permutations of the vertices of the graph. Every one of them
+     * fixes the root. They are only found when two leaves of the search give
+     * the same string, so the list may be incomplete : they generate a 
+     * subgroup of the stabilizer of the root, which may be smaller than all 
+     * of it, and a search that never branches finds none even when the 
+     * stabilizer is not trivial. Vertices that the signature does not reach
+     * are mapped to themselves. If the search was split over a pool, only 
+     * the automorphisms found before the split are included.
+     * 
+     * @param totalVertexCount the number of vertices in the graph
+     * @return the automorphisms, which may be none
+     */
+    public List<int[]> getAutomorphisms(int totalVertexCount) {
+        List<int[]> automorphisms = new ArrayList<int[]>();
+        if (foundAutomorphisms == null) {
+            return automorphisms;
+        }
+        for (int[] found : foundAutomorphisms) {
+            int[] automorphism = new int[totalVertexCount];
+            for (int i = 0; i < totalVertexCount; i++) {
+                automorphism[i] = i;
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                automorphism[getOriginalVertexIndex(v)] = 
+                    getOriginalVertexIndex(found[v]);
+            }
+            automorphisms.add(automorphism);
+        }
+        return automorphisms;
+    }
+    
+    /**
+     * Search once for the canonical string, and label the vertices in the 
+     * order that they first appear in it. Unlike 
+     * {@link #getCanonicalLabelling(int)}, the search can still skip 
+     * branches that are equivalent under automorphisms, since the labels 
+     * come from the canonical leaf itself rather than from the state the 
+     * search ends in. The orbits are those of the automorphisms found in the
+     * search, which may split some true orbits if branches were skipped
+     * before their automorphisms were found.
+     * 
+     * @param totalVertexCount the number of vertices in the graph
+     * @return the canonical string, labels and orbits for this root
+     */
+    public CanonicalResult toCanonicalResult(int totalVertexCount) {
+        BestLeaf best = new BestLeaf("");
+        search(null, false, true, best);
+        return makeCanonicalResult(best.getLeaf(), totalVertexCount);
+    }
+    
+    /**
+     * Search once for the canonical string and labels, as in 
+     * {@link #toCanonicalResult(int)}, but as one of the roots of a graph
+     * against the smallest root string so far (see 
+     * {@link #toBoundedCanonicalString(CanonicalBound)}). The automorphisms
+     * found before a cut are still there in {@link #getAutomorphisms(int)}.
+     * 
+     * @param totalVertexCount the number of vertices in the graph
+     * @param bound the smallest root string so far, shared by all the roots
+     * @return the result for this root, or null if the search was cut
+     */
+    public CanonicalResult toBoundedCanonicalResult(
+            int totalVertexCount, CanonicalBound bound) {
+        Leaf leaf = searchForBoundedLeaf(bound, true);
+        if (leaf == null) {
+            return null;
+        }
+        return makeCanonicalResult(leaf, totalVertexCount);
+    }
+    
+    /**
+     * Label the vertices in the order they are printed in a leaf, and find
+     * the orbits of the automorphisms of the last search.
+     * 
+     * @param leaf the canonical leaf, with its print order
+     * @param totalVertexCount the number of vertices in the graph
+     * @return the result for this root
+     */
+    private CanonicalResult makeCanonicalResult(
+            Leaf leaf, int totalVertexCount) {
+        int[] labels = new int[totalVertexCount];
+        Arrays.fill(labels, -1);
+        int label = 0;
+        if (leaf.printOrder != null) {
+            for (int v : leaf.printOrder) {
+                int externalIndex = getOriginalVertexIndex(v);
+                if (labels[externalIndex] == -1) {
+                    labels[externalIndex] = label;
+                    label++;
+                }
+            }
+        }
+        
+        List<int[]> automorphisms = getAutomorphisms(totalVertexCount);
+        OrbitPartition orbits = new OrbitPartition(totalVertexCount);
+        for (int[] automorphism : automorphisms) {
+            orbits.addAutomorphism(automorphism);
+        }
+        int[] orbitRepresentatives = new int[totalVertexCount];
+        Arrays.fill(orbitRepresentatives, -1);
+        for (int v = 0; v < vertexCount; v++) {
+            int externalIndex = getOriginalVertexIndex(v);
+            orbitRepresentatives[externalIndex] = orbits.find(externalIndex);
+        }
+        int root = (vertexCount == 0)? -1 : getOriginalVertexIndex(0);
+        return new CanonicalResult(leaf.signature, 
+                root, labels, orbitRepresentatives, automorphisms);
     }
     
     public int TMP_COLORING_COUNT;
     
     /**
-     * Find the minimal signature string by trying all colors.
+     * Find the maximal signature string by trying all colors.
      * 
      * @param color the current color to use
      * @param canonicalVertexSignature the buffer to fill
      */
     public void canonize(int color, StringBuffer canonicalVertexSignature) {
-        // assume that the atom invariants have been initialized
-        if (this.getVertexCount() == 0) return;
-        
-        this.dag.updateVertexInvariants();
-        int[] parents = dag.getParentsInFinalString();
-//        System.out.println("pars\t" + Arrays.toString(parents));
-        List<Integer> orbit = this.dag.createOrbit(parents);
-//        System.out.println(dag.copyInvariants());
-        if (orbit.size() < 2) {
-            // Color all uncolored atoms having two parents 
-            // or more according to their invariant.
-            List<InvariantInt> pairs = dag.getInvariantPairs(parents);
-//            System.out.println("coloring " + pairs);
-            for (InvariantInt pair : pairs) {
-                this.dag.setColor(pair.index, color);
-                color++;
+        Search search = new Search(dag, null);
+        BestLeaf best = new BestLeaf(canonicalVertexSignature.toString());
+        search.canonize(color, best);
+        statistics = search.statistics;
+        TMP_COLORING_COUNT = statistics.getLeafCount();
+        canonicalVertexSignature.replace(
+                0, canonicalVertexSignature.length(), best.getLeaf().signature);
+    }
+    
+    /**
+     * A leaf of the search : its signature string, and the order that the
+     * vertices were printed in (if automorphisms are being looked for).
+     */
+    private static class Leaf {
+        
+        public final String signature;
+        
+        public final int[] printOrder;
+        
+        /**
+         * The 128 bit hash of the signature, if it was hashed while written
+         */
+        public final long[] hash;
+        
+        public Leaf(String signature, int[] printOrder) {
+            this(signature, printOrder, null);
+        }
+        
+        public Leaf(String signature, int[] printOrder, long[] hash) {
+            this.signature = signature;
+            this.printOrder = printOrder;
+            this.hash = hash;
+        }
+        
+        public long[] getHash128() {
+            return (hash == null)? SignatureHash.hash128(signature) : hash;
+        }
+    }
+    
+    /**
+     * The best leaf found so far, which may be shared between tasks - and the
+     * bound from the other roots of the graph, if there is one.
+     */
+    private static class BestLeaf {
+        
+        private volatile Leaf leaf;
+        
+        private final CanonicalBound bound;
+        
+        /**
+         * Set when a leaf is greater than the bound, to stop every task
+         */
+        private volatile boolean cut;
+        
+        public BestLeaf(String signature) {
+            this(signature, null);
+        }
+        
+        public BestLeaf(String signature, CanonicalBound bound) {
+            this.leaf = new Leaf(signature, null);
+            this.bound = bound;
+            this.cut = false;
+        }
+        
+        public Leaf getLeaf() {
+            return leaf;
+        }
+        
+        /**
+         * @return the smallest root string of the graph so far, or null
+         */
+        public String getBoundSignature() {
+            return (bound == null)? null : bound.getSignature();
+        }
+        
+        public void cut() {
+            cut = true;
+        }
+        
+        public boolean isCut() {
+            return cut;
+        }
+        
+        /**
+         * Replace the best leaf, if this one is greater.
+         * 
+         * @param other a leaf that was greater than the best when compared
+         */
+        public synchronized void offer(Leaf other) {
+            if (other.signature.compareTo(leaf.signature) > 0) {
+                leaf = other;
             }
-            
-            TMP_COLORING_COUNT++;
+        }
+    }
+    
+    /**
+     * A branch of the search, run in a pool. 
+     */
+    private class SearchTask extends RecursiveAction {
         
-            // Creating the root signature string.
-            String signature = this.toString();
-            int cmp = signature.compareTo(canonicalVertexSignature.toString()); 
-            int l = canonicalVertexSignature.length();
-            if (cmp > 0) {
-//                System.out.println(TMP_COLORING_COUNT + " replacing " + signature + " old= " + canonicalVertexSignature);
-                canonicalVertexSignature.replace(0, l, signature);
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        
+        /**
+         * The vertex to color at the top of the branch, or -1 to search from
+         * the current state without coloring
+         */
+        private final int vertex;
+        
+        private final int color;
+        
+        private final BestLeaf best;
+        
+        public SearchTask(Search search, int vertex, int color, BestLeaf best) {
+            this.search = search;
+            this.vertex = vertex;
+            this.color = color;
+            this.best = best;
+        }
+
+        protected void compute() {
+            if (vertex == -1) {
+                search.canonize(color, best);
             } else {
-//                System.out.println(TMP_COLORING_COUNT + " rejecting " + cmp + " " + signature);
+                search.dag.setColor(vertex, color);
+                search.path.add(vertex);
+                search.canonize(color + 1, best);
             }
-            return;
-        } else {
+        }
+    }
+    
+    /**
+     * The state of one canonization search over a DAG : the vertices colored
+     * on the path to the current branch, the automorphisms found so far, and
+     * the first leaf, which new leaves are compared with to find them.
+     */
+    private class Search {
+        
+        private final DAG dag;
+        
+        /**
+         * If true, each leaf is hashed as it is written
+         */
+        private boolean hashing;
+        
+        /**
+         * If true, the print order of each leaf is kept, even when it is not
+         * needed to find automorphisms
+         */
+        private boolean recordingOrder;
+        
+        /**
+         * The walk over the DAG in string order, made once for each coloring
+         */
+        private final DAGTraversal traversal;
+        
+        /**
+         * The pool to split the top levels in, or null
+         */
+        private final ForkJoinPool pool;
+        
+        /**
+         * The automorphisms of the DAG found so far, as permutations of the
+         * (internal) vertex indices
+         */
+        private final List<int[]> automorphisms;
+        
+        /**
+         * The vertices colored on the path from the top of the search tree to
+         * the current branch
+         */
+        private final List<Integer> path;
+        
+        private Leaf firstLeaf;
+        
+        private final CanonizationStatistics statistics;
+        
+        public Search(DAG dag, ForkJoinPool pool) {
+            this.dag = dag;
+            this.traversal = new DAGTraversal(dag);
+            this.pool = pool;
+            this.automorphisms = new ArrayList<int[]>();
+            this.path = new ArrayList<Integer>();
+            this.firstLeaf = null;
+            this.statistics = new CanonizationStatistics();
+        }
+        
+        /**
+         * Make a search for a branch of this one, with a copy of the DAG.
+         * 
+         * @param parent the search to branch from
+         */
+        public Search(Search parent) {
+            this.dag = parent.dag.copy();
+            this.traversal = new DAGTraversal(dag);
+            this.hashing = parent.hashing;
+            this.recordingOrder = parent.recordingOrder;
+            this.pool = parent.pool;
+            this.automorphisms = new ArrayList<int[]>(parent.automorphisms);
+            this.path = new ArrayList<Integer>(parent.path);
+            this.firstLeaf = parent.firstLeaf;
+            this.statistics = new CanonizationStatistics();
+        }
+        
+        public void canonize(int color, BestLeaf best) {
+            // assume that the atom invariants have been initialized
+            if (getVertexCount() == 0 || best.isCut()) return;
+            
+            this.dag.updateVertexInvariants();
+            traversal.traverse();
+            int[] parents = traversal.getParentCounts();
+//            System.out.println("pars\t" + Arrays.toString(parents));
+            List<Integer> orbit = this.dag.createOrbit(parents);
+//            System.out.println(dag.copyInvariants());
+            if (orbit.size() < 2) {
+                // Color all uncolored atoms having two parents 
+                // or more according to their invariant.
+                List<InvariantInt> pairs = dag.getInvariantPairs(parents);
+//                System.out.println("coloring " + pairs);
+                for (InvariantInt pair : pairs) {
+                    this.dag.setColor(pair.index, color);
+                    color++;
+                }
+                evaluateLeaf(best);
+                return;
+            }
+            
 //            System.out.println("setting color " + color + " for orbit " + orbit);
+            boolean split = pool != null && path.size() < parallelDepth;
+            List<SearchTask> tasks = new ArrayList<SearchTask>();
+            List<Integer> searched = new ArrayList<Integer>();
+            int[] orbitRoots = null;
+            int automorphismsSeen = -1;
             for (int o : orbit) {
-//                System.out.println("setting color " + color + " for element " + o);
-                this.dag.setColor(o, color);
-                Invariants invariantsCopy = this.dag.copyInvariants();
-                this.canonize(color + 1, canonicalVertexSignature);
-                this.dag.setInvariants(invariantsCopy);
-                this.dag.setColor(o, -1);
+                if (best.isCut()) break;
+                if (usingAutomorphisms && !searched.isEmpty()) {
+                    // the orbits under the automorphisms that fix the path
+                    if (automorphismsSeen != automorphisms.size()) {
+                        orbitRoots = stabilizerOrbits();
+                        automorphismsSeen = automorphisms.size();
+                    }
+                    if (isEquivalentToAny(o, searched, orbitRoots)) {
+                        statistics.addPrunedBranch();
+                        continue;
+                    }
+                }
+                if (split && !searched.isEmpty()) {
+                    tasks.add(new SearchTask(new Search(this), o, color, best));
+                } else {
+//                    System.out.println("setting color " + color + " for element " + o);
+                    this.dag.setColor(o, color);
+                    int mark = this.dag.markInvariants();
+                    path.add(o);
+                    this.canonize(color + 1, best);
+                    path.remove(path.size() - 1);
+                    this.dag.rollbackInvariants(mark);
+                    this.dag.setColor(o, -1);
+                }
+                searched.add(o);
+            }
+            if (!tasks.isEmpty()) {
+                ForkJoinTask.invokeAll(tasks);
+                for (SearchTask task : tasks) {
+                    statistics.add(task.search.statistics);
+                }
             }
         }
+        
+        /**
+         * Print the signature string for a leaf, abandoning it as soon as it
+         * is known to be less than the best so far. If it is known to be 
+         * greater than the bound from the other roots, the whole search is 
+         * cut, since the canonical string is at least as great as any leaf.
+         * A leaf that prints the same string as the first leaf or the best
+         * leaf is an automorphism, which maps each vertex to the vertex 
+         * printed in the same place in the other.
+         * 
+         * @param best the best leaf so far
+         */
+        private void evaluateLeaf(BestLeaf best) {
+            statistics.addLeaf();
+            
+            // Creating the root signature string, which is abandoned as soon
+            // as it is known to be less than the best so far.
+            // The children were sorted by the traversal for this coloring, and
+            // the colors set since then do not change their order.
+            Leaf bestLeaf = best.getLeaf();
+            String other = 
+                (usingAutomorphisms && firstLeaf != null)? 
+                        firstLeaf.signature : null; 
+            SignatureWriter writer = new SignatureWriter(
+                    bestLeaf.signature, other, best.getBoundSignature());
+            if (hashing) {
+                writer.setHash(new SignatureHash());
+            }
+            print(dag, traversal, writer);
+            if (writer.exceedsBound()) {
+                best.cut();
+                return;
+            }
+            int cmp = writer.compareToBest();
+            
+            int[] order = null;
+            if (usingAutomorphisms || recordingOrder) {
+                order = traversal.getPrintOrder();
+            }
+            if (usingAutomorphisms) {
+                if (firstLeaf == null) {
+                    if (!writer.isAbandoned()) {
+                        firstLeaf = new Leaf(writer.getCandidate(), order);
+                    }
+                } else if (writer.equalsOther()) {
+                    addAutomorphism(firstLeaf.printOrder, order);
+                } else if (cmp == 0 && bestLeaf.printOrder != null) {
+                    addAutomorphism(bestLeaf.printOrder, order);
+                }
+            }
+            if (cmp > 0) {
+                long[] hash = 
+                    (hashing)? writer.getHash().getHash128() : null;
+                best.offer(new Leaf(writer.getCandidate(), order, hash));
+            }
+        }
+    
+        /**
+         * Make the permutation between two print orders, and keep it if it is
+         * an automorphism of the signature.
+         * 
+         * @param orderA the vertices of one leaf in print order
+         * @param orderB the vertices of another leaf, with the same string
+         */
+        private void addAutomorphism(int[] orderA, int[] orderB) {
+            if (orderA.length != orderB.length) return;
+            int[] permutation = new int[vertexCount];
+            int[] inverse = new int[vertexCount];
+            Arrays.fill(permutation, -1);
+            Arrays.fill(inverse, -1);
+            boolean isIdentity = true;
+            for (int i = 0; i < orderA.length; i++) {
+                int a = orderA[i];
+                int b = orderB[i];
+                if (permutation[a] == -1 && inverse[b] == -1) {
+                    permutation[a] = b;
+                    inverse[b] = a;
+                } else if (permutation[a] != b || inverse[b] != a) {
+                    return;
+                }
+                if (a != b) {
+                    isIdentity = false;
+                }
+            }
+            for (int i = 0; i < vertexCount; i++) {
+                if (permutation[i] == -1) return;
+            }
+            if (isIdentity || !preservesLabels(permutation)) return;
+            if (dag.isAutomorphism(permutation)) {
+                automorphisms.add(permutation);
+                statistics.addAutomorphism();
+            }
+        }
+    
+        /**
+         * Check that a permutation keeps the printed symbols of the vertices 
+         * and the edges, as the DAG only has their colors.
+         * 
+         * @param permutation a permutation of the internal vertex indices
+         * @return true if the symbols are the same for each vertex and its image
+         */
+        private boolean preservesLabels(int[] permutation) {
+            for (int v = 0; v < vertexCount; v++) {
+                if (vertexSymbolCodes[v] != vertexSymbolCodes[permutation[v]]) {
+                    return false;
+                }
+            }
+            CompactDAG store = dag.getStore();
+            for (int arc = 0; arc < store.getArcCount(); arc++) {
+                int v = store.getVertexIndex(store.getArcParent(arc));
+                int w = store.getVertexIndex(store.getArcChild(arc));
+                int imageW = getOriginalVertexIndex(permutation[w]);
+                int imageV = getOriginalVertexIndex(permutation[v]);
+                int imageCode;
+                if (accessor != null) {
+                    int i = accessor.indexOf(imageW, imageV);
+                    imageCode = (i == -1)? 
+                            SymbolTable.UNKNOWN : accessor.edgeLabelCode(imageW, i);
+                } else {
+                    imageCode = 
+                        edgeLabels.getCode(getEdgeLabel(imageW, imageV));
+                }
+                if (imageCode != arcLabelCodes[arc]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    
+        /**
+         * Find the orbits of the vertices under the automorphisms that fix 
+         * every vertex on the current search path, as a union-find forest.
+         * 
+         * @return the root of the orbit of each vertex
+         */
+        private int[] stabilizerOrbits() {
+            int[] roots = new int[vertexCount];
+            for (int i = 0; i < vertexCount; i++) {
+                roots[i] = i;
+            }
+            for (int[] automorphism : automorphisms) {
+                boolean fixesPath = true;
+                for (int v : path) {
+                    if (automorphism[v] != v) {
+                        fixesPath = false;
+                        break;
+                    }
+                }
+                if (!fixesPath) continue;
+                for (int v = 0; v < vertexCount; v++) {
+                    int a = findRoot(roots, v);
+                    int b = findRoot(roots, automorphism[v]);
+                    if (a != b) {
+                        roots[Math.max(a, b)] = Math.min(a, b);
+                    }
+                }
+            }
+            return roots;
+        }
     }
-
+    
+    private int findRoot(int[] roots, int v) {
+        while (roots[v] != v) {
+            roots[v] = roots[roots[v]];
+            v = roots[v];
+        }
+        return v;
+    }
+    
+    private boolean isEquivalentToAny(
+            int vertex, List<Integer> others, int[] orbitRoots) {
+        int root = findRoot(orbitRoots, vertex);
+        for (int other : others) {
+            if (findRoot(orbitRoots, other) == root) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     /**
      * Get a canonical labelling for this signature. Note that a signature that
      * does not cover the graph (has a height < graph diameter) will not have
@@ -311,7 +1158,12 @@ public abstract class AbstractVertexSignature {
      */
     public int[] getCanonicalLabelling(int totalVertexCount) {
         // TODO : get the totalVertexCount from the graph?
+        // the labelling is read from the state that the search ends in, so
+        // every branch has to be searched
+        boolean pruning = usingAutomorphisms;
+        usingAutomorphisms = false;
         canonize(0, new StringBuffer());
+        usingAutomorphisms = pruning;
         CanonicalLabellingVisitor labeller = 
             new CanonicalLabellingVisitor(getVertexCount(), dag.nodeComparator);
         this.dag.accept(labeller);
@@ -369,6 +1221,54 @@ public abstract class AbstractVertexSignature {
      */
     protected abstract String getVertexSymbol(int vertexIndex);
     
+    /**
+     * Get an int view of the graph to build the DAG from, instead of calling
+     * {@link #getConnected(int)}, {@link #getEdgeLabel(int, int)} and 
+     * {@link #getVertexSymbol(int)} for each vertex and edge. The codes that
+     * it gives must be in the tables from {@link #getVertexSymbolTable()}
+     * and {@link #getEdgeLabelTable()}. By default there is no accessor.
+     * 
+     * @return an accessor for the input graph, or null
+     */
+    protected GraphAccessor getGraphAccessor() {
+        return null;
+    }
+    
+    /**
+     * Get the table of the vertex symbols of the whole graph, so that they 
+     * are interned once for the graph rather than once for each signature. 
+     * By default there is no table, and the symbols of the vertices of each 
+     * signature are interned when it is made.
+     * 
+     * @return a table of the vertex symbols in the input graph, or null
+     */
+    protected SymbolTable getVertexSymbolTable() {
+        return null;
+    }
+    
+    /**
+     * Get the code of the symbol for a vertex, in the table from 
+     * {@link #getVertexSymbolTable()}. Graphs that keep the codes of their
+     * vertices can override this to avoid looking up the symbol string.
+     * 
+     * @param vertexIndex the index of the vertex in the input graph
+     * @return the code of the symbol, or SymbolTable.UNKNOWN
+     */
+    protected int getVertexSymbolCode(int vertexIndex) {
+        return getVertexSymbolTable().getCode(getVertexSymbol(vertexIndex));
+    }
+    
+    /**
+     * Get the table of all the edge labels that the graph can have. By 
+     * default there is no table, and the labels of the edges of each 
+     * signature are interned when it is made.
+     * 
+     * @return a table of edge labels, or null
+     */
+    protected SymbolTable getEdgeLabelTable() {
+        return null;
+    }
+    
     /**
      * Get a list of the indices of the vertices connected to the vertex with 
      * the supplied index.
@@ -389,54 +1289,42 @@ public abstract class AbstractVertexSignature {
     protected abstract String getEdgeLabel(int vertexIndex, int otherVertexIndex);
     
     /**
-     * Recursively print the signature into the buffer.
+     * Print the signature into the writer, from the events of a traversal of
+     * the DAG. Once the writer has abandoned the string, there is nothing
+     * more to do - the children were already sorted by the traversal.
      * 
-     * @param buffer the string buffer to print into
-     * @param node the current node of the signature
-     * @param parent the parent node, or null
-     * @param arcs the list of already visited arcs
-     * @param colorMap a map between pre-printed colors and printed colors
+     * @param dag the DAG to print, which may be a copy of the signature DAG
+     * @param traversal a traversal of the DAG with its current invariants
+     * @param buffer the writer to print into
      */
-    private void print(StringBuffer buffer, DAG.Node node,
-            DAG.Node parent, List<DAG.Arc> arcs) {
-        int vertexIndex = getOriginalVertexIndex(node.vertexIndex);
-        
-        // print out any symbol for the edge in the input graph
-        if (parent != null) {
-            int parentVertexIndex = getOriginalVertexIndex(parent.vertexIndex);
-            buffer.append(getEdgeLabel(vertexIndex, parentVertexIndex));
-        }
-        
-        // print out the text that represents the node itself
-        buffer.append(AbstractVertexSignature.START_NODE_SYMBOL);
-        buffer.append(getVertexSymbol(vertexIndex));
-        int color = dag.colorFor(node.vertexIndex);
-        if (color != -1) {
-            buffer.append(',').append(color);
-        }
-        buffer.append(AbstractVertexSignature.END_NODE_SYMBOL);
-        
-        // Need to sort the children here, so that they are printed in an order 
-        // according to their invariants.
-        Collections.sort(node.children, dag.nodeComparator);
-        
-        // now print the sorted children, surrounded by branch symbols
-        boolean addedBranchSymbol = false;
-        for (DAG.Node child : node.children) {
-            DAG.Arc arc = dag.new Arc(node.vertexIndex, child.vertexIndex);
-            if (arcs.contains(arc)) {
+    private void print(DAG dag, DAGTraversal traversal, SignatureWriter buffer) {
+        for (int i = 0; i < traversal.getEventCount(); i++) {
+            if (buffer.isAbandoned()) return;
+            int node = traversal.getEvent(i);
+            if (node == DAGTraversal.OPEN_BRANCH) {
+                buffer.append(AbstractVertexSignature.START_BRANCH_SYMBOL);
+                continue;
+            } else if (node == DAGTraversal.CLOSE_BRANCH) {
+                buffer.append(AbstractVertexSignature.END_BRANCH_SYMBOL);
                 continue;
-            } else {
-                if (!addedBranchSymbol) {
-                    buffer.append(AbstractVertexSignature.START_BRANCH_SYMBOL);
-                    addedBranchSymbol = true;
-                }
-                arcs.add(arc);
-                print(buffer, child, node, arcs);
             }
-        }
-        if (addedBranchSymbol) {
-            buffer.append(AbstractVertexSignature.END_BRANCH_SYMBOL);
+            int nodeVertexIndex = dag.getVertexIndex(node);
+
+            // print out any symbol for the edge in the input graph
+            int arc = traversal.getEventArc(i);
+            if (arc != -1) {
+                buffer.append(edgeLabels.getSymbol(arcLabelCodes[arc]));
+            }
+
+            // print out the text that represents the node itself
+            buffer.append(AbstractVertexSignature.START_NODE_SYMBOL);
+            buffer.append(
+                    vertexSymbols.getSymbol(vertexSymbolCodes[nodeVertexIndex]));
+            int color = dag.colorFor(nodeVertexIndex);
+            if (color != -1) {
+                buffer.append(',').append(color);
+            }
+            buffer.append(AbstractVertexSignature.END_NODE_SYMBOL);
         }
     }
     
@@ -444,67 +1332,43 @@ public abstract class AbstractVertexSignature {
      * Convert this vertex signature into a signature string.
      */
     public String toString() {
-        StringBuffer buffer = new StringBuffer();
-        print(buffer, this.dag.getRoot(), null, new ArrayList<DAG.Arc>());
-        return buffer.toString();
+        SignatureWriter writer = new SignatureWriter();
+        DAGTraversal traversal = new DAGTraversal(dag);
+        traversal.traverse();
+        print(dag, traversal, writer);
+        return writer.toString();
     }
     
+    /**
+     * Read a signature string into a colored tree. This uses a
+     * {@link SignatureParser}, so the vertex symbols and edge labels of the 
+     * nodes are shared strings; to read many signatures, or to avoid making 
+     * the node objects, use a parser directly.
+     * 
+     * @param s the signature string
+     * @return the tree, or null if the string has no nodes
+     */
     public static ColoredTree parse(String s) {
-        ColoredTree tree = null;
-        ColoredTree.Node parent = null;
-        ColoredTree.Node current = null;
-        int currentHeight = 1;
-        int color = -1;
-        int j = 0;
-        int k = 0;
-        int l = 0;
-        String edgeSymbol = null;
-        for (int i = 0; i < s.length(); i++) {
-            char c = s.charAt(i);
-            if (c == AbstractVertexSignature.START_BRANCH_SYMBOL) {
-                parent = current;
-                currentHeight++;
-                tree.updateHeight(currentHeight);
-                l = i;
-            } else if (c == AbstractVertexSignature.END_BRANCH_SYMBOL) {
-                parent = parent.parent;
-                currentHeight--;
-                l = i;
-            } else if (c == START_NODE_SYMBOL) {
-                if (l < i) {
-                    edgeSymbol = s.substring(l + 1, i);
-                    l = i;
-                }
-                j = i + 1;
-            } else if (c == END_NODE_SYMBOL) {
-                String ss;
-                if (k < j) {    // no color
-                    ss = s.substring(j, i);
-                    color = -1;
-                } else {        // color
-                    ss = s.substring(j, k - 1);
-                    color = Integer.parseInt(s.substring(k, i));    
-                }
-                if (tree == null) {
-                    tree = new ColoredTree(ss);
-                    parent = tree.getRoot();
-                    current = tree.getRoot();
+        final SignatureParser parser = new SignatureParser();
+        final List<ColoredTree.Node> nodes = new ArrayList<ColoredTree.Node>();
+        final ColoredTree[] tree = new ColoredTree[1];
+        parser.parse(s, new SignatureVisitor() {
+            
+            public void visitNode(int nodeIndex, int parentIndex, int height,
+                    int vertexSymbolCode, int edgeLabelCode, int color) {
+                String symbol = parser.getVertexSymbol(vertexSymbolCode);
+                if (parentIndex == -1) {
+                    tree[0] = new ColoredTree(symbol);
+                    nodes.add(tree[0].getRoot());
                 } else {
-                    if (edgeSymbol == null) {
-                        current = tree.makeNode(
-                                ss, parent, currentHeight, color);
-                    } else {
-                        current = tree.makeNode(
-                                ss, parent, currentHeight, color, edgeSymbol);
-                    }
+                    nodes.add(tree[0].makeNode(symbol, nodes.get(parentIndex),
+                            height, color, parser.getEdgeLabel(edgeLabelCode)));
+                    tree[0].updateHeight(height);
                 }
-                edgeSymbol = null;
-                l = i;
-            } else if (c == ',') {
-                k = i + 1;
-            } 
-        }
-        return tree;
+            }
+            
+        });
+        return tree[0];
     }
     
 }
@@ -0,0 +1,133 @@
+package signature;
+
+/**
+ * A {@link GraphAccessor} that holds the adjacency of a graph in flat arrays:
+ * the neighbours of all the vertices one after the other, each vertex's in
+ * increasing order, with an offset to where each vertex starts. It is made
+ * once from a list of edges, and does not change.
+ *
+ * @author maclean
+ *
+ */
+public class AdjacencyAccessor implements GraphAccessor {
+
+    /**
+     * The start of each vertex's neighbours, with one more at the end
+     */
+    private final int[] offsets;
+
+    private final int[] neighbors;
+
+    private final int[] edgeColors;
+
+    private final int[] edgeLabelCodes;
+
+    private final int[] vertexLabelCodes;
+
+    /**
+     * Make the adjacency from a list of undirected edges, as parallel arrays.
+     * The neighbours are put in order by two counting passes, so this takes
+     * time linear in the size of the graph.
+     *
+     * @param vertexLabelCodes the code of the symbol of each vertex
+     * @param edgeCount the number of edges
+     * @param edgeA one end of each edge
+     * @param edgeB the other end of each edge
+     * @param edgeColors the color of each edge
+     * @param edgeLabelCodes the code of the label of each edge
+     */
+    public AdjacencyAccessor(int[] vertexLabelCodes, int edgeCount,
+            int[] edgeA, int[] edgeB, int[] edgeColors, int[] edgeLabelCodes) {
+        int vertexCount = vertexLabelCodes.length;
+        int halfEdgeCount = edgeCount * 2;
+        this.vertexLabelCodes = vertexLabelCodes;
+        this.offsets = new int[vertexCount + 1];
+        this.neighbors = new int[halfEdgeCount];
+        this.edgeColors = new int[halfEdgeCount];
+        this.edgeLabelCodes = new int[halfEdgeCount];
+
+        // count the degrees, which is also the number of times each
+        // vertex is a neighbour
+        for (int e = 0; e < edgeCount; e++) {
+            offsets[edgeA[e] + 1]++;
+            offsets[edgeB[e] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+
+        // first group the half edges by their neighbour...
+        int[] fill = new int[vertexCount];
+        System.arraycopy(offsets, 0, fill, 0, vertexCount);
+        int[] byNeighbor = new int[halfEdgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            byNeighbor[fill[edgeB[e]]++] = e * 2;
+            byNeighbor[fill[edgeA[e]]++] = e * 2 + 1;
+        }
+
+        // ...then spread them out to their vertex, so each vertex gets its
+        // neighbours in order
+        System.arraycopy(offsets, 0, fill, 0, vertexCount);
+        for (int halfEdge : byNeighbor) {
+            int e = halfEdge / 2;
+            boolean fromA = halfEdge % 2 == 0;
+            int v = fromA ? edgeA[e] : edgeB[e];
+            int w = fromA ? edgeB[e] : edgeA[e];
+            int position = fill[v]++;
+            neighbors[position] = w;
+            this.edgeColors[position] = edgeColors[e];
+            this.edgeLabelCodes[position] = edgeLabelCodes[e];
+        }
+    }
+
+    public int getVertexCount() {
+        return vertexLabelCodes.length;
+    }
+
+    public int degree(int vertexIndex) {
+        return offsets[vertexIndex + 1] - offsets[vertexIndex];
+    }
+
+    public int neighbor(int vertexIndex, int i) {
+        return neighbors[offsets[vertexIndex] + i];
+    }
+
+    public int edgeColor(int vertexIndex, int i) {
+        return edgeColors[offsets[vertexIndex] + i];
+    }
+
+    public int edgeLabelCode(int vertexIndex, int i) {
+        return edgeLabelCodes[offsets[vertexIndex] + i];
+    }
+
+    public int vertexLabelCode(int vertexIndex) {
+        return vertexLabelCodes[vertexIndex];
+    }
+
+    /**
+     * Find the position of a vertex among the neighbours of another, by
+     * binary search. If there is more than one edge between them, this is
+     * the position of one of them.
+     *
+     * @param vertexIndex the index of a vertex
+     * @param otherVertexIndex the index of the possible neighbour
+     * @return the position of the neighbour, or -1 if they are not connected
+     */
+    public int indexOf(int vertexIndex, int otherVertexIndex) {
+        int low = offsets[vertexIndex];
+        int high = offsets[vertexIndex + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int w = neighbors[middle];
+            if (w < otherVertexIndex) {
+                low = middle + 1;
+            } else if (w > otherVertexIndex) {
+                high = middle - 1;
+            } else {
+                return middle - offsets[vertexIndex];
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,115 @@
+package signature;
+
+/**
+ * The smallest root signature string found so far while canonizing a graph,
+ * shared between the searches of all its roots. The canonical string of a
+ * root is the largest of its leaves, so once any leaf of a root - or just the
+ * start of one - is greater than this string, that root cannot give the
+ * canonical string of the graph and its search can stop.
+ *
+ * The bound can be shared by searches on different threads, and it only
+ * ever gets smaller, so a search that was cut by an earlier value of it
+ * would also have been cut by the final one.
+ *
+ * If the bound is made for hashing, the searches hash their leaves as they
+ * are written, and the bound keeps the hash of its string - so the hash of
+ * the canonical string is known without reading the string again.
+ *
+ * @author maclean
+ *
+ */
+public class CanonicalBound {
+
+    /**
+     * The smallest finished root string, or null if there is none yet
+     */
+    private volatile String signature;
+
+    /**
+     * The 128 bit hash of the signature, if the searches are hashing
+     */
+    private volatile long[] hash;
+
+    private final boolean hashing;
+
+    public CanonicalBound() {
+        this(false);
+    }
+
+    /**
+     * Make a bound, with no string yet.
+     *
+     * @param hashing if true, the searches hash their leaves
+     */
+    public CanonicalBound(boolean hashing) {
+        this.signature = null;
+        this.hash = null;
+        this.hashing = hashing;
+    }
+
+    /**
+     * @return true if the searches should hash their leaves
+     */
+    public boolean isHashing() {
+        return hashing;
+    }
+
+    /**
+     * @return the smallest root string so far, or null if there is none
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * Get the 128 bit hash of the bound (see {@link SignatureHash}). If the
+     * searches were not hashing, it is worked out from the string.
+     *
+     * @return the hash, as the high and low longs, or null if there is no
+     *         string
+     */
+    public long[] getHash128() {
+        String current;
+        long[] currentHash;
+        synchronized (this) {
+            current = signature;
+            currentHash = hash;
+        }
+        if (current == null) {
+            return null;
+        }
+        return (currentHash == null)? SignatureHash.hash128(current) : currentHash;
+    }
+
+    /**
+     * Replace the bound, if a finished root string is smaller.
+     *
+     * @param rootSignature the canonical string of a root
+     * @return true if it is the new bound
+     */
+    public boolean offer(String rootSignature) {
+        return offer(rootSignature, null);
+    }
+
+    /**
+     * Replace the bound, if a finished root string is smaller, keeping the
+     * hash of the string.
+     *
+     * @param rootSignature the canonical string of a root
+     * @param rootHash the 128 bit hash of the string, or null
+     * @return true if it is the new bound
+     */
+    public synchronized boolean offer(String rootSignature, long[] rootHash) {
+        if (signature == null || rootSignature.compareTo(signature) < 0) {
+            signature = rootSignature;
+            hash = rootHash;
+            return true;
+        }
+        return false;
+    }
+
+    public String toString() {
+        return String.valueOf(signature);
+    }
+
+}
@@ -1,8 +1,10 @@
 package signature;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 
 import signature.DAG.Node;
 
@@ -19,19 +21,33 @@ public class CanonicalLabellingVisitor implements DAGVisitor {
         labelling = new int[vertexCount];
         Arrays.fill(labelling, -1);
         currentLabel = 0;
+        this.comparator = comparator;
     }
 
+    /**
+     * Label the vertices of the nodes below this one, in depth-first order.
+     * This uses a stack rather than recursion, so that deep DAGs do not
+     * overflow the thread stack.
+     * 
+     * @param node the node to start from
+     */
     public void visit(Node node) {
-        // only label if this vertex has not yet been labeled
-        if (this.labelling[node.vertexIndex] == -1) {
-            this.labelling[node.vertexIndex] = this.currentLabel;
-            this.currentLabel++;
-        }
-        if (comparator != null) {
-            Collections.sort(node.children, comparator);
-        }
-        for (Node child : node.children) {
-            child.accept(this);
+        Deque<Node> stack = new ArrayDeque<Node>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Node current = stack.pop();
+            
+            // only label if this vertex has not yet been labeled
+            if (this.labelling[current.vertexIndex] == -1) {
+                this.labelling[current.vertexIndex] = this.currentLabel;
+                this.currentLabel++;
+            }
+            if (comparator != null) {
+                Collections.sort(current.children, comparator);
+            }
+            for (int i = current.children.size() - 1; i >= 0; i--) {
+                stack.push(current.children.get(i));
+            }
         }
     }
     
@@ -0,0 +1,146 @@
+package signature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The outcome of one canonization : the canonical signature string, a
+ * canonical labelling of the vertices, the root vertex whose signature gave
+ * the string, and the partition of the vertices into orbits.
+ *
+ * The labelling numbers the vertices in the order they first appear in the
+ * canonical string - so relabelling the graph with it gives the same graph
+ * as reconstructing it from the string (see {@link AbstractGraphBuilder}).
+ *
+ * @author maclean
+ *
+ */
+public class CanonicalResult {
+
+    private final String signature;
+
+    private final int root;
+
+    /**
+     * The canonical label of each vertex, or -1 if it is not in the signature
+     */
+    private final int[] labels;
+
+    /**
+     * The smallest vertex in the orbit of each vertex, or -1 if it is not in
+     * the signature
+     */
+    private final int[] orbitRepresentatives;
+
+    /**
+     * The automorphisms discovered during the search at the root, which may
+     * be incomplete
+     */
+    private final List<int[]> automorphisms;
+
+    public CanonicalResult(String signature, int root, int[] labels,
+            int[] orbitRepresentatives, List<int[]> automorphisms) {
+        this.signature = signature;
+        this.root = root;
+        this.labels = labels;
+        this.orbitRepresentatives = orbitRepresentatives;
+        this.automorphisms = automorphisms;
+    }
+
+    /**
+     * @return the canonical signature string
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * @return the vertex that the canonical signature is rooted at
+     */
+    public int getRoot() {
+        return root;
+    }
+
+    /**
+     * Get the canonical labelling, as the new index for each vertex. This is
+     * the permutation that the permuting constructors of the graphs take.
+     *
+     * @return the canonical label of each vertex, or -1 for vertices that the
+     *         signature does not reach
+     */
+    public int[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return the vertex index for each canonical label
+     */
+    public int[] getInverseLabels() {
+        int labelCount = 0;
+        for (int label : labels) {
+            labelCount = Math.max(labelCount, label + 1);
+        }
+        int[] inverse = new int[labelCount];
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] != -1) {
+                inverse[labels[i]] = i;
+            }
+        }
+        return inverse;
+    }
+
+    /**
+     * @param vertexIndex a vertex
+     * @return the smallest vertex in the same orbit, or -1 if the vertex is
+     *         not in the signature
+     */
+    public int getOrbitRepresentative(int vertexIndex) {
+        return orbitRepresentatives[vertexIndex];
+    }
+
+    /**
+     * Get the orbits, each as the sorted vertices in it. The orbits are in
+     * the order of their smallest vertices.
+     *
+     * @return the partition of the vertices into orbits
+     */
+    public List<int[]> getOrbits() {
+        int[] sizes = new int[orbitRepresentatives.length];
+        for (int representative : orbitRepresentatives) {
+            if (representative != -1) {
+                sizes[representative]++;
+            }
+        }
+        int[][] orbitsByRepresentative = new int[orbitRepresentatives.length][];
+        List<int[]> orbits = new ArrayList<int[]>();
+        int[] fill = new int[orbitRepresentatives.length];
+        for (int i = 0; i < orbitRepresentatives.length; i++) {
+            int representative = orbitRepresentatives[i];
+            if (representative == -1) continue;
+            if (representative == i) {
+                orbitsByRepresentative[i] = new int[sizes[i]];
+                orbits.add(orbitsByRepresentative[i]);
+            }
+            orbitsByRepresentative[representative][fill[representative]++] = i;
+        }
+        return orbits;
+    }
+
+    /**
+     * Get the automorphisms discovered during the search at the root, as
+     * permutations of the vertices. They all fix the root, and they may be 
+     * incomplete - even none, if the search did not branch (see
+     * {@link AbstractVertexSignature#getAutomorphisms(int)}).
+     *
+     * @return the automorphisms discovered during the search
+     */
+    public List<int[]> getAutomorphisms() {
+        return automorphisms;
+    }
+
+    public String toString() {
+        return root + " " + signature + " " + Arrays.toString(labels);
+    }
+
+}
@@ -0,0 +1,84 @@
+package signature;
+
+/**
+ * Counts of the work done by one canonization of a vertex signature - the
+ * leaves of the search tree that were reached, the automorphisms that were
+ * found by comparing leaves, and the branches that were skipped because an
+ * automorphism maps them onto a branch that was already searched.
+ *
+ * @author maclean
+ *
+ */
+public class CanonizationStatistics {
+
+    /**
+     * The number of leaves of the search tree, that is colorings printed
+     */
+    private int leafCount;
+
+    /**
+     * The number of automorphisms found
+     */
+    private int automorphismCount;
+
+    /**
+     * The number of branches that were not searched
+     */
+    private int prunedBranchCount;
+
+    public CanonizationStatistics() {
+        reset();
+    }
+
+    /**
+     * Set all the counts back to zero.
+     */
+    public void reset() {
+        leafCount = 0;
+        automorphismCount = 0;
+        prunedBranchCount = 0;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public int getAutomorphismCount() {
+        return automorphismCount;
+    }
+
+    public int getPrunedBranchCount() {
+        return prunedBranchCount;
+    }
+
+    /**
+     * Add the counts from another search, such as a branch that was searched
+     * in parallel.
+     *
+     * @param other the statistics to add
+     */
+    public void add(CanonizationStatistics other) {
+        leafCount += other.leafCount;
+        automorphismCount += other.automorphismCount;
+        prunedBranchCount += other.prunedBranchCount;
+    }
+
+    public void addLeaf() {
+        leafCount++;
+    }
+
+    public void addAutomorphism() {
+        automorphismCount++;
+    }
+
+    public void addPrunedBranch() {
+        prunedBranchCount++;
+    }
+
+    public String toString() {
+        return "leaves=" + leafCount
+            + " automorphisms=" + automorphismCount
+            + " pruned=" + prunedBranchCount;
+    }
+
+}
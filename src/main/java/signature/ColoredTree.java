@@ -1,6 +1,8 @@
 package signature;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
 
@@ -62,10 +64,22 @@ public class ColoredTree {
             }
         }
         
+        /**
+         * Visit this node and the nodes below it, in depth-first order. The
+         * nodes are kept on a stack rather than visited recursively, so that
+         * very deep trees can be visited on threads with small stacks.
+         * 
+         * @param visitor the visitor to call for each node
+         */
         public void accept(ColoredTreeVisitor visitor) {
-            visitor.visit(this);
-            for (Node child : this.children) {
-                child.accept(visitor);
+            Deque<Node> stack = new ArrayDeque<Node>();
+            stack.push(this);
+            while (!stack.isEmpty()) {
+                Node node = stack.pop();
+                visitor.visit(node);
+                for (int i = node.children.size() - 1; i >= 0; i--) {
+                    stack.push(node.children.get(i));
+                }
             }
         }
         
@@ -73,20 +87,37 @@ public class ColoredTree {
             return this.color != -1;
         }
         
+        /**
+         * Write the string for this node and the nodes below it. A null on
+         * the stack stands for the end of a list of children.
+         * 
+         * @param builder the builder to write into
+         */
         public void buildString(StringBuilder builder) {
-            if (this.isColored()) {
-                builder.append(this.edgeLabel);
-                builder.append("[").append(this.label);
-                builder.append(",").append(this.color).append("]");
-            } else {
-                builder.append(this.edgeLabel);
-                builder.append("[").append(this.label).append("]");
+            List<Node> stack = new ArrayList<Node>();
+            stack.add(this);
+            while (!stack.isEmpty()) {
+                Node node = stack.remove(stack.size() - 1);
+                if (node == null) {
+                    builder.append(")");
+                    continue;
+                }
+                if (node.isColored()) {
+                    builder.append(node.edgeLabel);
+                    builder.append("[").append(node.label);
+                    builder.append(",").append(node.color).append("]");
+                } else {
+                    builder.append(node.edgeLabel);
+                    builder.append("[").append(node.label).append("]");
+                }
+                if (node.children.size() > 0) {
+                    builder.append("(");
+                    stack.add(null);
+                    for (int i = node.children.size() - 1; i >= 0; i--) {
+                        stack.add(node.children.get(i));
+                    }
+                }
             }
-            if (this.children.size() > 0) { builder.append("("); }
-            for (Node child : this.children) {
-                child.buildString(builder);
-            }
-            if (this.children.size() > 0) { builder.append(")"); }
         }
         
         public String toString() {
@@ -0,0 +1,246 @@
+package signature;
+
+import java.util.Arrays;
+
+/**
+ * A colored tree read from a signature string, held in flat arrays rather than
+ * as {@link ColoredTree.Node} objects : a node is an index, numbered in the
+ * order the nodes are written, so the root is 0 and every parent comes before
+ * its children. The vertex symbols and edge labels are held as codes, and the
+ * children of each node are in one array with an offset for each node.
+ *
+ * Trees are made by a {@link SignatureParser}.
+ *
+ * @author maclean
+ *
+ */
+public class CompactColoredTree {
+
+    /**
+     * The default initial capacity for the node arrays
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int nodeCount;
+
+    /**
+     * The parent of each node, or -1 for the root
+     */
+    private int[] parents;
+
+    /**
+     * The height of each node, which is 1 for the root
+     */
+    private int[] heights;
+
+    private int[] vertexSymbolCodes;
+
+    /**
+     * The code of the label of the edge from each node to its parent
+     */
+    private int[] edgeLabelCodes;
+
+    /**
+     * The color of each node, or -1 if it is not colored
+     */
+    private int[] colors;
+
+    /**
+     * Offsets into <code>children</code> for each node
+     */
+    private int[] childOffsets;
+
+    /**
+     * The children of all the nodes, each node's in the order they are written
+     */
+    private int[] children;
+
+    private String[] vertexSymbols;
+
+    private String[] edgeLabels;
+
+    private int height;
+
+    private int maxColor;
+
+    CompactColoredTree() {
+        this.parents = new int[DEFAULT_CAPACITY];
+        this.heights = new int[DEFAULT_CAPACITY];
+        this.vertexSymbolCodes = new int[DEFAULT_CAPACITY];
+        this.edgeLabelCodes = new int[DEFAULT_CAPACITY];
+        this.colors = new int[DEFAULT_CAPACITY];
+    }
+
+    void addNode(int parent, int nodeHeight,
+            int vertexSymbolCode, int edgeLabelCode, int color) {
+        if (nodeCount == parents.length) {
+            int capacity = nodeCount * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            vertexSymbolCodes = Arrays.copyOf(vertexSymbolCodes, capacity);
+            edgeLabelCodes = Arrays.copyOf(edgeLabelCodes, capacity);
+            colors = Arrays.copyOf(colors, capacity);
+        }
+        parents[nodeCount] = parent;
+        heights[nodeCount] = nodeHeight;
+        vertexSymbolCodes[nodeCount] = vertexSymbolCode;
+        edgeLabelCodes[nodeCount] = edgeLabelCode;
+        colors[nodeCount] = color;
+        nodeCount++;
+
+        // as in the ColoredTree, the color of the root is not counted
+        if (parent != -1 && color > maxColor) {
+            maxColor = color;
+        }
+        if (nodeHeight > height) {
+            height = nodeHeight;
+        }
+    }
+
+    /**
+     * Make the child lists from the parents, with two counting passes.
+     *
+     * @param vertexSymbols the symbols for the vertex symbol codes
+     * @param edgeLabels the labels for the edge label codes
+     */
+    void compile(String[] vertexSymbols, String[] edgeLabels) {
+        this.vertexSymbols = vertexSymbols;
+        this.edgeLabels = edgeLabels;
+        childOffsets = new int[nodeCount + 1];
+        for (int node = 1; node < nodeCount; node++) {
+            childOffsets[parents[node] + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            childOffsets[node + 1] += childOffsets[node];
+        }
+        children = new int[Math.max(0, nodeCount - 1)];
+        int[] fill = Arrays.copyOf(childOffsets, nodeCount);
+        for (int node = 1; node < nodeCount; node++) {
+            children[fill[parents[node]]++] = node;
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @param node the index of a node
+     * @return the index of the parent, or -1 for the root
+     */
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    public int getChildCount(int node) {
+        return childOffsets[node + 1] - childOffsets[node];
+    }
+
+    /**
+     * @param node the index of a node
+     * @param i the position of the child, up to the child count
+     * @return the index of the i<sup>th</sup> child
+     */
+    public int getChild(int node, int i) {
+        return children[childOffsets[node] + i];
+    }
+
+    /**
+     * @param node the index of a node
+     * @return the height of the node, which is 1 for the root
+     */
+    public int getNodeHeight(int node) {
+        return heights[node];
+    }
+
+    public int getVertexSymbolCode(int node) {
+        return vertexSymbolCodes[node];
+    }
+
+    public String getVertexSymbol(int node) {
+        return vertexSymbols[vertexSymbolCodes[node]];
+    }
+
+    public int getEdgeLabelCode(int node) {
+        return edgeLabelCodes[node];
+    }
+
+    /**
+     * @param node the index of a node
+     * @return the label of the edge to the parent, or "" for the root
+     */
+    public String getEdgeLabel(int node) {
+        return edgeLabels[edgeLabelCodes[node]];
+    }
+
+    public int getColor(int node) {
+        return colors[node];
+    }
+
+    public boolean isColored(int node) {
+        return colors[node] != -1;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int numberOfColors() {
+        return maxColor;
+    }
+
+    /**
+     * Make a tree of node objects with the same nodes.
+     *
+     * @return a colored tree
+     */
+    public ColoredTree toColoredTree() {
+        ColoredTree tree = new ColoredTree(getVertexSymbol(0));
+        ColoredTree.Node[] nodes = new ColoredTree.Node[nodeCount];
+        nodes[0] = tree.getRoot();
+        for (int node = 1; node < nodeCount; node++) {
+            nodes[node] = tree.makeNode(getVertexSymbol(node),
+                    nodes[parents[node]], heights[node], colors[node],
+                    getEdgeLabel(node));
+            tree.updateHeight(heights[node]);
+        }
+        return tree;
+    }
+
+    /**
+     * Write the tree as a signature string. The color of the root is not
+     * written, as in the {@link ColoredTree}.
+     */
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        int[] stack = new int[nodeCount * 2];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+
+            // a negative entry stands for the end of a list of children
+            if (node < 0) {
+                builder.append(AbstractVertexSignature.END_BRANCH_SYMBOL);
+                continue;
+            }
+            builder.append(getEdgeLabel(node));
+            builder.append(AbstractVertexSignature.START_NODE_SYMBOL);
+            builder.append(getVertexSymbol(node));
+            if (node != 0 && isColored(node)) {
+                builder.append(',').append(colors[node]);
+            }
+            builder.append(AbstractVertexSignature.END_NODE_SYMBOL);
+            int childCount = getChildCount(node);
+            if (childCount > 0) {
+                builder.append(AbstractVertexSignature.START_BRANCH_SYMBOL);
+                stack[top++] = -1;
+                for (int i = childCount - 1; i >= 0; i--) {
+                    stack[top++] = getChild(node, i);
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,386 @@
+package signature;
+
+import java.util.Arrays;
+
+/**
+ * The compact storage behind a {@link DAG}. Nodes and arcs are held in flat
+ * int arrays rather than as objects : a node is just an index into the node
+ * arrays, and an arc is an index into the arc arrays. Once the DAG has been
+ * built, the layers and the parent and child lists of each node are compiled
+ * into CSR-style (offset, index) arrays.
+ *
+ * The order of the children of a node can be changed with
+ * {@link #setChildArcAt(int, int)} - this is how the children are kept sorted
+ * for printing.
+ *
+ * @author maclean
+ *
+ */
+public class CompactDAG {
+
+    /**
+     * The default initial capacity for the node and arc arrays
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The number of nodes added so far
+     */
+    private int nodeCount;
+
+    /**
+     * The vertex index for each node
+     */
+    private int[] nodeVertices;
+
+    /**
+     * The layer for each node
+     */
+    private int[] nodeLayers;
+
+    /**
+     * The number of layers, which is one more than the largest node layer
+     */
+    private int layerCount;
+
+    /**
+     * The number of arcs added so far
+     */
+    private int arcCount;
+
+    /**
+     * The child node at the head of each arc
+     */
+    private int[] arcChildren;
+
+    /**
+     * The parent node at the tail of each arc
+     */
+    private int[] arcParents;
+
+    /**
+     * The color of each arc, which is the color of the edge in the graph
+     */
+    private int[] arcColors;
+
+    /**
+     * True if the offset arrays are up to date with the node and arc arrays
+     */
+    private boolean compiled;
+
+    /**
+     * Offsets into <code>layerNodes</code> for each layer
+     */
+    private int[] layerOffsets;
+
+    /**
+     * The nodes, grouped by layer, in the order they were added
+     */
+    private int[] layerNodes;
+
+    /**
+     * Offsets into <code>parentArcs</code> for each node
+     */
+    private int[] parentOffsets;
+
+    /**
+     * The arcs to the parents of each node, grouped by node
+     */
+    private int[] parentArcs;
+
+    /**
+     * Offsets into <code>childArcs</code> for each node
+     */
+    private int[] childOffsets;
+
+    /**
+     * The arcs to the children of each node, grouped by node
+     */
+    private int[] childArcs;
+
+    /**
+     * The next free position in each group, while compiling
+     */
+    private int[] fill;
+
+    /**
+     * Make an empty store with the default capacity.
+     */
+    public CompactDAG() {
+        this(DEFAULT_CAPACITY, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Make an empty store with room for the given number of nodes and arcs.
+     * The arrays will grow if more are added.
+     *
+     * @param nodeCapacity the initial number of nodes
+     * @param arcCapacity the initial number of arcs
+     */
+    public CompactDAG(int nodeCapacity, int arcCapacity) {
+        nodeCapacity = Math.max(1, nodeCapacity);
+        arcCapacity = Math.max(1, arcCapacity);
+        this.nodeVertices = new int[nodeCapacity];
+        this.nodeLayers = new int[nodeCapacity];
+        this.arcChildren = new int[arcCapacity];
+        this.arcParents = new int[arcCapacity];
+        this.arcColors = new int[arcCapacity];
+        this.nodeCount = 0;
+        this.arcCount = 0;
+        this.layerCount = 0;
+        this.compiled = false;
+    }
+
+    /**
+     * Make a copy of another store, including the current order of the
+     * children of each node.
+     *
+     * @param other the store to copy
+     */
+    public CompactDAG(CompactDAG other) {
+        other.compile();
+        this.nodeCount = other.nodeCount;
+        this.nodeVertices = other.nodeVertices.clone();
+        this.nodeLayers = other.nodeLayers.clone();
+        this.layerCount = other.layerCount;
+        this.arcCount = other.arcCount;
+        this.arcChildren = other.arcChildren.clone();
+        this.arcParents = other.arcParents.clone();
+        this.arcColors = other.arcColors.clone();
+        this.layerOffsets = other.layerOffsets.clone();
+        this.layerNodes = other.layerNodes.clone();
+        this.parentOffsets = other.parentOffsets.clone();
+        this.parentArcs = other.parentArcs.clone();
+        this.childOffsets = other.childOffsets.clone();
+        this.childArcs = other.childArcs.clone();
+        this.compiled = true;
+    }
+
+    /**
+     * Remove all the nodes and arcs, keeping the arrays so that the store can
+     * be filled again without allocating.
+     */
+    public void clear() {
+        this.nodeCount = 0;
+        this.arcCount = 0;
+        this.layerCount = 0;
+        this.compiled = false;
+    }
+
+    /**
+     * Add a node for a vertex in a layer.
+     *
+     * @param vertexIndex the index of the vertex
+     * @param layer the layer of the node
+     * @return the index of the new node
+     */
+    public int addNode(int vertexIndex, int layer) {
+        if (nodeCount == nodeVertices.length) {
+            int capacity = nodeCount * 2;
+            nodeVertices = Arrays.copyOf(nodeVertices, capacity);
+            nodeLayers = Arrays.copyOf(nodeLayers, capacity);
+        }
+        nodeVertices[nodeCount] = vertexIndex;
+        nodeLayers[nodeCount] = layer;
+        if (layer >= layerCount) {
+            layerCount = layer + 1;
+        }
+        compiled = false;
+        return nodeCount++;
+    }
+
+    /**
+     * Add an arc from a parent node to a child node.
+     *
+     * @param childNode the index of the child node
+     * @param parentNode the index of the parent node
+     * @param edgeColor the color of the edge between the two vertices
+     * @return the index of the new arc
+     */
+    public int addArc(int childNode, int parentNode, int edgeColor) {
+        if (arcCount == arcChildren.length) {
+            int capacity = arcCount * 2;
+            arcChildren = Arrays.copyOf(arcChildren, capacity);
+            arcParents = Arrays.copyOf(arcParents, capacity);
+            arcColors = Arrays.copyOf(arcColors, capacity);
+        }
+        arcChildren[arcCount] = childNode;
+        arcParents[arcCount] = parentNode;
+        arcColors[arcCount] = edgeColor;
+        compiled = false;
+        return arcCount++;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getArcCount() {
+        return arcCount;
+    }
+
+    public int getLayerCount() {
+        return layerCount;
+    }
+
+    public int getVertexIndex(int node) {
+        return nodeVertices[node];
+    }
+
+    public int getLayer(int node) {
+        return nodeLayers[node];
+    }
+
+    public int getArcChild(int arc) {
+        return arcChildren[arc];
+    }
+
+    public int getArcParent(int arc) {
+        return arcParents[arc];
+    }
+
+    public int getArcColor(int arc) {
+        return arcColors[arc];
+    }
+
+    public void setArcColor(int arc, int edgeColor) {
+        arcColors[arc] = edgeColor;
+    }
+
+    /**
+     * Get the number of nodes in a layer.
+     *
+     * @param layer the layer index
+     * @return the size of the layer
+     */
+    public int getLayerSize(int layer) {
+        compile();
+        return layerOffsets[layer + 1] - layerOffsets[layer];
+    }
+
+    /**
+     * Get a node in a layer, in the order that the nodes were added.
+     *
+     * @param layer the layer index
+     * @param i the position of the node in the layer
+     * @return the index of the node
+     */
+    public int getLayerNode(int layer, int i) {
+        compile();
+        return layerNodes[layerOffsets[layer] + i];
+    }
+
+    public int getParentCount(int node) {
+        compile();
+        return parentOffsets[node + 1] - parentOffsets[node];
+    }
+
+    /**
+     * Get the arc to the i<sup>th</sup> parent of a node.
+     *
+     * @param node the node index
+     * @param i the position of the parent
+     * @return the index of the arc
+     */
+    public int getParentArc(int node, int i) {
+        compile();
+        return parentArcs[parentOffsets[node] + i];
+    }
+
+    public int getChildCount(int node) {
+        compile();
+        return childOffsets[node + 1] - childOffsets[node];
+    }
+
+    /**
+     * Get the arc to the i<sup>th</sup> child of a node, in the current order
+     * of the children.
+     *
+     * @param node the node index
+     * @param i the position of the child
+     * @return the index of the arc
+     */
+    public int getChildArc(int node, int i) {
+        compile();
+        return childArcs[childOffsets[node] + i];
+    }
+
+    /**
+     * Put an arc at a position in the child list of a node. The arc must be
+     * one of the arcs to the children of that node - this is only meant for
+     * re-ordering the children.
+     *
+     * @param node the node index
+     * @param i the position of the child
+     * @param arc the index of the arc to place there
+     */
+    public void setChildArcAt(int node, int i, int arc) {
+        compile();
+        childArcs[childOffsets[node] + i] = arc;
+    }
+
+    /**
+     * Build the offset arrays for the layers and for the parents and children
+     * of each node. This is a counting sort, so within each group the order
+     * is the order that the nodes or arcs were added.
+     */
+    private void compile() {
+        if (compiled) return;
+
+        layerOffsets = zeroed(layerOffsets, layerCount + 1);
+        layerNodes = ensureCapacity(layerNodes, nodeCount);
+        fill = ensureCapacity(fill, Math.max(layerCount, nodeCount));
+        for (int node = 0; node < nodeCount; node++) {
+            layerOffsets[nodeLayers[node] + 1]++;
+        }
+        for (int layer = 0; layer < layerCount; layer++) {
+            layerOffsets[layer + 1] += layerOffsets[layer];
+        }
+        System.arraycopy(layerOffsets, 0, fill, 0, layerCount);
+        for (int node = 0; node < nodeCount; node++) {
+            layerNodes[fill[nodeLayers[node]]++] = node;
+        }
+
+        parentOffsets = zeroed(parentOffsets, nodeCount + 1);
+        childOffsets = zeroed(childOffsets, nodeCount + 1);
+        parentArcs = ensureCapacity(parentArcs, arcCount);
+        childArcs = ensureCapacity(childArcs, arcCount);
+        for (int arc = 0; arc < arcCount; arc++) {
+            parentOffsets[arcChildren[arc] + 1]++;
+            childOffsets[arcParents[arc] + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            parentOffsets[node + 1] += parentOffsets[node];
+            childOffsets[node + 1] += childOffsets[node];
+        }
+        System.arraycopy(parentOffsets, 0, fill, 0, nodeCount);
+        for (int arc = 0; arc < arcCount; arc++) {
+            parentArcs[fill[arcChildren[arc]]++] = arc;
+        }
+        System.arraycopy(childOffsets, 0, fill, 0, nodeCount);
+        for (int arc = 0; arc < arcCount; arc++) {
+            childArcs[fill[arcParents[arc]]++] = arc;
+        }
+        compiled = true;
+    }
+
+    private static int[] ensureCapacity(int[] array, int size) {
+        if (array == null || array.length < size) {
+            return new int[size];
+        }
+        return array;
+    }
+
+    /**
+     * Get an array of at least this size, with the first <code>size</code>
+     * entries set to zero.
+     */
+    private static int[] zeroed(int[] array, int size) {
+        if (array == null || array.length < size) {
+            return new int[size];
+        }
+        Arrays.fill(array, 0, size, 0);
+        return array;
+    }
+
+}
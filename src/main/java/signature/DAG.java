@@ -1,96 +1,156 @@
 package signature;
 
+import java.util.AbstractList;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A directed acyclic graph that is the core data structure of a signature. It
  * is the DAG that is canonized by sorting its layers of nodes.
- * 
+ *
+ * The nodes and arcs are stored in a {@link CompactDAG}, and are referred to
+ * by their int index. The {@link Node} objects are views onto that storage,
+ * made on demand for visitors and other code that walks the DAG by object.
+ *
  * @author maclean
  *
  */
 public class DAG implements Iterable<List<DAG.Node>> {
-    
+
     /**
      * The direction up and down the DAG. UP is from leaves to root.
      *
      */
     public enum Direction { UP, DOWN };
-	
+
 	/**
-	 * A node of the directed acyclic graph
+	 * A node of the directed acyclic graph. This is a view of a node in the
+	 * compact storage, so the parent and child lists are backed by the DAG.
 	 *
 	 */
 	public class Node implements VisitableDAG {
-		
+
 		/**
 		 * The index of the vertex in the graph. Note that for signatures that
 		 * cover only part of the graph (with a height less than the diameter)
-		 * this index may have to be mapped to the original index 
+		 * this index may have to be mapped to the original index
 		 */
 		public final int vertexIndex;
-		
+
 		/**
 		 * The parent nodes in the DAG
 		 */
 		public final List<Node> parents;
-		
+
 		/**
 		 * The child nodes in the DAG
 		 */
 		public final List<Node> children;
-		
+
 		/**
 		 * What layer this node is in
 		 */
 		public final int layer;
-		
+
 		/**
 		 * Labels for the edges between this node and the parent nodes
 		 */
 		public final Map<Integer, Integer> edgeColors;
-		
+
 		/**
 		 * The final computed invariant, used for sorting children when printing
 		 */
 		public int invariant;
-		
+
 		/**
-		 * Make a Node that refers to a vertex, in a layer, and with a label.
-		 * 
+		 * The index of this node in the compact storage
+		 */
+		private final int index;
+
+		/**
+		 * Make a view of the node with this index.
+		 *
+		 * @param index the index of the node in the compact storage
+		 */
+		private Node(int index) {
+			this.index = index;
+			this.vertexIndex = store.getVertexIndex(index);
+			this.layer = store.getLayer(index);
+			this.parents = new NodeList(index, false);
+			this.children = new NodeList(index, true);
+			this.edgeColors = new EdgeColorMap(index);
+			this.invariant = sortInvariants[index];
+		}
+
+		/**
+		 * Make a node that refers to a vertex, in a layer. Since the nodes
+		 * are held in the compact storage, the node is added to the DAG - in
+		 * the layer with its layer index - just as by {@link DAG#makeNode}.
+		 *
 		 * @param vertexIndex the graph vertex index
 		 * @param layer the layer of this Node
+		 * @deprecated use {@link DAG#makeNode(int, int)}
 		 */
+		@Deprecated
 		public Node(int vertexIndex, int layer) {
-			this.vertexIndex = vertexIndex;
-			this.layer = layer;
-			this.parents = new ArrayList<Node>();
-			this.children = new ArrayList<Node>();
-			this.edgeColors = new HashMap<Integer, Integer>();
+		    this(addNode(vertexIndex, layer));
+		    setView(this);
+		}
+
+		/**
+		 * @return the index of this node in the compact storage
+		 */
+		public int getIndex() {
+		    return index;
 		}
-	
-        public void addParent(Node node) {
-			this.parents.add(node);
+
+		/**
+		 * Add a parent to this node. The parent and child lists are both
+		 * made from the arcs of the DAG, so this adds the arc (with an edge
+		 * color of 0) unless it is already there - which also makes this node
+		 * a child of the parent.
+		 *
+		 * @param node the parent node
+		 * @deprecated use {@link DAG#addRelation(Node, Node)}
+		 */
+		@Deprecated
+		public void addParent(Node node) {
+		    if (findArc(index, node.index) == -1) {
+		        addRelation(this, node);
+		    }
 		}
-		
+
+		/**
+		 * Add a child to this node, adding the arc unless it is already there
+		 * (see {@link #addParent(Node)}).
+		 *
+		 * @param node the child node
+		 * @deprecated use {@link DAG#addRelation(Node, Node)}
+		 */
+		@Deprecated
 		public void addChild(Node node) {
-			this.children.add(node);
+		    if (findArc(node.index, index) == -1) {
+		        addRelation(node, this);
+		    }
 		}
-		
+
 		public void addEdgeColor(int partnerIndex, int edgeColor) {
             this.edgeColors.put(partnerIndex, edgeColor);
         }
-		
+
 		public void accept(DAGVisitor visitor) {
 		    visitor.visit(this);
 		}
-		
+
 		/* (non-Javadoc)
 		 * @see java.lang.Object#toString()
 		 */
@@ -111,32 +171,134 @@ public class DAG implements Iterable<List<DAG.Node>> {
                 childString.append(child.vertexIndex).append(',');
             }
             if (childString.length() > 1) {
-                childString.setCharAt(childString.length() - 1, ']');    
+                childString.setCharAt(childString.length() - 1, ']');
             } else {
                 childString.append(']');
             }
-            
-            return vertexIndex + " " 
+
+            return vertexIndex + " "
                   + " (" + parentString + ", " + childString + ")";
 		}
 
 	}
-	
+
+	/**
+	 * The parents or children of a node, as a list of node views. The child
+	 * list can be re-ordered with <code>set</code>, so that it can be sorted.
+	 */
+	private class NodeList extends AbstractList<Node> {
+
+	    private final int node;
+
+	    private final boolean isChildList;
+
+	    public NodeList(int node, boolean isChildList) {
+	        this.node = node;
+	        this.isChildList = isChildList;
+	    }
+
+        @Override
+        public Node get(int i) {
+            if (isChildList) {
+                return getNode(store.getArcChild(store.getChildArc(node, i)));
+            } else {
+                return getNode(store.getArcParent(store.getParentArc(node, i)));
+            }
+        }
+
+        @Override
+        public int size() {
+            if (isChildList) {
+                return store.getChildCount(node);
+            } else {
+                return store.getParentCount(node);
+            }
+        }
+
+        @Override
+        public Node set(int i, Node child) {
+            if (!isChildList) {
+                throw new UnsupportedOperationException(
+                        "parents can not be re-ordered");
+            }
+            Node previous = get(i);
+            store.setChildArcAt(node, i, findArc(child.index, node));
+            return previous;
+        }
+	}
+
+	/**
+	 * The colors of the edges to the parents and children of a node, keyed by
+	 * the vertex index of the partner node.
+	 */
+	private class EdgeColorMap extends AbstractMap<Integer, Integer> {
+
+	    private final int node;
+
+	    public EdgeColorMap(int node) {
+	        this.node = node;
+	    }
+
+        @Override
+        public Set<Map.Entry<Integer, Integer>> entrySet() {
+            Set<Map.Entry<Integer, Integer>> entries =
+                new HashSet<Map.Entry<Integer, Integer>>();
+            for (int i = 0; i < store.getParentCount(node); i++) {
+                int arc = store.getParentArc(node, i);
+                entries.add(new AbstractMap.SimpleImmutableEntry<Integer, Integer>(
+                        store.getVertexIndex(store.getArcParent(arc)),
+                        store.getArcColor(arc)));
+            }
+            for (int i = 0; i < store.getChildCount(node); i++) {
+                int arc = store.getChildArc(node, i);
+                entries.add(new AbstractMap.SimpleImmutableEntry<Integer, Integer>(
+                        store.getVertexIndex(store.getArcChild(arc)),
+                        store.getArcColor(arc)));
+            }
+            return entries;
+        }
+
+        /**
+         * Set the color of the arcs between this node and any parent or child
+         * with the vertex index <code>partnerIndex</code>. The arcs must
+         * already have been added.
+         */
+        @Override
+        public Integer put(Integer partnerIndex, Integer edgeColor) {
+            Integer previous = null;
+            for (int i = 0; i < store.getParentCount(node); i++) {
+                int arc = store.getParentArc(node, i);
+                if (store.getVertexIndex(store.getArcParent(arc)) == partnerIndex) {
+                    previous = store.getArcColor(arc);
+                    store.setArcColor(arc, edgeColor);
+                }
+            }
+            for (int i = 0; i < store.getChildCount(node); i++) {
+                int arc = store.getChildArc(node, i);
+                if (store.getVertexIndex(store.getArcChild(arc)) == partnerIndex) {
+                    previous = store.getArcColor(arc);
+                    store.setArcColor(arc, edgeColor);
+                }
+            }
+            return previous;
+        }
+	}
+
 	/**
 	 * An arc of the directed acyclic graph.
 	 *
 	 */
 	public class Arc {
-		
+
 		public final int a;
-		
+
 		public final int b;
-		
+
 		public Arc(int a, int b) {
 			this.a = a;
 			this.b = b;
 		}
-		
+
 		public boolean equals(Object other) {
 			if (other instanceof Arc) {
 				Arc o = (Arc) other;
@@ -146,19 +308,24 @@ public class DAG implements Iterable<List<DAG.Node>> {
 				return false;
 			}
 		}
+
+		public int hashCode() {
+		    // the same for (a, b) and (b, a), to match equals
+		    return (a < b) ? (31 * a) + b : (31 * b) + a;
+		}
 	}
-	
+
 	/**
 	 * Comparator for nodes based on String labels.
 	 *
 	 */
 	public class NodeStringLabelComparator implements Comparator<Node> {
-	    
+
 	    /**
 	     * The labels for vertices.
 	     */
 	    public String[] vertexLabels;
-	    
+
 	    public NodeStringLabelComparator(String[] vertexLabels) {
 	        this.vertexLabels = vertexLabels;
 	    }
@@ -180,18 +347,18 @@ public class DAG implements Iterable<List<DAG.Node>> {
             }
         }
 	}
-	
+
 	/**
      * Comparator for nodes based on Integer labels.
      *
      */
     public class NodeIntegerLabelComparator implements Comparator<Node> {
-        
+
         /**
          * The labels for vertices.
          */
         public int[] vertexLabels;
-        
+
         public NodeIntegerLabelComparator(int[] vertexLabels) {
             this.vertexLabels = vertexLabels;
         }
@@ -213,113 +380,289 @@ public class DAG implements Iterable<List<DAG.Node>> {
             }
         }
     }
-	
+
 	/**
 	 * Used to sort nodes, it is public so that the AbstractVertexSignature
-	 * can use it 
+	 * can use it
 	 */
 	public Comparator<Node> nodeComparator;
-	
+
 	/**
-	 * The layers of the DAG
+	 * The nodes and arcs of the DAG
 	 */
-	private List<List<Node>> layers;
-	
+	private CompactDAG store;
+
+	/**
+	 * Views of the nodes, made on demand
+	 */
+	private Node[] views;
+
+	/**
+	 * The int labels of the vertices - either int invariants, or the codes of
+	 * the vertex symbols in a {@link SymbolTable}
+	 */
+	private int[] intLabels;
+
+	/**
+	 * The node invariants that the children are sorted by. These are copied
+	 * from the invariants at the end of each refinement.
+	 */
+	private int[] sortInvariants;
+
+	/**
+	 * A count that goes up whenever the sort invariants or the structure
+	 * change, so that a node whose children were sorted at the current
+	 * version does not need sorting again
+	 */
+	private int sortVersion;
+
+	/**
+	 * The sort version that the children of each node were last sorted at
+	 */
+	private int[] sortedVersions;
+
 	/**
-	 * The counts of parents for vertices  
+	 * The counts of parents for vertices
 	 */
 	private int[] parentCounts;
-	
+
 	/**
-     * The counts of children for vertices  
+     * The counts of children for vertices
      */
     private int[] childCounts;
-	
+
+    /**
+     * The number of vertices, from the first, whose parent and child counts
+     * may not be zero - so that resetting only has to clear these
+     */
+    private int countedVertexCount;
+
 	private Invariants invariants;
-	
+
 	/**
-	 * Convenience reference to the nodes of the DAG
+	 * Ranks the nodes and vertices when the invariants are refined
 	 */
-	private List<DAG.Node> nodes;
-	
+	private PartitionRefiner refiner;
+
+	/**
+	 * The vertex invariants before a round of refinement, to check for change
+	 */
+	private int[] oldInvariants;
+
 	/**
 	 * A convenience record of the number of vertices
 	 */
 	private int vertexCount;
-	
+
     /**
      * Create a DAG from a graph, starting at the root vertex.
-     * 
+     *
      * @param rootVertexIndex the vertex to start from
      * @param graphVertexCount the number of vertices in the original graph
      */
 	public DAG(int rootVertexIndex, int graphVertexCount) {
-		this.layers = new ArrayList<List<Node>>();
-		this.nodes = new ArrayList<Node>();
-		List<Node> rootLayer = new ArrayList<Node>();
-		Node rootNode = new Node(rootVertexIndex, 0);
-		rootLayer.add(rootNode);
-		this.layers.add(rootLayer);
-		this.nodes.add(rootNode);
-		
+		this.store = new CompactDAG(graphVertexCount, graphVertexCount);
+		this.store.addNode(rootVertexIndex, 0);
+		this.sortInvariants = new int[1];
+		this.sortVersion = 1;
+		this.sortedVersions = new int[1];
+		this.refiner = new PartitionRefiner(store);
+
 		this.vertexCount = 1;
 		this.parentCounts = new int[graphVertexCount];
 		this.childCounts = new int[graphVertexCount];
 	}
-	
+
+	/**
+	 * Clear this DAG and start it again from a new root, so that it can be
+	 * built for another signature. The arrays are kept, and only grow if the
+	 * new DAG is larger, so building many signatures one after the other does
+	 * not allocate a new DAG for each.
+	 *
+	 * @param rootVertexIndex the vertex to start from
+	 * @param graphVertexCount the number of vertices in the original graph
+	 */
+	public void reset(int rootVertexIndex, int graphVertexCount) {
+	    store.clear();
+	    store.addNode(rootVertexIndex, 0);
+	    refiner.reset();
+	    sortVersion++;
+	    views = null;
+	    intLabels = null;
+	    nodeComparator = null;
+	    vertexCount = 1;
+	    if (parentCounts.length < graphVertexCount) {
+	        parentCounts = new int[graphVertexCount];
+	        childCounts = new int[graphVertexCount];
+	    } else {
+	        Arrays.fill(parentCounts, 0, countedVertexCount, 0);
+	        Arrays.fill(childCounts, 0, countedVertexCount, 0);
+	    }
+	    countedVertexCount = 0;
+	}
+
+	/**
+	 * Make a copy of a DAG, with its own invariants, child order, and refiner,
+	 * so that it can be searched independently of the original. The labels
+	 * and vertex counts are shared, as they do not change once it is built.
+	 *
+	 * @param other the DAG to copy
+	 */
+	private DAG(DAG other) {
+	    this.store = new CompactDAG(other.store);
+	    this.sortInvariants = other.sortInvariants.clone();
+	    this.sortVersion = other.sortVersion;
+	    this.sortedVersions = other.sortedVersions.clone();
+	    this.refiner = new PartitionRefiner(store);
+	    this.refiner.setIncremental(other.refiner.isIncremental());
+	    this.intLabels = other.intLabels;
+	    this.nodeComparator = other.nodeComparator;
+	    this.parentCounts = other.parentCounts;
+	    this.childCounts = other.childCounts;
+	    this.vertexCount = other.vertexCount;
+	    if (other.invariants != null) {
+	        this.invariants = (Invariants) other.invariants.clone();
+	    }
+	}
+
+	/**
+	 * Copy this DAG, for a search that runs alongside the search of this one.
+	 *
+	 * @return a copy with its own state
+	 */
+	public DAG copy() {
+	    return new DAG(this);
+	}
+
 	public Iterator<List<Node>> iterator() {
+	    List<List<Node>> layers = new ArrayList<List<Node>>();
+	    for (int layer = 0; layer < store.getLayerCount(); layer++) {
+	        layers.add(getLayer(layer));
+	    }
 		return layers.iterator();
 	}
-	
+
+	/**
+	 * Get the nodes in a layer, as views.
+	 *
+	 * @param layer the index of the layer
+	 * @return a list of nodes
+	 */
+	public List<DAG.Node> getLayer(int layer) {
+	    List<Node> layerNodes = new ArrayList<Node>();
+	    for (int i = 0; i < store.getLayerSize(layer); i++) {
+	        layerNodes.add(getNode(store.getLayerNode(layer, i)));
+	    }
+	    return layerNodes;
+	}
+
 	public List<DAG.Node> getRootLayer() {
-	    return this.layers.get(0);
+	    return getLayer(0);
 	}
-	
+
 	public DAG.Node getRoot() {
-		return this.layers.get(0).get(0);
+		return getNode(0);
+	}
+
+	/**
+	 * Get the view of the node with this index.
+	 *
+	 * @param index the index of the node
+	 * @return a node view
+	 */
+	public DAG.Node getNode(int index) {
+	    if (views == null || views.length < store.getNodeCount()) {
+	        Node[] newViews = new Node[store.getNodeCount()];
+	        if (views != null) {
+	            System.arraycopy(views, 0, newViews, 0, views.length);
+	        }
+	        views = newViews;
+	    }
+	    if (views[index] == null) {
+	        views[index] = new Node(index);
+	    }
+	    return views[index];
+	}
+
+	/**
+	 * Keep a view that was made by the public node constructor, so that
+	 * {@link #getNode(int)} gives the same object for its index.
+	 *
+	 * @param node the view
+	 */
+	private void setView(Node node) {
+	    getNode(node.index);
+	    views[node.index] = node;
+	}
+
+	/**
+	 * @return the compact storage of the nodes and arcs
+	 */
+	public CompactDAG getStore() {
+	    return store;
+	}
+
+	public int getNodeCount() {
+	    return store.getNodeCount();
+	}
+
+	/**
+	 * @return the number of vertices, once the invariants are initialized
+	 */
+	public int getVertexCount() {
+	    return vertexCount;
+	}
+
+	public int getLayerCount() {
+	    return store.getLayerCount();
+	}
+
+	/**
+	 * Get the vertex index for a node.
+	 *
+	 * @param node the index of the node
+	 * @return the (internal) vertex index
+	 */
+	public int getVertexIndex(int node) {
+	    return store.getVertexIndex(node);
+	}
+
+	public int getChildCount(int node) {
+	    return store.getChildCount(node);
 	}
-	
+
+	/**
+	 * Get the i<sup>th</sup> child of a node, in the current order.
+	 *
+	 * @param node the index of the node
+	 * @param i the position of the child
+	 * @return the index of the child node
+	 */
+	public int getChild(int node, int i) {
+	    return store.getArcChild(store.getChildArc(node, i));
+	}
+
 	public Invariants copyInvariants() {
 	    return (Invariants) this.invariants.clone();
 	}
-	
+
 	/**
 	 * Initialize the invariants, assuming that the vertex count for the
-	 * signature is the same as the length of the label array.
+	 * signature is the same as the length of the label array. The labels are
+	 * interned into a {@link SymbolTable}, whose codes have the same order as
+	 * the strings, so the DAG is then the same as one initialized with the
+	 * codes.
 	 */
 	public void initializeWithStringLabels(String[] vertexLabels) {
-	    vertexCount = vertexLabels.length;
-	    this.invariants = new Invariants(vertexCount, nodes.size());
-	    
-        List<InvariantIntStringPair> pairs = 
-            new ArrayList<InvariantIntStringPair>();
-        for (int i = 0; i < vertexCount; i++) {
-            String l = vertexLabels[i];
-            int p = parentCounts[i];
-            pairs.add(new InvariantIntStringPair(l, p, i));
-        }
-        Collections.sort(pairs);
-        
-        if (pairs.size() == 0) return;
-        
-        nodeComparator = new NodeStringLabelComparator(vertexLabels);
-        int order = 1;
-        InvariantIntStringPair first = pairs.get(0);
-        invariants.setVertexInvariant(first.getOriginalIndex(), order);
-        for (int i = 1; i < pairs.size(); i++) {
-            InvariantIntStringPair a = pairs.get(i - 1);
-            InvariantIntStringPair b = pairs.get(i);
-            if (!a.equals(b)) {
-                order++;
-            }
-            invariants.setVertexInvariant(b.getOriginalIndex(), order);
-        }
-    }
-	
+	    SymbolTable table = new SymbolTable(Arrays.asList(vertexLabels));
+	    initializeWithIntLabels(table.encode(vertexLabels));
+	}
+
 	public void initializeWithIntLabels(int[] vertexLabels) {
 	    vertexCount = vertexLabels.length;
-        this.invariants = new Invariants(vertexCount, nodes.size());
-        
+	    initializeInvariants();
+        this.intLabels = vertexLabels;
+
         List<InvariantIntIntPair> pairs = new ArrayList<InvariantIntIntPair>();
         for (int i = 0; i < vertexCount; i++) {
             int l = vertexLabels[i];
@@ -327,9 +670,9 @@ public class DAG implements Iterable<List<DAG.Node>> {
             pairs.add(new InvariantIntIntPair(l, p, i));
         }
         Collections.sort(pairs);
-        
+
         if (pairs.size() == 0) return;
-        
+
         nodeComparator = new NodeIntegerLabelComparator(vertexLabels);
         int order = 1;
         InvariantIntIntPair first = pairs.get(0);
@@ -343,121 +686,231 @@ public class DAG implements Iterable<List<DAG.Node>> {
             invariants.setVertexInvariant(b.getOriginalIndex(), order);
         }
 	}
-	
+
+	/**
+	 * Start the invariants and the sort invariants again, reusing the arrays
+	 * of the current ones if they are the right size.
+	 */
+	private void initializeInvariants() {
+	    int nodeCount = store.getNodeCount();
+	    if (invariants != null
+	            && invariants.colors.length == vertexCount
+	            && invariants.nodeInvariants.length == nodeCount) {
+	        invariants.clear();
+	    } else {
+	        invariants = new Invariants(vertexCount, nodeCount);
+	    }
+	    if (sortInvariants.length < nodeCount) {
+	        sortInvariants = new int[nodeCount];
+	    } else {
+	        Arrays.fill(sortInvariants, 0);
+	    }
+	    sortVersion++;
+	}
+
     public void setColor(int vertexIndex, int color) {
 	    this.invariants.setColor(vertexIndex, color);
 	}
-	
+
 	public int occurences(int vertexIndex) {
 	    int count = 0;
-	    for (Node node : nodes) {
-	        if (node.vertexIndex == vertexIndex) {
+	    for (int node = 0; node < store.getNodeCount(); node++) {
+	        if (store.getVertexIndex(node) == vertexIndex) {
 	            count++;
 	        }
 	    }
 	    return count;
 	}
-	
+
+	/**
+	 * Mark the state of the invariants, so that later changes can be undone
+	 * with {@link #rollbackInvariants(int)}.
+	 *
+	 * @return the mark
+	 */
+	public int markInvariants() {
+	    return invariants.mark();
+	}
+
+	/**
+	 * Undo the changes to the invariants since a mark.
+	 *
+	 * @param mark a value returned by {@link #markInvariants()}
+	 */
+	public void rollbackInvariants(int mark) {
+	    invariants.rollback(mark);
+	}
+
 	public void setInvariants(Invariants invariants) {
 //	    this.invariants = invariants;
 	    this.invariants.colors = invariants.colors.clone();
 	    this.invariants.nodeInvariants = invariants.nodeInvariants.clone();
 	    this.invariants.vertexInvariants = invariants.vertexInvariants.clone();
 	}
-	
+
 	/**
 	 * Create and return a DAG.Node, while setting some internal references to
-	 * the same data. Does not add the node to a layer.
-	 * 
+	 * the same data. The node is added to the layer with its layer index,
+	 * which is made if necessary.
+	 *
 	 * @param vertexIndex the index of the vertex in the original graph
 	 * @param layer the index of the layer
-	 * @return the new node 
+	 * @return the new node
 	 */
-	
 	public DAG.Node makeNode(int vertexIndex, int layer) {
-        DAG.Node node = new DAG.Node(vertexIndex, layer);
-        this.nodes.add(node);
-        return node;
+        return getNode(addNode(vertexIndex, layer));
     }
-	
+
 	/**
 	 * Create and return a DAG.Node, while setting some internal references to
-     * the same data. Note: also adds the node to a layer, creating it if 
+     * the same data. Note: also adds the node to a layer, creating it if
      * necessary.
-     * 
+     *
 	 * @param vertexIndex the index of the vertex in the original graph
      * @param layer the index of the layer
      * @return the new node
 	 */
 	public DAG.Node makeNodeInLayer(int vertexIndex, int layer) {
-        DAG.Node node = this.makeNode(vertexIndex, layer);
-        if (layers.size() <= layer) {
-          this.layers.add(new ArrayList<DAG.Node>());
-        }
-        this.layers.get(layer).add(node);
-        return node;
+        return this.makeNode(vertexIndex, layer);
     }
-	
+
+	/**
+	 * Add a node to the DAG, without making a view for it. Nodes are grouped
+	 * into layers by their layer index.
+	 *
+	 * @param vertexIndex the index of the vertex in the original graph
+	 * @param layer the index of the layer
+	 * @return the index of the new node
+	 */
+	public int addNode(int vertexIndex, int layer) {
+	    int node = store.addNode(vertexIndex, layer);
+	    if (sortInvariants.length < store.getNodeCount()) {
+	        int[] newSortInvariants = new int[sortInvariants.length * 2];
+	        System.arraycopy(
+	                sortInvariants, 0, newSortInvariants, 0, sortInvariants.length);
+	        sortInvariants = newSortInvariants;
+	    }
+	    if (sortedVersions.length < sortInvariants.length) {
+	        sortedVersions = Arrays.copyOf(sortedVersions, sortInvariants.length);
+	    }
+	    sortVersion++;
+	    return node;
+	}
+
 	public void addRelation(DAG.Node childNode, DAG.Node parentNode) {
-	    childNode.parents.add(parentNode);
-	    parentCounts[childNode.vertexIndex]++;
-	    childCounts[parentNode.vertexIndex]++;
-	    parentNode.children.add(childNode);
+	    addRelation(childNode.index, parentNode.index, 0);
+	}
+
+	/**
+	 * Add an arc between two nodes, with the color of the edge between their
+	 * vertices.
+	 *
+	 * @param childNode the index of the child node
+	 * @param parentNode the index of the parent node
+	 * @param edgeColor the color of the edge
+	 */
+	public void addRelation(int childNode, int parentNode, int edgeColor) {
+	    store.addArc(childNode, parentNode, edgeColor);
+	    sortVersion++;
+	    int childVertex = store.getVertexIndex(childNode);
+	    int parentVertex = store.getVertexIndex(parentNode);
+	    parentCounts[childVertex]++;
+	    childCounts[parentVertex]++;
+	    countedVertexCount = Math.max(countedVertexCount, 
+	            Math.max(childVertex, parentVertex) + 1);
 	}
-	
+
+	/**
+	 * Find the arc between a child node and a parent node.
+	 *
+	 * @param childNode the index of the child node
+	 * @param parentNode the index of the parent node
+	 * @return the index of the arc, or -1 if there is none
+	 */
+	private int findArc(int childNode, int parentNode) {
+	    for (int i = 0; i < store.getParentCount(childNode); i++) {
+	        int arc = store.getParentArc(childNode, i);
+	        if (store.getArcParent(arc) == parentNode) {
+	            return arc;
+	        }
+	    }
+	    return -1;
+	}
+
+	/**
+	 * Compare two nodes by the label of their vertices, and then by their
+	 * invariants - this is the same order as the <code>nodeComparator</code>.
+	 *
+	 * @param nodeA the index of a node
+	 * @param nodeB the index of another node
+	 * @return a negative, zero, or positive number
+	 */
+	private int compareNodes(int nodeA, int nodeB) {
+	    int vertexA = store.getVertexIndex(nodeA);
+	    int vertexB = store.getVertexIndex(nodeB);
+	    int a = intLabels[vertexA];
+	    int b = intLabels[vertexB];
+	    int c = (a == b)? 0 : (a < b? -1 : 1);
+	    if (c == 0) {
+	        int invA = sortInvariants[nodeA];
+	        int invB = sortInvariants[nodeB];
+	        return (invA == invB)? 0 : (invA < invB? -1 : 1);
+	    } else {
+	        return c;
+	    }
+	}
+
+	/**
+	 * Sort the children of a node, in place. The sort is stable, so children
+	 * that compare equal stay in the order they were in before - which also
+	 * means that sorting again without changing the sort invariants does
+	 * nothing, so it is skipped.
+	 *
+	 * @param node the index of the node
+	 */
+	public void sortChildren(int node) {
+	    if (sortedVersions[node] == sortVersion) return;
+	    sortedVersions[node] = sortVersion;
+	    int childCount = store.getChildCount(node);
+	    for (int i = 1; i < childCount; i++) {
+	        int arc = store.getChildArc(node, i);
+	        int child = store.getArcChild(arc);
+	        int j = i - 1;
+	        while (j >= 0 && compareNodes(
+	                store.getArcChild(store.getChildArc(node, j)), child) > 0) {
+	            store.setChildArcAt(node, j + 1, store.getChildArc(node, j));
+	            j--;
+	        }
+	        store.setChildArcAt(node, j + 1, arc);
+	    }
+	}
+
+	/**
+	 * Count the parents of each vertex index in the final signature string.
+	 *
+	 * @return the parent counts, indexed by vertex
+	 * @see DAGTraversal
+	 */
 	public int[] getParentsInFinalString() {
-	    int[] counts = new int[vertexCount];
-	    getParentsInFinalString(
-	            counts, getRoot(), null,  new ArrayList<DAG.Arc>());
-	    return counts;
-	}
-	
-	private void getParentsInFinalString(int[] counts, DAG.Node node,
-            DAG.Node parent, List<DAG.Arc> arcs) {
-	    if (parent != null) {
-	        counts[node.vertexIndex]++;
-	    }
-	    Collections.sort(node.children, nodeComparator);
-	    for (DAG.Node child : node.children) {
-            DAG.Arc arc = new Arc(node.vertexIndex, child.vertexIndex);
-            if (arcs.contains(arc)) {
-                continue;
-            } else {
-                arcs.add(arc);
-                getParentsInFinalString(counts, child, node, arcs);
-            }
-        }
-	          
+	    DAGTraversal traversal = new DAGTraversal(this);
+	    traversal.traverse();
+	    return traversal.getParentCounts();
 	}
-	
+
 	 /**
      * Count the occurrences of each vertex index in the final signature string.
      * Since duplicate DAG edges are removed, this count will not be the same as
      * the simple count of occurrences in the DAG before printing.
-     *  
-     * @return
+     *
+     * @return the occurrences, indexed by vertex
+     * @see DAGTraversal
      */
     public int[] getOccurrences() {
-        int[] occurences = new int[vertexCount];
-        getOccurences(occurences, getRoot(), null, new ArrayList<DAG.Arc>());
-        return occurences;
+        DAGTraversal traversal = new DAGTraversal(this);
+        traversal.traverse();
+        return traversal.getOccurrences();
     }
-    
-    private void getOccurences(int[] occurences, DAG.Node node,
-            DAG.Node parent, List<DAG.Arc> arcs) {
-        occurences[node.vertexIndex]++;
-        Collections.sort(node.children, nodeComparator);
-        for (DAG.Node child : node.children) {
-            DAG.Arc arc = new Arc(node.vertexIndex, child.vertexIndex);
-            if (arcs.contains(arc)) {
-                continue;
-            } else {
-                arcs.add(arc);
-                getOccurences(occurences, child, node, arcs);
-            }
-        }
-    }
-	
+
 	public List<InvariantInt> getInvariantPairs(int[] parents) {
 	    List<InvariantInt> pairs = new ArrayList<InvariantInt>();
 	    for (int i = 0; i < this.vertexCount; i++) {
@@ -471,23 +924,91 @@ public class DAG implements Iterable<List<DAG.Node>> {
 	    Collections.sort(pairs);
 	    return pairs;
 	}
-	
+
+	/**
+	 * Test if a permutation of the vertices is an automorphism of this DAG :
+	 * that is, if it keeps the vertex labels, and maps each node to a node in
+	 * the same layer and each arc to an arc with the same color.
+	 *
+	 * @param permutation the image of each vertex
+	 * @return true if the permutation maps the DAG onto itself
+	 */
+	public boolean isAutomorphism(int[] permutation) {
+	    if (permutation.length != vertexCount) return false;
+	    for (int v = 0; v < vertexCount; v++) {
+	        int w = permutation[v];
+	        if (intLabels != null && intLabels[v] != intLabels[w]) return false;
+	    }
+
+	    // the nodes are keyed by (layer, vertex)
+	    int nodeCount = store.getNodeCount();
+	    Map<Long, Integer> nodesByKey = new HashMap<Long, Integer>();
+	    for (int node = 0; node < nodeCount; node++) {
+	        long key = ((long) store.getLayer(node) * vertexCount)
+	                        + store.getVertexIndex(node);
+	        nodesByKey.put(key, node);
+	    }
+	    int[] nodeImages = new int[nodeCount];
+	    for (int node = 0; node < nodeCount; node++) {
+	        long key = ((long) store.getLayer(node) * vertexCount)
+	                        + permutation[store.getVertexIndex(node)];
+	        Integer image = nodesByKey.get(key);
+	        if (image == null) return false;
+	        nodeImages[node] = image;
+	    }
+
+	    // the arcs are keyed by (child, parent), with their color as value
+	    Map<Long, Integer> arcColors = new HashMap<Long, Integer>();
+	    for (int arc = 0; arc < store.getArcCount(); arc++) {
+	        long key = ((long) store.getArcChild(arc) * nodeCount)
+	                        + store.getArcParent(arc);
+	        arcColors.put(key, store.getArcColor(arc));
+	    }
+	    for (int arc = 0; arc < store.getArcCount(); arc++) {
+	        long key = ((long) nodeImages[store.getArcChild(arc)] * nodeCount)
+	                        + nodeImages[store.getArcParent(arc)];
+	        Integer color = arcColors.get(key);
+	        if (color == null || color != store.getArcColor(arc)) return false;
+	    }
+	    return true;
+	}
+
 	public int colorFor(int vertexIndex) {
 		return this.invariants.getColor(vertexIndex);
 	}
-	
+
 	public void accept(DAGVisitor visitor) {
 	    this.getRoot().accept(visitor);
 	}
 
+	/**
+	 * Add a layer of nodes. The nodes are grouped into layers by the layer
+	 * index they were made with, so the nodes are already in the DAG; this
+	 * only checks that they make up the next layer.
+	 *
+	 * @param layer a layer of nodes made by this DAG
+	 * @throws IllegalArgumentException if the nodes are not all in the last
+	 *         layer of this DAG
+	 * @deprecated nodes are put in their layer by {@link #makeNode(int, int)}
+	 */
+	@Deprecated
 	public void addLayer(List<Node> layer) {
-		this.layers.add(layer);
+	    int lastLayer = store.getLayerCount() - 1;
+	    for (Node node : layer) {
+	        if (node.index >= store.getNodeCount()
+	                || getNode(node.index) != node
+	                || node.layer != lastLayer) {
+	            throw new IllegalArgumentException(
+	                    "node " + node.vertexIndex + " is not in layer "
+	                    + lastLayer + " of this DAG");
+	        }
+	    }
 	}
-	
+
 	public List<Integer> createOrbit(int[] parents) {
-	    
+
 	    // get the orbits
-	    Map<Integer, List<Integer>> orbits = 
+	    Map<Integer, List<Integer>> orbits =
 	        new HashMap<Integer, List<Integer>>();
 	    for (int j = 0; j < vertexCount; j++) {
 	        if (parents[j] >= 2) {
@@ -502,9 +1023,9 @@ public class DAG implements Iterable<List<DAG.Node>> {
 	            orbit.add(j);
 	        }
 	    }
-	    
+
 //	    System.out.println("Orbits " + orbits);
-	    
+
 	    // find the largest orbit
 	    if (orbits.isEmpty()) {
 	        return new ArrayList<Integer>();
@@ -512,83 +1033,81 @@ public class DAG implements Iterable<List<DAG.Node>> {
 	        List<Integer> maxOrbit = null;
 	        List<Integer> invariants = new ArrayList<Integer>(orbits.keySet());
 	        Collections.sort(invariants);
-	        
+
 	        for (int invariant : invariants) {
 	            List<Integer> orbit = orbits.get(invariant);
-	            if (maxOrbit == null || orbit.size() > maxOrbit.size()) { 
+	            if (maxOrbit == null || orbit.size() > maxOrbit.size()) {
 	                maxOrbit = orbit;
 	            }
 	        }
 	        return maxOrbit;
 	    }
 	}
-	
+
 	public void computeVertexInvariants() {
-	    Map<Integer, int[]> layerInvariants = new HashMap<Integer, int[]>();
-	    for (int i = 0; i < this.nodes.size(); i++) {
-	        DAG.Node node = this.nodes.get(i);
-	        int j = node.vertexIndex;
-	        int[] layerInvariantsJ;
-	        if (layerInvariants.containsKey(j)) {
-	            layerInvariantsJ = layerInvariants.get(j);
-	        } else {
-	            layerInvariantsJ = new int[this.layers.size()];
-	            layerInvariants.put(j, layerInvariantsJ);
-	        }
-	        layerInvariantsJ[node.layer] = invariants.getNodeInvariant(i); 
-	    }
-	    
-	    List<InvariantArray> invariantLists = new ArrayList<InvariantArray>();
-	    for (int i : layerInvariants.keySet()) {
-	        InvariantArray invArr = new InvariantArray(layerInvariants.get(i), i); 
-	        invariantLists.add(invArr);
-	    }
-	    Collections.sort(invariantLists);
-	    
-	    int order = 1;
-	    int first = invariantLists.get(0).originalIndex;
-	    invariants.setVertexInvariant(first, 1);
-	    for (int i = 1; i < invariantLists.size(); i++) {
-	        InvariantArray a = invariantLists.get(i - 1);
-	        InvariantArray b = invariantLists.get(i);
-	        if (!a.equals(b)) {
-	            order++;
-	        }
-	        invariants.setVertexInvariant(b.originalIndex, order);
-	    }
+	    refiner.computeVertexInvariants(invariants, vertexCount);
+	}
 
+	/**
+	 * Get the refiner for the invariants, which has the counts of nodes
+	 * re-ranked by the last call to {@link #updateVertexInvariants()}.
+	 *
+	 * @return the refiner for this DAG
+	 */
+	public PartitionRefiner getRefiner() {
+	    return refiner;
 	}
-	
+
 	public void updateVertexInvariants() {
-	    int[] oldInvariants = new int[vertexCount];
+	    refiner.resetCounts();
+	    if (oldInvariants == null || oldInvariants.length < vertexCount) {
+	        oldInvariants = new int[vertexCount];
+	    }
 	    boolean invariantSame = true;
 	    while (invariantSame) {
-	        oldInvariants = invariants.getVertexInvariantCopy();
-	        
+	        System.arraycopy(invariants.getVertexInvariants(), 0,
+	                oldInvariants, 0, vertexCount);
+
 	        updateNodeInvariants(Direction.UP); // From the leaves to the root
-	        
-	        // This is needed here otherwise there will be cases where a node 
-	        // invariant is reset when the tree is traversed down. 
+
+	        // This is needed here otherwise there will be cases where a node
+	        // invariant is reset when the tree is traversed down.
 	        // This is not mentioned in Faulon's paper.
-	        computeVertexInvariants(); 
-	        
+	        computeVertexInvariants();
+
 	        updateNodeInvariants(Direction.DOWN); // From the root to the leaves
 	        computeVertexInvariants();
-	        
-	        invariantSame = 
+
+	        invariantSame =
 	            checkInvariantChange(
 	                    oldInvariants, invariants.getVertexInvariants());
 //	        System.out.println(
 //	               "invs\t" +
 //	               java.util.Arrays.toString(invariants.getVertexInvariants()));
 	    }
-	    
-	    // finally, copy the node invariants into the nodes, for easy sorting
-	    for (int i = 0; i < this.nodes.size(); i++) {
-	        this.nodes.get(i).invariant = invariants.getNodeInvariant(i);
+
+	    // finally, copy the node invariants for sorting, and into any views
+	    int nodeCount = store.getNodeCount();
+	    boolean sortChanged = false;
+	    for (int i = 0; i < nodeCount; i++) {
+	        int invariant = invariants.getNodeInvariant(i);
+	        if (sortInvariants[i] != invariant) {
+	            sortInvariants[i] = invariant;
+	            sortChanged = true;
+	        }
+	    }
+	    if (sortChanged) {
+	        sortVersion++;
+	    }
+	    if (views != null) {
+	        for (int i = 0; i < views.length; i++) {
+	            if (views[i] != null) {
+	                views[i].invariant = sortInvariants[i];
+	            }
+	        }
 	    }
 	}
-	
+
 	public boolean checkInvariantChange(int[] a, int[] b) {
 	    for (int i = 0; i < vertexCount; i++) {
 	        if (a[i] != b[i]) {
@@ -597,80 +1116,47 @@ public class DAG implements Iterable<List<DAG.Node>> {
         }
 	    return false;
 	}
-	
+
 	public void updateNodeInvariants(DAG.Direction direction) {
 	    int start, end, increment;
 	    if (direction == Direction.UP) {
-	        start = this.layers.size() - 1;
+	        start = store.getLayerCount() - 1;
             // The root node is not included but it doesn't matter since it
             // is always alone.
-	        end = -1; 
+	        end = -1;
 	        increment = -1;
 	    } else {
 	        start = 0;
-	        end = this.layers.size();
+	        end = store.getLayerCount();
 	        increment = 1;
 	    }
-	    
+
         for (int i = start; i != end; i += increment) {
-           this.updateLayer(this.layers.get(i), direction);
+           this.updateLayer(i, direction);
         }
-        
+
+	}
+
+	public void updateLayer(int layer, DAG.Direction direction) {
+	    refiner.updateLayer(invariants, vertexCount, layer, direction);
 	}
-	
+
+	/**
+	 * Update the node invariants of a layer, given as its nodes. The nodes
+	 * are ranked as a whole layer, so the list should be a layer of this DAG
+	 * (as from {@link #getLayer(int)}).
+	 *
+	 * @param layer the nodes of a layer
+	 * @param direction the direction to take the relatives of the nodes from
+	 * @deprecated use {@link #updateLayer(int, Direction)}
+	 */
+	@Deprecated
 	public void updateLayer(List<DAG.Node> layer, DAG.Direction direction) {
-	    List<InvariantList> nodeInvariantList = 
-            new ArrayList<InvariantList>();
-        for (int i = 0; i < layer.size(); i++) {
-            DAG.Node layerNode = layer.get(i);
-            int x = layerNode.vertexIndex;
-            InvariantList nodeInvariant = 
-                new InvariantList(nodes.indexOf(layerNode));
-            nodeInvariant.add(this.invariants.getColor(x));
-            nodeInvariant.add(this.invariants.getVertexInvariant(x));
-            
-            List<Integer> relativeInvariants = new ArrayList<Integer>();
-
-            // If we go up we should check the children.
-            List<DAG.Node> relatives = (direction == Direction.UP) ? 
-                    layerNode.children : layerNode.parents;
-            for (Node relative : relatives) {
-                int j = this.nodes.indexOf(relative);
-                int inv = this.invariants.getNodeInvariant(j);
-//                System.out.println(layerNode.edgeColors + " getting " + relative.vertexIndex);
-                int edgeColor;
-                if (direction == Direction.UP) {
-                    edgeColor = relative.edgeColors.get(layerNode.vertexIndex);
-                } else {
-                    edgeColor = layerNode.edgeColors.get(relative.vertexIndex);
-                }
-//            	relativeInvariants.add(inv * edgeColor);
-//                relativeInvariants.add(inv * (edgeColor + 1));
-                
-                relativeInvariants.add(inv);
-                relativeInvariants.add(vertexCount + 1 + edgeColor);
-            }
-            Collections.sort(relativeInvariants);
-            nodeInvariant.addAll(relativeInvariants);
-            nodeInvariantList.add(nodeInvariant);
-        }
-        
-        Collections.sort(nodeInvariantList);
-//        System.out.println(nodeInvariantList + " for layer " + layer + " " + direction);
-        
-        int order = 1;
-        int first = nodeInvariantList.get(0).originalIndex;
-        this.invariants.setNodeInvariant(first, order);
-        for (int i = 1; i < nodeInvariantList.size(); i++) {
-            InvariantList a = nodeInvariantList.get(i - 1);
-            InvariantList b = nodeInvariantList.get(i);
-            if (!a.equals(b)) {
-                order++;
-            }
-            this.invariants.setNodeInvariant(b.originalIndex, order);
-        }
+	    if (!layer.isEmpty()) {
+	        updateLayer(layer.get(0).layer, direction);
+	    }
 	}
-	
+
 	public String toString() {
 		StringBuffer buffer = new StringBuffer();
 		for (List<Node> layer : this) {
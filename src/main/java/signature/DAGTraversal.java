@@ -0,0 +1,268 @@
+package signature;
+
+import java.util.Arrays;
+
+/**
+ * A single walk over a {@link DAG} in signature string order, which collects
+ * everything the canonization needs from that order at once : how many times
+ * each vertex is reached from a parent, how many times it appears at all, and
+ * the sequence of nodes and branches that the signature string is printed
+ * from.
+ *
+ * The walk goes depth first from the root, visiting the children of each node
+ * in sorted order, and uses each edge of the graph only once - the first time
+ * it is reached. The used edges are kept in a hashed set, and the children of
+ * a node are only re-sorted if the node invariants have changed since they
+ * were last sorted.
+ *
+ * The recorded sequence is a list of events : a node index for each visit,
+ * or {@link #OPEN_BRANCH} and {@link #CLOSE_BRANCH} around the children of a
+ * node. Printing is then a loop over the events, with no further walking.
+ *
+ * A traversal can be run many times over the same DAG, for example once for
+ * each coloring in a search; its arrays are kept between runs.
+ *
+ * @author maclean
+ *
+ */
+public class DAGTraversal {
+
+    /**
+     * The event for the start of the children of a node
+     */
+    public static final int OPEN_BRANCH = -1;
+
+    /**
+     * The event for the end of the children of a node
+     */
+    public static final int CLOSE_BRANCH = -2;
+
+    private final DAG dag;
+
+    /**
+     * The edges (as vertex pairs) already used in this walk
+     */
+    private final VertexPairSet usedArcs;
+
+    /**
+     * For each vertex, the number of times it is visited from a parent
+     */
+    private int[] parentCounts;
+
+    /**
+     * For each vertex, the number of times it is visited
+     */
+    private int[] occurrences;
+
+    /**
+     * The node visited, or a branch symbol, for each event
+     */
+    private int[] events;
+
+    /**
+     * The parent node of the visit for each event, or -1
+     */
+    private int[] eventParents;
+
+    /**
+     * The arc from the parent node of the visit for each event, or -1
+     */
+    private int[] eventArcs;
+
+    private int eventCount;
+
+    private int visitCount;
+
+    /**
+     * The stack of nodes whose children are being walked, with the position
+     * of the next child and whether the branch has been opened
+     */
+    private int[] stackNodes;
+
+    private int[] stackNext;
+
+    private boolean[] stackOpened;
+
+    /**
+     * Make a traversal for a DAG. Nothing is walked until
+     * {@link #traverse()} is called.
+     *
+     * @param dag the DAG to walk
+     */
+    public DAGTraversal(DAG dag) {
+        this.dag = dag;
+        this.usedArcs = new VertexPairSet();
+        this.parentCounts = new int[0];
+        this.occurrences = new int[0];
+        this.events = new int[16];
+        this.eventParents = new int[16];
+        this.eventArcs = new int[16];
+        this.stackNodes = new int[16];
+        this.stackNext = new int[16];
+        this.stackOpened = new boolean[16];
+    }
+
+    /**
+     * Walk the DAG from the root, replacing the results of any previous walk.
+     */
+    public void traverse() {
+        int vertexCount = dag.getVertexCount();
+        if (parentCounts.length != vertexCount) {
+            parentCounts = new int[vertexCount];
+            occurrences = new int[vertexCount];
+        } else {
+            Arrays.fill(parentCounts, 0);
+            Arrays.fill(occurrences, 0);
+        }
+        usedArcs.clear();
+        eventCount = 0;
+        visitCount = 0;
+
+        int top = 0;
+        CompactDAG store = dag.getStore();
+        visit(0, -1, -1);
+        push(top, 0);
+        while (top >= 0) {
+            int node = stackNodes[top];
+            if (stackNext[top] < store.getChildCount(node)) {
+                int arc = store.getChildArc(node, stackNext[top]++);
+                int child = store.getArcChild(arc);
+                if (usedArcs.add(
+                        dag.getVertexIndex(node), dag.getVertexIndex(child))) {
+                    if (!stackOpened[top]) {
+                        addEvent(OPEN_BRANCH, -1, -1);
+                        stackOpened[top] = true;
+                    }
+                    visit(child, node, arc);
+                    push(++top, child);
+                }
+            } else {
+                if (stackOpened[top]) {
+                    addEvent(CLOSE_BRANCH, -1, -1);
+                }
+                top--;
+            }
+        }
+    }
+
+    private void visit(int node, int parent, int arc) {
+        int vertex = dag.getVertexIndex(node);
+        occurrences[vertex]++;
+        if (parent != -1) {
+            parentCounts[vertex]++;
+        }
+        addEvent(node, parent, arc);
+        visitCount++;
+
+        // the children are printed according to their invariants
+        dag.sortChildren(node);
+    }
+
+    private void push(int top, int node) {
+        if (top == stackNodes.length) {
+            int capacity = top * 2;
+            stackNodes = Arrays.copyOf(stackNodes, capacity);
+            stackNext = Arrays.copyOf(stackNext, capacity);
+            stackOpened = Arrays.copyOf(stackOpened, capacity);
+        }
+        stackNodes[top] = node;
+        stackNext[top] = 0;
+        stackOpened[top] = false;
+    }
+
+    private void addEvent(int event, int parent, int arc) {
+        if (eventCount == events.length) {
+            int capacity = eventCount * 2;
+            events = Arrays.copyOf(events, capacity);
+            eventParents = Arrays.copyOf(eventParents, capacity);
+            eventArcs = Arrays.copyOf(eventArcs, capacity);
+        }
+        events[eventCount] = event;
+        eventParents[eventCount] = parent;
+        eventArcs[eventCount] = arc;
+        eventCount++;
+    }
+
+    /**
+     * Get the number of times each vertex is reached from a parent in the
+     * signature string. The array belongs to the traversal, and is only
+     * valid until the next walk.
+     *
+     * @return the parent counts, indexed by vertex
+     */
+    public int[] getParentCounts() {
+        return parentCounts;
+    }
+
+    /**
+     * Get the number of times each vertex appears in the signature string.
+     * The array belongs to the traversal, and is only valid until the next
+     * walk.
+     *
+     * @return the occurrences, indexed by vertex
+     */
+    public int[] getOccurrences() {
+        return occurrences;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Get an event : either the index of a visited node, or one of the branch
+     * symbols.
+     *
+     * @param i the position of the event
+     * @return a node index, OPEN_BRANCH or CLOSE_BRANCH
+     */
+    public int getEvent(int i) {
+        return events[i];
+    }
+
+    /**
+     * Get the parent node that an event's node was visited from.
+     *
+     * @param i the position of a visit event
+     * @return the parent node index, or -1 for the root
+     */
+    public int getEventParent(int i) {
+        return eventParents[i];
+    }
+
+    /**
+     * Get the arc that an event's node was visited along, for looking up
+     * anything stored per arc (such as the edge label).
+     *
+     * @param i the position of a visit event
+     * @return the index of the arc in the DAG store, or -1 for the root
+     */
+    public int getEventArc(int i) {
+        return eventArcs[i];
+    }
+
+    /**
+     * @return the number of node visits, which is the length of the print
+     * order
+     */
+    public int getVisitCount() {
+        return visitCount;
+    }
+
+    /**
+     * Get the vertex of each visited node, in the order they are printed.
+     *
+     * @return a new array of vertex indices
+     */
+    public int[] getPrintOrder() {
+        int[] order = new int[visitCount];
+        int j = 0;
+        for (int i = 0; i < eventCount; i++) {
+            if (events[i] >= 0) {
+                order[j++] = dag.getVertexIndex(events[i]);
+            }
+        }
+        return order;
+    }
+
+}
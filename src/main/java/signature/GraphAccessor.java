@@ -0,0 +1,74 @@
+package signature;
+
+/**
+ * A read-only view of a graph in terms of ints alone, for building signatures
+ * without making an array for each vertex or converting edge labels to
+ * colors for each edge. A signature that has an accessor (see
+ * {@link AbstractVertexSignature#getGraphAccessor()}) uses it instead of
+ * <code>getConnected</code>, <code>getEdgeLabel</code> and
+ * <code>getVertexSymbol</code>.
+ *
+ * The neighbours of each vertex must be in increasing order of vertex index,
+ * and the label codes must be codes in the symbol tables that the signature
+ * gives for its vertices and edges.
+ *
+ * @author maclean
+ *
+ */
+public interface GraphAccessor {
+
+    /**
+     * @return the number of vertices in the graph
+     */
+    public int getVertexCount();
+
+    /**
+     * @param vertexIndex the index of a vertex
+     * @return the number of neighbours of the vertex
+     */
+    public int degree(int vertexIndex);
+
+    /**
+     * Get a neighbour of a vertex.
+     *
+     * @param vertexIndex the index of a vertex
+     * @param i the position of the neighbour, from zero up to the degree
+     * @return the index of the i<sup>th</sup> neighbour, in increasing order
+     */
+    public int neighbor(int vertexIndex, int i);
+
+    /**
+     * Find the position of a vertex among the neighbours of another.
+     *
+     * @param vertexIndex the index of a vertex
+     * @param otherVertexIndex the index of the possible neighbour
+     * @return the position of the neighbour, or -1 if they are not connected
+     */
+    public int indexOf(int vertexIndex, int otherVertexIndex);
+
+    /**
+     * Get the color of the edge to a neighbour of a vertex - the same color
+     * that <code>convertEdgeLabelToColor</code> would give for its label.
+     *
+     * @param vertexIndex the index of a vertex
+     * @param i the position of the neighbour
+     * @return the color of the edge
+     */
+    public int edgeColor(int vertexIndex, int i);
+
+    /**
+     * Get the code of the label of the edge to a neighbour of a vertex.
+     *
+     * @param vertexIndex the index of a vertex
+     * @param i the position of the neighbour
+     * @return the code of the edge label
+     */
+    public int edgeLabelCode(int vertexIndex, int i);
+
+    /**
+     * @param vertexIndex the index of a vertex
+     * @return the code of the symbol of the vertex
+     */
+    public int vertexLabelCode(int vertexIndex);
+
+}
@@ -2,7 +2,28 @@ package signature;
 
 import java.util.Arrays;
 
+/**
+ * The colors and invariants of the vertices of a graph, and the invariants of
+ * the nodes of a DAG made from that graph.
+ * 
+ * Changes can be undone by taking a {@link #mark()} and later rolling back to
+ * it with {@link #rollback(int)}. While there is a mark, each setter that
+ * changes a value records the old value on a trail, so a branch of a search
+ * only costs memory for the entries it changes.
+ * 
+ * @author maclean
+ *
+ */
 public class Invariants implements Cloneable {
+    
+    /**
+     * The kinds of entry on the trail, stored in the low bits of the index
+     */
+    private static final int COLOR = 0;
+    
+    private static final int NODE_INVARIANT = 1;
+    
+    private static final int VERTEX_INVARIANT = 2;
 
     /**
      * The colors assigned to vertices of the input graph
@@ -19,6 +40,26 @@ public class Invariants implements Cloneable {
      */
     public int[] vertexInvariants;
     
+    /**
+     * The changed entries, as (index << 2 | kind), in the order they changed
+     */
+    private int[] trailEntries;
+    
+    /**
+     * The value of each changed entry before it was changed
+     */
+    private int[] trailValues;
+    
+    /**
+     * The number of changes on the trail
+     */
+    private int trailSize;
+    
+    /**
+     * The number of marks that have not been rolled back
+     */
+    private int markCount;
+    
     public Invariants(int vertexCount, int nodeCount) {
         this.colors = new int[vertexCount];
         Arrays.fill(colors, -1);
@@ -26,11 +67,90 @@ public class Invariants implements Cloneable {
         this.vertexInvariants = new int[vertexCount];
     }
     
+    /**
+     * Make invariants that use these arrays, without copying them.
+     */
+    private Invariants(int[] colors, int[] nodeInvariants, int[] vertexInvariants) {
+        this.colors = colors;
+        this.nodeInvariants = nodeInvariants;
+        this.vertexInvariants = vertexInvariants;
+    }
+    
+    /**
+     * Set the colors back to -1 and the invariants to zero, and forget any
+     * marks, so that these invariants can be used again for a DAG of the same
+     * size.
+     */
+    public void clear() {
+        Arrays.fill(colors, -1);
+        Arrays.fill(nodeInvariants, 0);
+        Arrays.fill(vertexInvariants, 0);
+        trailSize = 0;
+        markCount = 0;
+    }
+    
+    /**
+     * Mark the current state, so that later changes can be undone. Each mark
+     * should be rolled back, innermost first.
+     * 
+     * @return the mark, to pass to {@link #rollback(int)}
+     */
+    public int mark() {
+        markCount++;
+        return trailSize;
+    }
+    
+    /**
+     * Undo all the changes made since a mark, in reverse order.
+     * 
+     * @param mark a value returned by {@link #mark()}
+     */
+    public void rollback(int mark) {
+        while (trailSize > mark) {
+            trailSize--;
+            int entry = trailEntries[trailSize];
+            int index = entry >>> 2;
+            int value = trailValues[trailSize];
+            switch (entry & 3) {
+                case COLOR: colors[index] = value; break;
+                case NODE_INVARIANT: nodeInvariants[index] = value; break;
+                case VERTEX_INVARIANT: vertexInvariants[index] = value; break;
+            }
+        }
+        if (markCount > 0) {
+            markCount--;
+        }
+    }
+    
+    /**
+     * @return the number of changes that would be undone by rolling back to
+     * the outermost mark
+     */
+    public int getTrailSize() {
+        return trailSize;
+    }
+    
+    private void record(int index, int kind, int oldValue) {
+        if (trailEntries == null) {
+            trailEntries = new int[16];
+            trailValues = new int[16];
+        } else if (trailSize == trailEntries.length) {
+            trailEntries = Arrays.copyOf(trailEntries, trailSize * 2);
+            trailValues = Arrays.copyOf(trailValues, trailSize * 2);
+        }
+        trailEntries[trailSize] = (index << 2) | kind;
+        trailValues[trailSize] = oldValue;
+        trailSize++;
+    }
+    
     public int getColor(int vertexIndex) {
         return colors[vertexIndex];
     }
     
     public void setColor(int vertexIndex, int color) {
+        if (markCount > 0 && colors[vertexIndex] != color) {
+            record(vertexIndex, COLOR, colors[vertexIndex]);
+        }
         colors[vertexIndex] = color;
     }
     
@@ -47,6 +167,9 @@ public class Invariants implements Cloneable {
     }
     
     public void setVertexInvariant(int vertexIndex, int value) {
+        if (markCount > 0 && vertexInvariants[vertexIndex] != value) {
+            record(vertexIndex, VERTEX_INVARIANT, vertexInvariants[vertexIndex]);
+        }
         vertexInvariants[vertexIndex] = value;
     }
     
@@ -55,15 +178,19 @@ public class Invariants implements Cloneable {
     }
     
     public void setNodeInvariant(int nodeIndex, int value) {
+        if (markCount > 0 && nodeInvariants[nodeIndex] != value) {
+            record(nodeIndex, NODE_INVARIANT, nodeInvariants[nodeIndex]);
+        }
         nodeInvariants[nodeIndex] = value;
     }
     
+    /**
+     * Copy the colors and invariants. The copy has no trail or marks.
+     */
     public Object clone() {
-        Invariants copy = new Invariants(colors.length, vertexInvariants.length);
-        copy.colors = (int[]) colors.clone();
-        copy.nodeInvariants = (int[]) nodeInvariants.clone();
-        copy.vertexInvariants = (int[]) vertexInvariants.clone();
-        return copy;
+        return new Invariants((int[]) colors.clone(), 
+                              (int[]) nodeInvariants.clone(), 
+                              (int[]) vertexInvariants.clone());
     }
     
     public String toString() {
@@ -0,0 +1,124 @@
+package signature;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A partition of the vertices of a graph into orbits, kept as a union-find
+ * forest. Each automorphism that is added joins every vertex to its image,
+ * so the partition is the orbits of the group that the added automorphisms
+ * generate. The root of each tree is always the smallest vertex in it.
+ *
+ * @author maclean
+ *
+ */
+public class OrbitPartition {
+
+    private final int[] parents;
+
+    private int orbitCount;
+
+    /**
+     * Make a partition with each vertex in an orbit of its own.
+     *
+     * @param vertexCount the number of vertices
+     */
+    public OrbitPartition(int vertexCount) {
+        this.parents = new int[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            parents[i] = i;
+        }
+        this.orbitCount = vertexCount;
+    }
+
+    /**
+     * Join the orbits of two vertices.
+     *
+     * @param a a vertex
+     * @param b another vertex
+     * @return true if they were in different orbits
+     */
+    public boolean union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return false;
+        }
+        parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        orbitCount--;
+        return true;
+    }
+
+    /**
+     * Join each vertex with its image under an automorphism.
+     *
+     * @param automorphism a permutation of the vertices
+     */
+    public void addAutomorphism(int[] automorphism) {
+        for (int v = 0; v < automorphism.length; v++) {
+            union(v, automorphism[v]);
+        }
+    }
+
+    /**
+     * @param vertexIndex a vertex
+     * @return the smallest vertex in the same orbit
+     */
+    public int find(int vertexIndex) {
+        int v = vertexIndex;
+        while (parents[v] != v) {
+            parents[v] = parents[parents[v]];
+            v = parents[v];
+        }
+        return v;
+    }
+
+    public boolean inSameOrbit(int a, int b) {
+        return find(a) == find(b);
+    }
+
+    public int getOrbitCount() {
+        return orbitCount;
+    }
+
+    public int getVertexCount() {
+        return parents.length;
+    }
+
+    /**
+     * @return the smallest vertex in the orbit of each vertex
+     */
+    public int[] getRepresentatives() {
+        int[] representatives = new int[parents.length];
+        for (int i = 0; i < parents.length; i++) {
+            representatives[i] = find(i);
+        }
+        return representatives;
+    }
+
+    /**
+     * Get the orbits, each as the sorted vertices in it. The orbits are in
+     * the order of their smallest vertices.
+     *
+     * @return the partition of the vertices into orbits
+     */
+    public List<int[]> getOrbits() {
+        int[] sizes = new int[parents.length];
+        for (int i = 0; i < parents.length; i++) {
+            sizes[find(i)]++;
+        }
+        int[][] orbitsByRoot = new int[parents.length][];
+        int[] fill = new int[parents.length];
+        List<int[]> orbits = new ArrayList<int[]>(orbitCount);
+        for (int i = 0; i < parents.length; i++) {
+            int root = find(i);
+            if (root == i) {
+                orbitsByRoot[i] = new int[sizes[i]];
+                orbits.add(orbitsByRoot[i]);
+            }
+            orbitsByRoot[root][fill[root]++] = i;
+        }
+        return orbits;
+    }
+
+}
@@ -0,0 +1,681 @@
+package signature;
+
+import java.util.Arrays;
+
+/**
+ * The refinement engine for the invariants of a {@link DAG}. This ranks the
+ * nodes of a layer by their neighbourhood, and the vertices by the invariants
+ * of their nodes, using only int arrays. The keys for a layer are packed into
+ * a single buffer and ranked with a stable merge sort over index arrays, so
+ * that once the buffers have grown to the size of the DAG no further
+ * allocation is done.
+ *
+ * The ranks are the same as those computed with {@link InvariantList} and
+ * {@link InvariantArray}, so the signature strings do not change.
+ *
+ * In incremental mode (the default) the refiner keeps, for each layer and
+ * direction, the inputs it last ranked that layer from and the ranks it gave.
+ * A layer is only re-ranked if one of its inputs - the colors and invariants
+ * of its vertices, or the invariants of the layer its keys are made from - has
+ * changed; otherwise the kept ranks are put back. This is a memoized sweep
+ * rather than a work-list : every layer of every sweep is still visited, and
+ * its inputs compared, but only the layers whose inputs differ are sorted.
+ * Since a refinement usually only changes the layers around the vertices 
+ * whose classes split, most of the sorting in each sweep (and all of it in
+ * the final, confirming, sweep) is skipped. The counts of re-ranked and 
+ * skipped nodes show how much work this saves.
+ *
+ * @author maclean
+ *
+ */
+public class PartitionRefiner {
+
+    /**
+     * The largest value that autoboxing shares an Integer instance for. The
+     * node keys used to be compared as lists of boxed Integers with '==', so
+     * two equal entries outside the Integer cache never matched. The canonical
+     * strings depend on this, so the same rule is kept here.
+     */
+    private static final int BOXED_CACHE_HIGH = findBoxedCacheHigh();
+
+    /**
+     * The smallest value that autoboxing shares an Integer instance for
+     */
+    private static final int BOXED_CACHE_LOW = -128;
+
+    /**
+     * The DAG whose invariants are refined
+     */
+    private final CompactDAG dag;
+
+    /**
+     * The node count when the vertex to node index was last made
+     */
+    private int indexedNodeCount;
+
+    /**
+     * The vertex count when the vertex to node index was last made
+     */
+    private int indexedVertexCount;
+
+    /**
+     * Offsets into <code>vertexNodes</code> for each vertex
+     */
+    private int[] vertexNodeOffsets;
+
+    /**
+     * The nodes of each vertex, grouped by vertex and in layer order
+     */
+    private int[] vertexNodes;
+
+    /**
+     * The next free position for each vertex, while the index is made
+     */
+    private int[] vertexFill;
+
+    /**
+     * The packed keys for the nodes of a layer
+     */
+    private int[] keys;
+
+    /**
+     * The start of the key for each position in the layer
+     */
+    private int[] keyStarts;
+
+    /**
+     * The length of the key for each position in the layer
+     */
+    private int[] keyLengths;
+
+    /**
+     * The positions (or vertices) being ranked, in sorted order
+     */
+    private int[] order;
+
+    /**
+     * Scratch space for the merge sort
+     */
+    private int[] mergeBuffer;
+
+    /**
+     * If true, only re-rank the layers whose inputs have changed
+     */
+    private boolean incremental;
+
+    /**
+     * True for each layer (indexed by direction) that has kept ranks
+     */
+    private boolean[][] layerRanked;
+
+    /**
+     * The ranks last given to each node (indexed by direction)
+     */
+    private int[][] keptRanks;
+
+    /**
+     * The color of the vertex of each node when its layer was last ranked
+     */
+    private int[][] inputColors;
+
+    /**
+     * The invariant of the vertex of each node when its layer was last ranked
+     */
+    private int[][] inputVertexInvariants;
+
+    /**
+     * The invariant of each node when it was last used as a relative, that is
+     * when the layer above (for UP) or below (for DOWN) was last ranked
+     */
+    private int[][] inputRelativeInvariants;
+
+    /**
+     * True if there are kept vertex ranks
+     */
+    private boolean verticesRanked;
+
+    /**
+     * The node and layer counts that the kept inputs and ranks cover, or -1
+     * if there are none
+     */
+    private int keptNodeCount;
+
+    private int keptLayerCount;
+
+    /**
+     * The vertex count that the kept vertex ranks cover
+     */
+    private int keptVertexCount;
+
+    /**
+     * The node invariants when the vertices were last ranked
+     */
+    private int[] inputNodeInvariants;
+
+    /**
+     * The ranks last given to the vertices
+     */
+    private int[] keptVertexRanks;
+
+    /**
+     * The number of nodes re-ranked since the counts were reset
+     */
+    private int rankedNodeCount;
+
+    /**
+     * The number of nodes whose kept ranks were used since the counts were
+     * reset
+     */
+    private int skippedNodeCount;
+
+    /**
+     * The invariants being sorted by the current call, for the comparisons
+     */
+    private Invariants invariants;
+
+    /**
+     * True if the current sort is of vertices, false if it is of nodes
+     */
+    private boolean sortingVertices;
+
+    /**
+     * Make a refiner for a DAG.
+     *
+     * @param dag the compact storage of the DAG
+     */
+    public PartitionRefiner(CompactDAG dag) {
+        this.dag = dag;
+        this.incremental = true;
+        reset();
+        this.keys = new int[16];
+        this.keyStarts = new int[16];
+        this.keyLengths = new int[16];
+        this.order = new int[16];
+        this.mergeBuffer = new int[16];
+    }
+
+    /**
+     * Forget the index and the kept ranks, as the DAG has been cleared and
+     * built again. The buffers are kept, so that refining the new DAG does not
+     * have to allocate them again if it is no larger.
+     */
+    public void reset() {
+        this.indexedNodeCount = -1;
+        this.indexedVertexCount = -1;
+        this.keptNodeCount = -1;
+        this.keptLayerCount = -1;
+        this.keptVertexCount = -1;
+        this.verticesRanked = false;
+    }
+
+    /**
+     * @param incremental if true, only re-rank layers whose inputs changed
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * @return the number of nodes re-ranked since the last reset
+     */
+    public int getRankedNodeCount() {
+        return rankedNodeCount;
+    }
+
+    /**
+     * @return the number of nodes given their kept rank since the last reset
+     */
+    public int getSkippedNodeCount() {
+        return skippedNodeCount;
+    }
+
+    /**
+     * Set the counts of ranked and skipped nodes back to zero.
+     */
+    public void resetCounts() {
+        rankedNodeCount = 0;
+        skippedNodeCount = 0;
+    }
+
+    /**
+     * Rank the nodes of a layer by their color, the invariant of their vertex,
+     * and the invariants of their children (going UP) or parents (going DOWN)
+     * along with the colors of the edges to them.
+     *
+     * @param invariants the invariants to read and update
+     * @param vertexCount the number of vertices in the DAG
+     * @param layer the index of the layer
+     * @param direction the direction of the sweep
+     */
+    public void updateLayer(Invariants invariants, int vertexCount,
+            int layer, DAG.Direction direction) {
+        int layerSize = dag.getLayerSize(layer);
+        if (layerSize == 0) return;
+        int d = direction.ordinal();
+        int relativeLayer = (direction == DAG.Direction.UP) ? layer + 1 : layer - 1;
+        if (incremental) {
+            ensureKeptCapacity();
+            if (layerUnchanged(invariants, layer, relativeLayer, d)) {
+                for (int i = 0; i < layerSize; i++) {
+                    int node = dag.getLayerNode(layer, i);
+                    invariants.setNodeInvariant(node, keptRanks[d][node]);
+                }
+                skippedNodeCount += layerSize;
+                return;
+            }
+        }
+        ensureLayerCapacity(layerSize);
+
+        int keyEnd = 0;
+        for (int i = 0; i < layerSize; i++) {
+            int node = dag.getLayerNode(layer, i);
+            int x = dag.getVertexIndex(node);
+            int relativeCount = (direction == DAG.Direction.UP) ?
+                    dag.getChildCount(node) : dag.getParentCount(node);
+            int keyLength = 2 + (2 * relativeCount);
+            ensureKeyCapacity(keyEnd + keyLength);
+            keyStarts[i] = keyEnd;
+            keyLengths[i] = keyLength;
+            keys[keyEnd] = invariants.getColor(x);
+            keys[keyEnd + 1] = invariants.getVertexInvariant(x);
+
+            // If we go up we should check the children.
+            int k = keyEnd + 2;
+            for (int r = 0; r < relativeCount; r++) {
+                int arc;
+                int relative;
+                if (direction == DAG.Direction.UP) {
+                    arc = dag.getChildArc(node, r);
+                    relative = dag.getArcChild(arc);
+                } else {
+                    arc = dag.getParentArc(node, r);
+                    relative = dag.getArcParent(arc);
+                }
+                keys[k++] = invariants.getNodeInvariant(relative);
+                keys[k++] = vertexCount + 1 + dag.getArcColor(arc);
+            }
+            Arrays.sort(keys, keyEnd + 2, keyEnd + keyLength);
+            keyEnd += keyLength;
+            order[i] = i;
+        }
+
+        this.sortingVertices = false;
+        sort(layerSize);
+
+        int rank = 1;
+        invariants.setNodeInvariant(dag.getLayerNode(layer, order[0]), rank);
+        for (int i = 1; i < layerSize; i++) {
+            if (!sameNodeKey(order[i - 1], order[i])) {
+                rank++;
+            }
+            invariants.setNodeInvariant(dag.getLayerNode(layer, order[i]), rank);
+        }
+        rankedNodeCount += layerSize;
+
+        if (incremental) {
+            keepLayer(invariants, layer, relativeLayer, d);
+        }
+    }
+
+    /**
+     * Test if the inputs to the ranking of a layer are the same as when it was
+     * last ranked in this direction.
+     */
+    private boolean layerUnchanged(
+            Invariants invariants, int layer, int relativeLayer, int d) {
+        if (!layerRanked[d][layer]) {
+            return false;
+        }
+        for (int i = 0; i < dag.getLayerSize(layer); i++) {
+            int node = dag.getLayerNode(layer, i);
+            int x = dag.getVertexIndex(node);
+            if (inputColors[d][node] != invariants.getColor(x)
+                    || inputVertexInvariants[d][node]
+                            != invariants.getVertexInvariant(x)) {
+                return false;
+            }
+        }
+        if (relativeLayer >= 0 && relativeLayer < dag.getLayerCount()) {
+            for (int i = 0; i < dag.getLayerSize(relativeLayer); i++) {
+                int node = dag.getLayerNode(relativeLayer, i);
+                if (inputRelativeInvariants[d][node]
+                        != invariants.getNodeInvariant(node)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keep the inputs and the ranks of a layer that has just been ranked.
+     */
+    private void keepLayer(
+            Invariants invariants, int layer, int relativeLayer, int d) {
+        for (int i = 0; i < dag.getLayerSize(layer); i++) {
+            int node = dag.getLayerNode(layer, i);
+            int x = dag.getVertexIndex(node);
+            inputColors[d][node] = invariants.getColor(x);
+            inputVertexInvariants[d][node] = invariants.getVertexInvariant(x);
+            keptRanks[d][node] = invariants.getNodeInvariant(node);
+        }
+        if (relativeLayer >= 0 && relativeLayer < dag.getLayerCount()) {
+            for (int i = 0; i < dag.getLayerSize(relativeLayer); i++) {
+                int node = dag.getLayerNode(relativeLayer, i);
+                inputRelativeInvariants[d][node] =
+                    invariants.getNodeInvariant(node);
+            }
+        }
+        layerRanked[d][layer] = true;
+    }
+
+    /**
+     * Make sure that the kept inputs and ranks cover the whole DAG, starting
+     * again if nodes have been added since they were made.
+     */
+    private void ensureKeptCapacity() {
+        int nodeCount = dag.getNodeCount();
+        int layerCount = dag.getLayerCount();
+        if (keptNodeCount == nodeCount && keptLayerCount == layerCount) {
+            return;
+        }
+        int directions = DAG.Direction.values().length;
+        if (layerRanked == null || layerRanked[0].length < layerCount) {
+            layerRanked = new boolean[directions][layerCount];
+        } else {
+            for (int d = 0; d < directions; d++) {
+                Arrays.fill(layerRanked[d], false);
+            }
+        }
+        if (keptRanks == null || keptRanks[0].length < nodeCount) {
+            keptRanks = new int[directions][nodeCount];
+            inputColors = new int[directions][nodeCount];
+            inputVertexInvariants = new int[directions][nodeCount];
+            inputRelativeInvariants = new int[directions][nodeCount];
+            inputNodeInvariants = new int[nodeCount];
+        }
+        keptNodeCount = nodeCount;
+        keptLayerCount = layerCount;
+        verticesRanked = false;
+    }
+
+    /**
+     * Rank the vertices by the invariants of their nodes in each layer, with a
+     * zero for the layers that a vertex does not appear in.
+     *
+     * @param invariants the invariants to read and update
+     * @param vertexCount the number of vertices in the DAG
+     */
+    public void computeVertexInvariants(Invariants invariants, int vertexCount) {
+        indexVertexNodes(vertexCount);
+        int nodeCount = dag.getNodeCount();
+        if (incremental) {
+            ensureKeptCapacity();
+            if (verticesRanked && keptVertexCount == vertexCount
+                    && nodeInvariantsUnchanged(invariants, nodeCount)) {
+                for (int v = 0; v < vertexCount; v++) {
+                    if (vertexNodeOffsets[v + 1] > vertexNodeOffsets[v]) {
+                        invariants.setVertexInvariant(v, keptVertexRanks[v]);
+                    }
+                }
+                return;
+            }
+        }
+        ensureLayerCapacity(vertexCount);
+
+        int count = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            if (vertexNodeOffsets[v + 1] > vertexNodeOffsets[v]) {
+                order[count++] = v;
+            }
+        }
+        if (count == 0) return;
+
+        this.invariants = invariants;
+        this.sortingVertices = true;
+        sort(count);
+        this.invariants = null;
+
+        // the vertex invariants can only be set once all the keys are read
+        int rank = 1;
+        keys[0] = rank;
+        for (int i = 1; i < count; i++) {
+            if (compareVertices(order[i - 1], order[i], invariants) != 0) {
+                rank++;
+            }
+            keys[i] = rank;
+        }
+        for (int i = 0; i < count; i++) {
+            invariants.setVertexInvariant(order[i], keys[i]);
+        }
+
+        if (incremental) {
+            for (int node = 0; node < nodeCount; node++) {
+                inputNodeInvariants[node] = invariants.getNodeInvariant(node);
+            }
+            if (keptVertexRanks == null || keptVertexRanks.length < vertexCount) {
+                keptVertexRanks = new int[vertexCount];
+            }
+            keptVertexCount = vertexCount;
+            for (int v = 0; v < vertexCount; v++) {
+                keptVertexRanks[v] = invariants.getVertexInvariant(v);
+            }
+            verticesRanked = true;
+        }
+    }
+
+    private boolean nodeInvariantsUnchanged(Invariants invariants, int nodeCount) {
+        for (int node = 0; node < nodeCount; node++) {
+            if (inputNodeInvariants[node] != invariants.getNodeInvariant(node)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Make the index from vertices to their nodes, in layer order. This only
+     * depends on the structure of the DAG, so it is kept until nodes are added.
+     *
+     * @param vertexCount the number of vertices
+     */
+    private void indexVertexNodes(int vertexCount) {
+        int nodeCount = dag.getNodeCount();
+        if (indexedNodeCount == nodeCount && indexedVertexCount == vertexCount) {
+            return;
+        }
+        if (vertexNodeOffsets == null || vertexNodeOffsets.length < vertexCount + 1) {
+            vertexNodeOffsets = new int[vertexCount + 1];
+            vertexFill = new int[vertexCount];
+        } else {
+            Arrays.fill(vertexNodeOffsets, 0, vertexCount + 1, 0);
+        }
+        if (vertexNodes == null || vertexNodes.length < nodeCount) {
+            vertexNodes = new int[nodeCount];
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            vertexNodeOffsets[dag.getVertexIndex(node) + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            vertexNodeOffsets[v + 1] += vertexNodeOffsets[v];
+        }
+        System.arraycopy(vertexNodeOffsets, 0, vertexFill, 0, vertexCount);
+        for (int layer = 0; layer < dag.getLayerCount(); layer++) {
+            for (int i = 0; i < dag.getLayerSize(layer); i++) {
+                int node = dag.getLayerNode(layer, i);
+                vertexNodes[vertexFill[dag.getVertexIndex(node)]++] = node;
+            }
+        }
+        indexedNodeCount = nodeCount;
+        indexedVertexCount = vertexCount;
+    }
+
+    /**
+     * Compare the keys of two positions in the layer : shorter keys first,
+     * then by the values in order.
+     */
+    private int compareNodeKeys(int a, int b) {
+        int lengthA = keyLengths[a];
+        int lengthB = keyLengths[b];
+        if (lengthA != lengthB) {
+            return lengthA < lengthB ? -1 : 1;
+        }
+        int startA = keyStarts[a];
+        int startB = keyStarts[b];
+        for (int i = 0; i < lengthA; i++) {
+            int x = keys[startA + i];
+            int y = keys[startB + i];
+            if (x != y) {
+                return x < y ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Test if the keys of two positions in the layer are the same, by the
+     * rule described for {@link #BOXED_CACHE_HIGH}.
+     */
+    private boolean sameNodeKey(int a, int b) {
+        int length = keyLengths[a];
+        if (length != keyLengths[b]) {
+            return false;
+        }
+        int startA = keyStarts[a];
+        int startB = keyStarts[b];
+        for (int i = 0; i < length; i++) {
+            int x = keys[startA + i];
+            if (x != keys[startB + i]
+                    || x < BOXED_CACHE_LOW || x > BOXED_CACHE_HIGH) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compare the per-layer invariants of two vertices, as if each had an
+     * array over all the layers with zeros where it has no node.
+     */
+    private int compareVertices(int a, int b, Invariants invariants) {
+        int i = vertexNodeOffsets[a];
+        int endA = vertexNodeOffsets[a + 1];
+        int j = vertexNodeOffsets[b];
+        int endB = vertexNodeOffsets[b + 1];
+        while (i < endA || j < endB) {
+            int layerA = (i < endA) ?
+                    dag.getLayer(vertexNodes[i]) : Integer.MAX_VALUE;
+            int layerB = (j < endB) ?
+                    dag.getLayer(vertexNodes[j]) : Integer.MAX_VALUE;
+            int x = 0;
+            int y = 0;
+            if (layerA <= layerB) {
+                x = invariants.getNodeInvariant(vertexNodes[i++]);
+            }
+            if (layerB <= layerA) {
+                y = invariants.getNodeInvariant(vertexNodes[j++]);
+            }
+            if (x != y) {
+                return x < y ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private int compare(int a, int b) {
+        if (sortingVertices) {
+            return compareVertices(a, b, invariants);
+        } else {
+            return compareNodeKeys(a, b);
+        }
+    }
+
+    /**
+     * A stable merge sort of the first <code>count</code> entries of
+     * <code>order</code>, with an insertion sort for short runs.
+     */
+    private void sort(int count) {
+        if (mergeBuffer.length < count) {
+            mergeBuffer = new int[order.length];
+        }
+        mergeSort(0, count);
+    }
+
+    private void mergeSort(int from, int to) {
+        if (to - from <= 8) {
+            for (int i = from + 1; i < to; i++) {
+                int x = order[i];
+                int j = i - 1;
+                while (j >= from && compare(order[j], x) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = x;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(from, middle);
+        mergeSort(middle, to);
+        if (compare(order[middle - 1], order[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, mergeBuffer, from, to - from);
+        int i = from;
+        int j = middle;
+        int k = from;
+        while (i < middle && j < to) {
+            if (compare(mergeBuffer[j], mergeBuffer[i]) < 0) {
+                order[k++] = mergeBuffer[j++];
+            } else {
+                order[k++] = mergeBuffer[i++];
+            }
+        }
+        while (i < middle) {
+            order[k++] = mergeBuffer[i++];
+        }
+        while (j < to) {
+            order[k++] = mergeBuffer[j++];
+        }
+    }
+
+    private void ensureLayerCapacity(int size) {
+        if (order.length < size) {
+            int capacity = Math.max(size, order.length * 2);
+            order = new int[capacity];
+            mergeBuffer = new int[capacity];
+            keyStarts = new int[capacity];
+            keyLengths = new int[capacity];
+        }
+        ensureKeyCapacity(size);
+    }
+
+    private void ensureKeyCapacity(int size) {
+        if (keys.length < size) {
+            keys = Arrays.copyOf(keys, Math.max(size, keys.length * 2));
+        }
+    }
+
+    /**
+     * Find the upper bound of the Integer cache, which can be raised with a
+     * JVM option.
+     */
+    private static int findBoxedCacheHigh() {
+        int low = 127;
+        int high = Integer.MAX_VALUE;
+        while (low < high) {
+            int middle = low + ((high - low + 1) >>> 1);
+            if (Integer.valueOf(middle) == Integer.valueOf(middle)) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+}
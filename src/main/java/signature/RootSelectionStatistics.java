@@ -0,0 +1,111 @@
+package signature;
+
+/**
+ * Counts of the roots that one graph canonization looked at - the roots that
+ * were canonized, the roots that were skipped because their key showed that
+ * they could not give the smallest string, and the roots that were skipped
+ * because an automorphism maps them onto a root that was already canonized.
+ * Of the roots that were canonized, some may have been cut part way through,
+ * because a leaf was greater than the smallest string of another root.
+ *
+ * @author maclean
+ *
+ */
+public class RootSelectionStatistics {
+
+    /**
+     * The number of vertices that could be roots
+     */
+    private int rootCount;
+
+    /**
+     * The number of roots whose signatures were canonized
+     */
+    private int canonizedRootCount;
+
+    /**
+     * The number of canonized roots whose search was cut by the bound
+     */
+    private int boundCutRootCount;
+
+    /**
+     * The number of roots with a key greater than the best key
+     */
+    private int keySkippedRootCount;
+
+    /**
+     * The number of roots in the orbit of a canonized root
+     */
+    private int orbitSkippedRootCount;
+
+    public RootSelectionStatistics() {
+        reset();
+    }
+
+    /**
+     * Set all the counts back to zero.
+     */
+    public void reset() {
+        rootCount = 0;
+        canonizedRootCount = 0;
+        boundCutRootCount = 0;
+        keySkippedRootCount = 0;
+        orbitSkippedRootCount = 0;
+    }
+
+    public int getRootCount() {
+        return rootCount;
+    }
+
+    public int getCanonizedRootCount() {
+        return canonizedRootCount;
+    }
+
+    public int getBoundCutRootCount() {
+        return boundCutRootCount;
+    }
+
+    public int getKeySkippedRootCount() {
+        return keySkippedRootCount;
+    }
+
+    public int getOrbitSkippedRootCount() {
+        return orbitSkippedRootCount;
+    }
+
+    /**
+     * @return the number of roots that were not canonized, for any reason
+     */
+    public int getSkippedRootCount() {
+        return keySkippedRootCount + orbitSkippedRootCount;
+    }
+
+    public void addRoots(int count) {
+        rootCount += count;
+    }
+
+    public void addCanonizedRoot() {
+        canonizedRootCount++;
+    }
+
+    public void addBoundCutRoot() {
+        boundCutRootCount++;
+    }
+
+    public void addKeySkippedRoot() {
+        keySkippedRootCount++;
+    }
+
+    public void addOrbitSkippedRoot() {
+        orbitSkippedRootCount++;
+    }
+
+    public String toString() {
+        return "roots=" + rootCount
+            + " canonized=" + canonizedRootCount
+            + " cut=" + boundCutRootCount
+            + " keySkipped=" + keySkippedRootCount
+            + " orbitSkipped=" + orbitSkippedRootCount;
+    }
+
+}
@@ -0,0 +1,416 @@
+package signature;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A compact binary form of signature strings, whose unsigned byte order is
+ * the same as the order of the strings under {@link String#compareTo}. So a
+ * store of signatures can be kept, sorted and compared as bytes, and only
+ * turned back into strings when they are needed as text.
+ *
+ * A signature string is a sequence of tokens : the branch symbols '(' and
+ * ')', and nodes of the form <code>E[S]</code> or <code>E[S,c]</code> where E
+ * is an edge label (possibly empty), S a vertex symbol, and c a color. In
+ * bytes, each token starts with a code for '(', ')' or <code>E[</code>; a
+ * node then has a code for <code>S]</code> or <code>S,</code>, and a colored
+ * node has the digits of its color, one byte each, and a terminator byte.
+ *
+ * The codes come from an alphabet of the vertex symbols and edge labels,
+ * numbered in string order. Each coded piece ends with a character that
+ * cannot appear inside it, so no piece is a prefix of another, and comparing
+ * the codes of two pieces gives the same answer as comparing the text. The
+ * same alphabet must be used to encode and decode, and a string with a
+ * symbol or label outside the alphabet can not be encoded.
+ *
+ * @author maclean
+ *
+ */
+public class SignatureCodec {
+
+    /**
+     * The byte for each decimal digit of a color, in digit order
+     */
+    private static final int FIRST_DIGIT = 0x01;
+
+    /**
+     * The byte after the digits of a color, which stands for ']' - so it is
+     * greater than all the digits
+     */
+    private static final int COLOR_END = 0x0B;
+
+    /**
+     * The largest code that fits in one byte; larger codes start with one
+     * of the two following bytes, then two or four bytes of the code
+     */
+    private static final int MAX_SHORT_CODE = 0xEF;
+
+    private static final int TWO_BYTE_CODE = 0xF0;
+
+    private static final int FOUR_BYTE_CODE = 0xF1;
+
+    private static final int TWO_BYTE_LIMIT = MAX_SHORT_CODE + 1 + 0x10000;
+
+    /**
+     * The keys that start a token : "(", ")" and each edge label followed by
+     * '[', in string order
+     */
+    private final String[] leadKeys;
+
+    /**
+     * The keys for vertex symbols : each symbol followed by ']' or ',', in
+     * string order
+     */
+    private final String[] symbolKeys;
+
+    private final Map<String, Integer> leadCodes;
+
+    private final Map<String, Integer> symbolCodes;
+
+    private final List<String> vertexSymbols;
+
+    private final List<String> edgeLabels;
+
+    /**
+     * Make a codec for signatures with these vertex symbols and edge labels.
+     * The empty edge label is always included.
+     *
+     * @param vertexSymbols the symbols of the vertices
+     * @param edgeLabels the labels of the edges
+     * @throws IllegalArgumentException if a symbol or label has a character
+     * that would make the string ambiguous
+     */
+    public SignatureCodec(
+            Collection<String> vertexSymbols, Collection<String> edgeLabels) {
+        TreeSet<String> symbols = new TreeSet<String>(vertexSymbols);
+        TreeSet<String> labels = new TreeSet<String>(edgeLabels);
+        labels.add("");
+        this.vertexSymbols =
+            Collections.unmodifiableList(new ArrayList<String>(symbols));
+        this.edgeLabels =
+            Collections.unmodifiableList(new ArrayList<String>(labels));
+
+        List<String> leads = new ArrayList<String>();
+        leads.add(String.valueOf(AbstractVertexSignature.START_BRANCH_SYMBOL));
+        leads.add(String.valueOf(AbstractVertexSignature.END_BRANCH_SYMBOL));
+        for (String label : labels) {
+            checkEdgeLabel(label);
+            leads.add(label + AbstractVertexSignature.START_NODE_SYMBOL);
+        }
+        List<String> symbolKeyList = new ArrayList<String>();
+        for (String symbol : symbols) {
+            checkVertexSymbol(symbol);
+            symbolKeyList.add(symbol + AbstractVertexSignature.END_NODE_SYMBOL);
+            symbolKeyList.add(symbol + ',');
+        }
+        this.leadKeys = sorted(leads);
+        this.symbolKeys = sorted(symbolKeyList);
+        this.leadCodes = index(leadKeys);
+        this.symbolCodes = index(symbolKeys);
+    }
+
+    /**
+     * Make a codec with the vertex symbols and edge labels that appear in a
+     * collection of signature strings.
+     *
+     * @param signatures the signature strings to read symbols from
+     * @return a codec that can encode all of them
+     */
+    public static SignatureCodec forSignatures(Collection<String> signatures) {
+        TreeSet<String> symbols = new TreeSet<String>();
+        TreeSet<String> labels = new TreeSet<String>();
+        for (String signature : signatures) {
+            int i = 0;
+            while (i < signature.length()) {
+                char c = signature.charAt(i);
+                if (c == AbstractVertexSignature.START_BRANCH_SYMBOL
+                        || c == AbstractVertexSignature.END_BRANCH_SYMBOL) {
+                    i++;
+                    continue;
+                }
+                int open = indexOf(
+                        signature, AbstractVertexSignature.START_NODE_SYMBOL, i);
+                int end = endOfSymbol(signature, open + 1);
+                labels.add(signature.substring(i, open));
+                symbols.add(signature.substring(open + 1, end));
+                i = indexOf(
+                        signature, AbstractVertexSignature.END_NODE_SYMBOL, end) + 1;
+            }
+        }
+        return new SignatureCodec(symbols, labels);
+    }
+
+    /**
+     * @return the vertex symbols, in the order of their codes
+     */
+    public List<String> getVertexSymbols() {
+        return vertexSymbols;
+    }
+
+    /**
+     * @return the edge labels, in the order of their codes
+     */
+    public List<String> getEdgeLabels() {
+        return edgeLabels;
+    }
+
+    /**
+     * Encode a signature string as bytes.
+     *
+     * @param signature the signature string
+     * @return the binary form
+     * @throws IllegalArgumentException if the string is not a signature, or
+     * has a symbol or label that is not in the alphabet
+     */
+    public byte[] encode(String signature) {
+        ByteArrayWriter out = new ByteArrayWriter(signature.length());
+        int i = 0;
+        while (i < signature.length()) {
+            char c = signature.charAt(i);
+            if (c == AbstractVertexSignature.START_BRANCH_SYMBOL
+                    || c == AbstractVertexSignature.END_BRANCH_SYMBOL) {
+                writeCode(out, code(leadCodes, String.valueOf(c)));
+                i++;
+                continue;
+            }
+            int open = indexOf(
+                    signature, AbstractVertexSignature.START_NODE_SYMBOL, i);
+            writeCode(out, code(leadCodes, signature.substring(i, open + 1)));
+            int end = endOfSymbol(signature, open + 1);
+            writeCode(out, code(symbolCodes, signature.substring(open + 1, end + 1)));
+            if (signature.charAt(end) == ',') {
+                int close = indexOf(
+                        signature, AbstractVertexSignature.END_NODE_SYMBOL, end);
+                if (close == end + 1) {
+                    throw new IllegalArgumentException(
+                            "Missing color at " + end + " in " + signature);
+                }
+                for (int j = end + 1; j < close; j++) {
+                    char digit = signature.charAt(j);
+                    if (digit < '0' || digit > '9') {
+                        throw new IllegalArgumentException(
+                                "Bad color at " + j + " in " + signature);
+                    }
+                    out.write(FIRST_DIGIT + (digit - '0'));
+                }
+                out.write(COLOR_END);
+                end = close;
+            }
+            i = end + 1;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode the bytes of a signature back into the string.
+     *
+     * @param bytes the binary form
+     * @return the signature string
+     */
+    public String decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decode the remaining bytes of a buffer into a signature string. The
+     * position of the buffer is not changed.
+     *
+     * @param buffer the binary form
+     * @return the signature string
+     */
+    public String decode(ByteBuffer buffer) {
+        ByteBuffer in = buffer.slice();
+        StringBuilder builder = new StringBuilder(in.remaining() * 2);
+        while (in.hasRemaining()) {
+            String lead = leadKeys[readCode(in)];
+            builder.append(lead);
+            if (lead.charAt(lead.length() - 1)
+                    != AbstractVertexSignature.START_NODE_SYMBOL) {
+                continue;
+            }
+            String symbolKey = symbolKeys[readCode(in)];
+            builder.append(symbolKey);
+            if (symbolKey.charAt(symbolKey.length() - 1) == ',') {
+                int b;
+                while ((b = in.get() & 0xFF) != COLOR_END) {
+                    builder.append((char) ('0' + (b - FIRST_DIGIT)));
+                }
+                builder.append(AbstractVertexSignature.END_NODE_SYMBOL);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Compare two encoded signatures as unsigned bytes. This gives the same
+     * sign as comparing the signature strings.
+     *
+     * @param a an encoded signature
+     * @param b another encoded signature
+     * @return a negative, zero, or positive number
+     */
+    public static int compare(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b);
+    }
+
+    /**
+     * Compare the remaining bytes of two buffers as unsigned bytes. Note that
+     * {@link ByteBuffer#compareTo} compares signed bytes, which is not the
+     * string order.
+     *
+     * @param a an encoded signature
+     * @param b another encoded signature
+     * @return a negative, zero, or positive number
+     */
+    public static int compare(ByteBuffer a, ByteBuffer b) {
+        int i = a.position();
+        int j = b.position();
+        while (i < a.limit() && j < b.limit()) {
+            int x = a.get(i++) & 0xFF;
+            int y = b.get(j++) & 0xFF;
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return (a.limit() - i) - (b.limit() - j);
+    }
+
+    private static int code(Map<String, Integer> codes, String key) {
+        Integer code = codes.get(key);
+        if (code == null) {
+            throw new IllegalArgumentException("Not in the alphabet : " + key);
+        }
+        return code;
+    }
+
+    /**
+     * Write a code so that the bytes of smaller codes are less, and the first
+     * byte tells how many follow.
+     */
+    private static void writeCode(ByteArrayWriter out, int code) {
+        if (code <= MAX_SHORT_CODE) {
+            out.write(code);
+        } else if (code < TWO_BYTE_LIMIT) {
+            int v = code - (MAX_SHORT_CODE + 1);
+            out.write(TWO_BYTE_CODE);
+            out.write(v >>> 8);
+            out.write(v);
+        } else {
+            int v = code - TWO_BYTE_LIMIT;
+            out.write(FOUR_BYTE_CODE);
+            out.write(v >>> 24);
+            out.write(v >>> 16);
+            out.write(v >>> 8);
+            out.write(v);
+        }
+    }
+
+    private static int readCode(ByteBuffer in) {
+        int first = in.get() & 0xFF;
+        if (first <= MAX_SHORT_CODE) {
+            return first;
+        } else if (first == TWO_BYTE_CODE) {
+            int v = ((in.get() & 0xFF) << 8) | (in.get() & 0xFF);
+            return v + MAX_SHORT_CODE + 1;
+        } else {
+            return in.getInt() + TWO_BYTE_LIMIT;
+        }
+    }
+
+    private static int indexOf(String signature, char c, int from) {
+        int index = signature.indexOf(c, from);
+        if (index == -1) {
+            throw new IllegalArgumentException(
+                    "Expected " + c + " after " + from + " in " + signature);
+        }
+        return index;
+    }
+
+    /**
+     * Find the ']' or ',' that ends the symbol starting at a position.
+     */
+    private static int endOfSymbol(String signature, int from) {
+        for (int i = from; i < signature.length(); i++) {
+            char c = signature.charAt(i);
+            if (c == AbstractVertexSignature.END_NODE_SYMBOL || c == ',') {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(
+                "Unfinished node after " + from + " in " + signature);
+    }
+
+    private static void checkVertexSymbol(String symbol) {
+        for (int i = 0; i < symbol.length(); i++) {
+            char c = symbol.charAt(i);
+            if (c == AbstractVertexSignature.START_NODE_SYMBOL
+                    || c == AbstractVertexSignature.END_NODE_SYMBOL
+                    || c == AbstractVertexSignature.START_BRANCH_SYMBOL
+                    || c == AbstractVertexSignature.END_BRANCH_SYMBOL
+                    || c == ',') {
+                throw new IllegalArgumentException(
+                        "Vertex symbol can not be encoded : " + symbol);
+            }
+        }
+    }
+
+    private static void checkEdgeLabel(String label) {
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (c == AbstractVertexSignature.START_NODE_SYMBOL
+                    || c == AbstractVertexSignature.START_BRANCH_SYMBOL
+                    || c == AbstractVertexSignature.END_BRANCH_SYMBOL) {
+                throw new IllegalArgumentException(
+                        "Edge label can not be encoded : " + label);
+            }
+        }
+    }
+
+    private static String[] sorted(List<String> keys) {
+        String[] array = keys.toArray(new String[keys.size()]);
+        Arrays.sort(array);
+        return array;
+    }
+
+    private static Map<String, Integer> index(String[] keys) {
+        Map<String, Integer> codes = new HashMap<String, Integer>();
+        for (int i = 0; i < keys.length; i++) {
+            codes.put(keys[i], i);
+        }
+        return codes;
+    }
+
+    /**
+     * A growable array of bytes.
+     */
+    private static class ByteArrayWriter {
+
+        private byte[] bytes;
+
+        private int size;
+
+        public ByteArrayWriter(int capacity) {
+            this.bytes = new byte[Math.max(16, capacity)];
+            this.size = 0;
+        }
+
+        public void write(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+package signature;
+
+/**
+ * A 64 or 128 bit hash of a signature string, which can be built up one
+ * character at a time as the string is written. The hash is of the UTF-16
+ * characters of the string, and only uses long arithmetic, so it is the same
+ * on every platform and JVM : a hash can be stored and compared with one made
+ * later, as long as the {@link #VERSION} is the same.
+ *
+ * There is also a hash of a multiset of strings (like the vertex signatures
+ * in a full graph signature), which is a sum of mixed string hashes, and so
+ * does not depend on the order of the strings.
+ *
+ * @author maclean
+ *
+ */
+public class SignatureHash {
+
+    /**
+     * The version of the hash function. Hashes with different versions can
+     * not be compared.
+     */
+    public static final int VERSION = 1;
+
+    private static final long SEED_1 = 0x243F6A8885A308D3L;
+
+    private static final long SEED_2 = 0x13198A2E03707344L;
+
+    private static final long MULTISET_SEED = 0xA4093822299F31D0L;
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private static final long C1 = 0x87C37B91114253D5L;
+
+    private static final long C2 = 0x4CF5AD432745937FL;
+
+    private long h1;
+
+    private long h2;
+
+    private long length;
+
+    public SignatureHash() {
+        reset();
+    }
+
+    /**
+     * Start again, as if nothing had been appended.
+     */
+    public void reset() {
+        h1 = SEED_1;
+        h2 = SEED_2;
+        length = 0;
+    }
+
+    public SignatureHash append(char c) {
+        long k = (c + 1) * GOLDEN;
+        h1 = Long.rotateLeft(h1 ^ k, 27) * C1 + 0x52DCE729L;
+        h2 = Long.rotateLeft(h2 ^ (k >>> 17) ^ k, 31) * C2 + 0x38495AB5L;
+        length++;
+        return this;
+    }
+
+    public SignatureHash append(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            append(s.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * @return the 64 bit hash of the characters so far
+     */
+    public long getHash64() {
+        return mix(h1 ^ length);
+    }
+
+    /**
+     * @return the 128 bit hash of the characters so far, as the high and low
+     * longs - the high long is the same as the 64 bit hash
+     */
+    public long[] getHash128() {
+        long high = getHash64();
+        long low = mix(h2 ^ Long.rotateLeft(length, 32) ^ high);
+        return new long[] { high, low };
+    }
+
+    /**
+     * Hash a whole string.
+     *
+     * @param s the signature string
+     * @return the 64 bit hash
+     */
+    public static long hash64(CharSequence s) {
+        return new SignatureHash().append(s).getHash64();
+    }
+
+    /**
+     * Hash a whole string.
+     *
+     * @param s the signature string
+     * @return the 128 bit hash, as the high and low longs
+     */
+    public static long[] hash128(CharSequence s) {
+        return new SignatureHash().append(s).getHash128();
+    }
+
+    /**
+     * Combine the 64 bit hashes of the strings in a multiset. Each string is
+     * counted as many times as it appears, and the order does not matter.
+     *
+     * @param hashes the 64 bit hashes of the strings
+     * @return the hash of the multiset
+     */
+    public static long multisetHash64(long[] hashes) {
+        long sum = 0;
+        for (long hash : hashes) {
+            sum += mix(hash ^ MULTISET_SEED);
+        }
+        return mix(sum ^ hashes.length);
+    }
+
+    /**
+     * Combine the 128 bit hashes of the strings in a multiset.
+     *
+     * @param hashes the 128 bit hashes of the strings, as pairs of longs
+     * @return the hash of the multiset, as the high and low longs
+     */
+    public static long[] multisetHash128(long[][] hashes) {
+        long high = 0;
+        long low = 0;
+        for (long[] hash : hashes) {
+            high += mix(hash[0] ^ MULTISET_SEED);
+            low += mix(hash[1] ^ Long.rotateLeft(MULTISET_SEED, 32));
+        }
+        long mixedHigh = mix(high ^ hashes.length);
+        return new long[] { mixedHigh, mix(low ^ mixedHigh) };
+    }
+
+    /**
+     * The 64 bit finalizer from MurmurHash3.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
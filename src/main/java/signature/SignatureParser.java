@@ -0,0 +1,328 @@
+package signature;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads signature strings without making a substring or a node object for
+ * each node. The text is read directly from a {@link CharSequence} or from
+ * its bytes, the vertex symbols and edge labels are interned into int codes
+ * as they are met, and each node is either passed to a
+ * {@link SignatureVisitor} or stored in a {@link CompactColoredTree}.
+ *
+ * A parser keeps its codes from one signature to the next, so when many
+ * signatures are read with the same parser, each distinct symbol is only
+ * made into a string once, and the codes of different signatures can be
+ * compared. Unlike a {@link SymbolTable}, the codes are in the order the
+ * symbols were first met, not in string order. A parser is not thread-safe.
+ *
+ * @author maclean
+ *
+ */
+public class SignatureParser {
+
+    private final Interner vertexSymbols;
+
+    private final Interner edgeLabels;
+
+    /**
+     * The code of the empty edge label, which is the label of the root and
+     * of any node written without one
+     */
+    private final int emptyEdgeLabelCode;
+
+    /**
+     * The parent node at each depth of branching
+     */
+    private int[] parentStack;
+
+    /**
+     * Reused to read bytes as characters
+     */
+    private final ByteSequence byteSequence;
+
+    public SignatureParser() {
+        this.vertexSymbols = new Interner();
+        this.edgeLabels = new Interner();
+        this.emptyEdgeLabelCode = edgeLabels.intern("", 0, 0);
+        this.parentStack = new int[16];
+        this.byteSequence = new ByteSequence();
+    }
+
+    /**
+     * Read a signature, passing each node to a visitor.
+     *
+     * @param signature the signature string
+     * @param visitor the visitor to call for each node
+     * @return the number of nodes
+     */
+    public int parse(CharSequence signature, SignatureVisitor visitor) {
+        int nodeCount = 0;
+        int depth = 0;
+        int parent = -1;
+        int current = -1;
+        int currentHeight = 1;
+        int edgeLabelCode = emptyEdgeLabelCode;
+
+        // the position of the last bracket, the start of the vertex
+        // symbol, and the position after the last comma
+        int l = 0;
+        int j = 0;
+        int k = 0;
+        for (int i = 0; i < signature.length(); i++) {
+            char c = signature.charAt(i);
+            if (c == AbstractVertexSignature.START_BRANCH_SYMBOL) {
+                if (depth == parentStack.length) {
+                    parentStack = Arrays.copyOf(parentStack, depth * 2);
+                }
+                parentStack[depth++] = parent;
+                parent = current;
+                currentHeight++;
+                l = i;
+            } else if (c == AbstractVertexSignature.END_BRANCH_SYMBOL) {
+                parent = parentStack[--depth];
+                currentHeight--;
+                l = i;
+            } else if (c == AbstractVertexSignature.START_NODE_SYMBOL) {
+                if (l < i) {
+                    edgeLabelCode = edgeLabels.intern(signature, l + 1, i);
+                    l = i;
+                }
+                j = i + 1;
+            } else if (c == AbstractVertexSignature.END_NODE_SYMBOL) {
+                int symbolCode;
+                int color;
+                if (k < j) {    // no color
+                    symbolCode = vertexSymbols.intern(signature, j, i);
+                    color = -1;
+                } else {        // color
+                    symbolCode = vertexSymbols.intern(signature, j, k - 1);
+                    color = parseInt(signature, k, i);
+                }
+                current = nodeCount++;
+                visitor.visitNode(current, (current == 0)? -1 : parent,
+                        currentHeight, symbolCode, edgeLabelCode, color);
+                edgeLabelCode = emptyEdgeLabelCode;
+                l = i;
+            } else if (c == ',') {
+                k = i + 1;
+            }
+        }
+        return nodeCount;
+    }
+
+    /**
+     * Read a signature from the bytes of its text, one byte per character
+     * (as in US-ASCII or ISO-8859-1), passing each node to a visitor.
+     *
+     * @param signature the signature string, as bytes
+     * @param visitor the visitor to call for each node
+     * @return the number of nodes
+     */
+    public int parse(byte[] signature, SignatureVisitor visitor) {
+        byteSequence.bytes = signature;
+        try {
+            return parse(byteSequence, visitor);
+        } finally {
+            byteSequence.bytes = null;
+        }
+    }
+
+    /**
+     * Read a signature into a compact tree.
+     *
+     * @param signature the signature string
+     * @return the tree, or null if there are no nodes
+     */
+    public CompactColoredTree parse(CharSequence signature) {
+        final CompactColoredTree tree = new CompactColoredTree();
+        int nodeCount = parse(signature, new SignatureVisitor() {
+
+            public void visitNode(int nodeIndex, int parentIndex, int height,
+                    int vertexSymbolCode, int edgeLabelCode, int color) {
+                tree.addNode(
+                        parentIndex, height, vertexSymbolCode, edgeLabelCode, color);
+            }
+
+        });
+        if (nodeCount == 0) {
+            return null;
+        }
+        tree.compile(vertexSymbols.getSymbols(), edgeLabels.getSymbols());
+        return tree;
+    }
+
+    /**
+     * Read a signature from the bytes of its text into a compact tree.
+     *
+     * @param signature the signature string, as bytes
+     * @return the tree, or null if there are no nodes
+     */
+    public CompactColoredTree parse(byte[] signature) {
+        byteSequence.bytes = signature;
+        try {
+            return parse(byteSequence);
+        } finally {
+            byteSequence.bytes = null;
+        }
+    }
+
+    /**
+     * Get the vertex symbol for a code given to a visitor.
+     *
+     * @param code a vertex symbol code
+     * @return the vertex symbol
+     */
+    public String getVertexSymbol(int code) {
+        return vertexSymbols.symbols[code];
+    }
+
+    /**
+     * Get the edge label for a code given to a visitor.
+     *
+     * @param code an edge label code
+     * @return the edge label, which may be empty
+     */
+    public String getEdgeLabel(int code) {
+        return edgeLabels.symbols[code];
+    }
+
+    /**
+     * @return the vertex symbols met so far, in the order of their codes
+     */
+    public List<String> getVertexSymbols() {
+        return Collections.unmodifiableList(
+                Arrays.asList(vertexSymbols.getSymbols()));
+    }
+
+    /**
+     * @return the edge labels met so far, in the order of their codes
+     */
+    public List<String> getEdgeLabels() {
+        return Collections.unmodifiableList(
+                Arrays.asList(edgeLabels.getSymbols()));
+    }
+
+    private static int parseInt(CharSequence s, int start, int end) {
+        boolean negative = start < end && s.charAt(start) == '-';
+        int value = 0;
+        for (int i = negative? start + 1 : start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException(
+                        "For input string: \"" + s.subSequence(start, end) + "\"");
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative? -value : value;
+    }
+
+    /**
+     * Symbols, with a code for each, found by looking up a range of
+     * characters - so that a string is only made the first time a symbol is
+     * met.
+     */
+    private static class Interner {
+
+        private String[] symbols;
+
+        /**
+         * An open-addressing table of code + 1 for each symbol, or 0
+         */
+        private int[] slots;
+
+        private int size;
+
+        public Interner() {
+            symbols = new String[8];
+            slots = new int[16];
+        }
+
+        public int intern(CharSequence s, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + s.charAt(i);
+            }
+            int slot = findSlot(hash);
+            while (slots[slot] != 0) {
+                String symbol = symbols[slots[slot] - 1];
+                if (matches(symbol, s, start, end)) {
+                    return slots[slot] - 1;
+                }
+                slot = (slot + 1) & (slots.length - 1);
+            }
+
+            // a new symbol
+            if (size == symbols.length) {
+                symbols = Arrays.copyOf(symbols, size * 2);
+            }
+            symbols[size] = s.subSequence(start, end).toString();
+            slots[slot] = ++size;
+            if (size * 2 > slots.length) {
+                grow();
+            }
+            return size - 1;
+        }
+
+        public String[] getSymbols() {
+            return Arrays.copyOf(symbols, size);
+        }
+
+        private int findSlot(int hash) {
+            return (hash ^ (hash >>> 16)) & (slots.length - 1);
+        }
+
+        private boolean matches(
+                String symbol, CharSequence s, int start, int end) {
+            if (symbol.length() != end - start) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                if (symbol.charAt(i - start) != s.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void grow() {
+            slots = new int[slots.length * 2];
+            for (int code = 0; code < size; code++) {
+                // the hash of a string is the same as the hash of its range
+                int slot = findSlot(symbols[code].hashCode());
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & (slots.length - 1);
+                }
+                slots[slot] = code + 1;
+            }
+        }
+    }
+
+    /**
+     * The bytes of a signature, read as characters.
+     */
+    private static class ByteSequence implements CharSequence {
+
+        public byte[] bytes;
+
+        public int length() {
+            return bytes.length;
+        }
+
+        public char charAt(int index) {
+            return (char) (bytes[index] & 0xFF);
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return new String(
+                    bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        public String toString() {
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+}
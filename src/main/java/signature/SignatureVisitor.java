@@ -0,0 +1,28 @@
+package signature;
+
+/**
+ * A visitor for the nodes of a signature string, called by a
+ * {@link SignatureParser} as it reads each node - so that a signature can be
+ * used without building a tree for it at all. The nodes are visited in the
+ * order they are written, which is depth-first, so the parent of a node has
+ * always been visited before it.
+ *
+ * @author maclean
+ *
+ */
+public interface SignatureVisitor {
+
+    /**
+     * Visit a node of the signature.
+     *
+     * @param nodeIndex the index of the node, counting from 0 at the root
+     * @param parentIndex the index of the parent node, or -1 for the root
+     * @param height the height of the node, which is 1 for the root
+     * @param vertexSymbolCode the code of the vertex symbol in the parser
+     * @param edgeLabelCode the code of the label of the edge to the parent
+     * @param color the color of the node, or -1 if it is not colored
+     */
+    public void visitNode(int nodeIndex, int parentIndex, int height,
+            int vertexSymbolCode, int edgeLabelCode, int color);
+
+}
@@ -0,0 +1,175 @@
+package signature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A per-thread store of DAGs that can be used again. Making the signature of
+ * every vertex of a graph builds one DAG after another, each about the same
+ * size - so rather than allocating the node and arc arrays, invariants, and
+ * refinement buffers for each, a released DAG is cleared and built again.
+ *
+ * A signature takes a DAG from the workspace of the thread that creates it,
+ * and only gives it back when {@link AbstractVertexSignature#release()} is
+ * called. Signatures that are never released just keep their DAG, so nothing
+ * is shared unless the caller says that the signature is finished with.
+ *
+ * The workspace also holds the scratch tables used while a DAG is built,
+ * which are only needed until the build is finished.
+ *
+ * @author maclean
+ *
+ */
+public class SignatureWorkspace {
+
+    /**
+     * The most DAGs to keep for each thread
+     */
+    private static final int MAX_FREE_DAGS = 4;
+
+    private static final ThreadLocal<SignatureWorkspace> WORKSPACES =
+        new ThreadLocal<SignatureWorkspace>() {
+            protected SignatureWorkspace initialValue() {
+                return new SignatureWorkspace();
+            }
+    };
+
+    /**
+     * The released DAGs, waiting to be used again
+     */
+    private final List<DAG> freeDAGs;
+
+    /**
+     * The edges already used as arcs, while a DAG is built
+     */
+    private final VertexPairSet usedArcs;
+
+    /**
+     * The node made for each vertex in the layer being built
+     */
+    private int[] layerNodes;
+
+    /**
+     * The table from graph vertex to signature vertex, which is all -1
+     * between builds
+     */
+    private int[] internalIndices;
+
+    /**
+     * The number of DAGs made new, since the counts were reset
+     */
+    private int createdDAGCount;
+
+    /**
+     * The number of DAGs used again, since the counts were reset
+     */
+    private int reusedDAGCount;
+
+    private SignatureWorkspace() {
+        this.freeDAGs = new ArrayList<DAG>();
+        this.usedArcs = new VertexPairSet();
+        this.layerNodes = new int[16];
+        this.internalIndices = new int[0];
+    }
+
+    /**
+     * @return the workspace for the current thread
+     */
+    public static SignatureWorkspace getWorkspace() {
+        return WORKSPACES.get();
+    }
+
+    /**
+     * Get a DAG with just a root node, either one that was released or a new
+     * one if there are none.
+     *
+     * @param rootVertexIndex the vertex to start from
+     * @param graphVertexCount the number of vertices in the original graph
+     * @return an empty DAG
+     */
+    public DAG acquireDAG(int rootVertexIndex, int graphVertexCount) {
+        int last = freeDAGs.size() - 1;
+        if (last < 0) {
+            createdDAGCount++;
+            return new DAG(rootVertexIndex, graphVertexCount);
+        } else {
+            DAG dag = freeDAGs.remove(last);
+            dag.reset(rootVertexIndex, graphVertexCount);
+            reusedDAGCount++;
+            return dag;
+        }
+    }
+
+    /**
+     * Give back a DAG that is no longer used by anything.
+     *
+     * @param dag the DAG to use again
+     */
+    public void releaseDAG(DAG dag) {
+        if (freeDAGs.size() < MAX_FREE_DAGS) {
+            freeDAGs.add(dag);
+        }
+    }
+
+    /**
+     * Get the set of used arcs for building a DAG, emptied.
+     *
+     * @return an empty set
+     */
+    public VertexPairSet getUsedArcs() {
+        usedArcs.clear();
+        return usedArcs;
+    }
+
+    /**
+     * Get a table from vertex to node for the layer being built. The entries
+     * are not cleared, so the caller has to check that a node really belongs
+     * to the layer.
+     *
+     * @param vertexCount the number of vertices the table must cover
+     * @return an array of at least that size
+     */
+    public int[] getLayerNodes(int vertexCount) {
+        if (layerNodes.length < vertexCount) {
+            layerNodes = new int[Math.max(vertexCount, layerNodes.length * 2)];
+        }
+        return layerNodes;
+    }
+
+    /**
+     * Get a table from the vertices of a graph to the vertices of a signature,
+     * with every entry -1. The table is kept for the next signature, so the
+     * caller has to set every entry that it changes back to -1 when it is
+     * finished; then making a signature that only reaches part of a large
+     * graph does not take time in the size of the whole graph.
+     *
+     * @param vertexCount the number of vertices in the graph
+     * @return an array of at least that size, filled with -1
+     */
+    public int[] getInternalIndices(int vertexCount) {
+        if (internalIndices.length < vertexCount) {
+            internalIndices = 
+                new int[Math.max(vertexCount, internalIndices.length * 2)];
+            Arrays.fill(internalIndices, -1);
+        }
+        return internalIndices;
+    }
+
+    public int getCreatedDAGCount() {
+        return createdDAGCount;
+    }
+
+    public int getReusedDAGCount() {
+        return reusedDAGCount;
+    }
+
+    /**
+     * Set the counts of created and reused DAGs back to zero.
+     */
+    public void resetCounts() {
+        createdDAGCount = 0;
+        reusedDAGCount = 0;
+    }
+
+}
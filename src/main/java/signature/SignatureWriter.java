@@ -0,0 +1,224 @@
+package signature;
+
+/**
+ * Writes a signature string while comparing it with the best string found so
+ * far. As soon as the candidate is known to be less than the best, it is
+ * abandoned : nothing more is written, so the rest of the string is never
+ * made. A candidate can also be compared with a second string (the first leaf
+ * of a search), in which case it is only abandoned once it is known to differ
+ * from both.
+ *
+ * With no best string, nothing is ever abandoned, and the writer is just a
+ * string builder.
+ *
+ * A candidate can also have an upper bound (see {@link CanonicalBound}). As
+ * soon as it is known to be greater than the bound it is abandoned, whatever
+ * its comparison with the best string.
+ *
+ * The writer can also feed each character it keeps to a {@link SignatureHash},
+ * so that the hash of a finished candidate is ready without reading the
+ * string again.
+ *
+ * @author maclean
+ *
+ */
+public class SignatureWriter {
+
+    /**
+     * The best string so far, which is read in place
+     */
+    private final CharSequence best;
+
+    /**
+     * Another string to check the candidate against, or null
+     */
+    private final CharSequence other;
+
+    /**
+     * A string that the candidate should not be greater than, or null
+     */
+    private final CharSequence bound;
+
+    /**
+     * The candidate string, up to the point where it was abandoned
+     */
+    private final StringBuilder candidate;
+
+    /**
+     * The sign of the comparison of the candidate with the best string, if it
+     * has been decided by a character - or zero if the candidate is so far a
+     * prefix of the best
+     */
+    private int bestComparison;
+
+    /**
+     * True if the candidate is known to differ from the other string
+     */
+    private boolean differsFromOther;
+
+    /**
+     * The sign of the comparison of the candidate with the bound, or zero if
+     * the candidate is so far a prefix of the bound
+     */
+    private int boundComparison;
+
+    /**
+     * True if the candidate has been abandoned
+     */
+    private boolean abandoned;
+
+    /**
+     * The hash of the candidate, or null if it is not hashed
+     */
+    private SignatureHash hash;
+
+    /**
+     * Make a writer that never abandons the candidate.
+     */
+    public SignatureWriter() {
+        this(null, null);
+    }
+
+    /**
+     * Make a writer that compares the candidate with a best string, and with
+     * another string.
+     *
+     * @param best the best string so far, or null
+     * @param other a string to check for equality with the candidate, or null
+     */
+    public SignatureWriter(CharSequence best, CharSequence other) {
+        this(best, other, null);
+    }
+
+    /**
+     * Make a writer that compares the candidate with a best string and with
+     * another string, and abandons it if it is greater than a bound.
+     *
+     * @param best the best string so far, or null
+     * @param other a string to check for equality with the candidate, or null
+     * @param bound the string that the candidate must not exceed, or null
+     */
+    public SignatureWriter(
+            CharSequence best, CharSequence other, CharSequence bound) {
+        this.best = best;
+        this.other = other;
+        this.bound = bound;
+        this.candidate = new StringBuilder();
+        this.bestComparison = (best == null) ? 1 : 0;
+        this.differsFromOther = (other == null);
+        this.boundComparison = (bound == null) ? -1 : 0;
+        this.abandoned = false;
+    }
+
+    /**
+     * Hash the characters of the candidate as they are written.
+     *
+     * @param hash the hash to add the characters to, or null
+     */
+    public void setHash(SignatureHash hash) {
+        this.hash = hash;
+    }
+
+    /**
+     * @return the hash of the candidate, or null if it is not hashed
+     */
+    public SignatureHash getHash() {
+        return hash;
+    }
+
+    public SignatureWriter append(char c) {
+        if (abandoned) return this;
+        int position = candidate.length();
+        if (bestComparison == 0) {
+            if (position >= best.length()) {
+                bestComparison = 1;
+            } else if (c != best.charAt(position)) {
+                bestComparison = (c < best.charAt(position)) ? -1 : 1;
+            }
+        }
+        if (!differsFromOther) {
+            if (position >= other.length() || c != other.charAt(position)) {
+                differsFromOther = true;
+            }
+        }
+        if (boundComparison == 0) {
+            if (position >= bound.length()) {
+                boundComparison = 1;
+            } else if (c != bound.charAt(position)) {
+                boundComparison = (c < bound.charAt(position)) ? -1 : 1;
+            }
+        }
+        if (boundComparison > 0 || (bestComparison < 0 && differsFromOther)) {
+            abandoned = true;
+            return this;
+        }
+        candidate.append(c);
+        if (hash != null) {
+            hash.append(c);
+        }
+        return this;
+    }
+
+    public SignatureWriter append(String s) {
+        for (int i = 0; i < s.length() && !abandoned; i++) {
+            append(s.charAt(i));
+        }
+        return this;
+    }
+
+    public SignatureWriter append(int i) {
+        if (abandoned) return this;
+        return append(String.valueOf(i));
+    }
+
+    /**
+     * @return true if the candidate is already known to lose
+     */
+    public boolean isAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * @return true if the candidate is already known to be greater than the
+     *         bound
+     */
+    public boolean exceedsBound() {
+        return boundComparison > 0;
+    }
+
+    /**
+     * Compare the finished candidate with the best string, in the same way as
+     * {@link String#compareTo(String)} - but only the sign is meaningful.
+     *
+     * @return a negative, zero, or positive number
+     */
+    public int compareToBest() {
+        if (bestComparison != 0) {
+            return bestComparison;
+        } else {
+            return (candidate.length() == best.length()) ? 0 : -1;
+        }
+    }
+
+    /**
+     * @return true if the finished candidate is the same as the other string
+     */
+    public boolean equalsOther() {
+        return !differsFromOther && candidate.length() == other.length();
+    }
+
+    /**
+     * Get the candidate string. This is the whole string unless the candidate
+     * was abandoned.
+     *
+     * @return the candidate
+     */
+    public String getCandidate() {
+        return candidate.toString();
+    }
+
+    public String toString() {
+        return getCandidate();
+    }
+
+}
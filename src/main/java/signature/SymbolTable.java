@@ -0,0 +1,132 @@
+package signature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A table of the distinct symbols (vertex symbols or edge labels) of a graph,
+ * each given a dense int code. The codes are in the same order as the
+ * symbols, so that comparing two codes gives the same answer as comparing the
+ * two strings : the symbols can be interned once for a graph, and everything
+ * after that - sorting, refining, comparing - works on ints, with the strings
+ * only looked up again when a signature is printed.
+ *
+ * @author maclean
+ *
+ */
+public class SymbolTable {
+
+    /**
+     * The code returned for a symbol that is not in the table
+     */
+    public static final int UNKNOWN = -1;
+
+    /**
+     * The symbols, in order, so that the code of a symbol is its position
+     */
+    private final String[] symbols;
+
+    private final Map<String, Integer> codes;
+
+    /**
+     * Make a table of the distinct symbols in a collection, which may have
+     * repeats.
+     *
+     * @param symbols the symbols to intern
+     */
+    public SymbolTable(Collection<String> symbols) {
+        TreeSet<String> distinct = new TreeSet<String>(symbols);
+        this.symbols = distinct.toArray(new String[distinct.size()]);
+        this.codes = new HashMap<String, Integer>();
+        for (int code = 0; code < this.symbols.length; code++) {
+            this.codes.put(this.symbols[code], code);
+        }
+    }
+
+    /**
+     * Make a table of some symbols.
+     *
+     * @param symbols the symbols to intern
+     * @return a table with a code for each distinct symbol
+     */
+    public static SymbolTable of(String... symbols) {
+        return new SymbolTable(Arrays.asList(symbols));
+    }
+
+    /**
+     * Get the code for a symbol.
+     *
+     * @param symbol the symbol to look up
+     * @return the code, or UNKNOWN if the symbol is not in the table
+     */
+    public int getCode(String symbol) {
+        Integer code = codes.get(symbol);
+        return (code == null)? UNKNOWN : code;
+    }
+
+    /**
+     * Get the symbol for a code.
+     *
+     * @param code a code from this table
+     * @return the symbol
+     */
+    public String getSymbol(int code) {
+        return symbols[code];
+    }
+
+    /**
+     * Test if every one of some symbols has a code in this table.
+     *
+     * @param symbols the symbols to test
+     * @return true if none of them are unknown
+     */
+    public boolean containsAll(String[] symbols) {
+        for (String symbol : symbols) {
+            if (!codes.containsKey(symbol)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the codes for an array of symbols, all of which must be in the
+     * table.
+     *
+     * @param symbols the symbols to look up
+     * @return the code for each symbol
+     */
+    public int[] encode(String[] symbols) {
+        int[] encoded = new int[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            encoded[i] = getCode(symbols[i]);
+        }
+        return encoded;
+    }
+
+    /**
+     * @return the number of distinct symbols
+     */
+    public int size() {
+        return symbols.length;
+    }
+
+    /**
+     * @return the symbols, in the order of their codes
+     */
+    public List<String> getSymbols() {
+        return Collections.unmodifiableList(
+                new ArrayList<String>(Arrays.asList(symbols)));
+    }
+
+    public String toString() {
+        return Arrays.toString(symbols);
+    }
+
+}
@@ -0,0 +1,130 @@
+package signature;
+
+import java.util.Arrays;
+
+/**
+ * A set of unordered pairs of vertex indices, such as the edges of a graph
+ * that have already been used as arcs of a DAG. The pairs are packed into
+ * longs in an open-addressed hash table, so that adding and testing a pair
+ * takes constant time and does not allocate.
+ *
+ * @author maclean
+ *
+ */
+public class VertexPairSet {
+
+    /**
+     * The marker for an empty slot; no pair of non-negative indices packs to it
+     */
+    private static final long EMPTY = -1L;
+
+    /**
+     * The packed pairs, or EMPTY
+     */
+    private long[] slots;
+
+    /**
+     * The number of pairs in the set
+     */
+    private int size;
+
+    public VertexPairSet() {
+        this(16);
+    }
+
+    /**
+     * Make an empty set with room for some number of pairs.
+     *
+     * @param expectedSize the number of pairs expected
+     */
+    public VertexPairSet(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity *= 2;
+        }
+        this.slots = new long[capacity];
+        Arrays.fill(slots, EMPTY);
+        this.size = 0;
+    }
+
+    /**
+     * Add the pair (a, b), which is the same as the pair (b, a).
+     *
+     * @param a a vertex index
+     * @param b another vertex index
+     * @return true if the pair was not already in the set
+     */
+    public boolean add(int a, int b) {
+        if ((size + 1) * 2 > slots.length) {
+            grow();
+        }
+        long key = pack(a, b);
+        int slot = find(slots, key);
+        if (slots[slot] == key) {
+            return false;
+        }
+        slots[slot] = key;
+        size++;
+        return true;
+    }
+
+    /**
+     * Test for the pair (a, b), in either order.
+     *
+     * @param a a vertex index
+     * @param b another vertex index
+     * @return true if the pair is in the set
+     */
+    public boolean contains(int a, int b) {
+        long key = pack(a, b);
+        return slots[find(slots, key)] == key;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all the pairs, keeping the table.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(slots, EMPTY);
+            size = 0;
+        }
+    }
+
+    private static long pack(int a, int b) {
+        if (a > b) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        return ((long) a << 32) | (b & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Find the slot holding a key, or the empty slot where it would go.
+     */
+    private static int find(long[] slots, long key) {
+        int mask = slots.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (slots[slot] != EMPTY && slots[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] newSlots = new long[slots.length * 2];
+        Arrays.fill(newSlots, EMPTY);
+        for (long key : slots) {
+            if (key != EMPTY) {
+                newSlots[find(newSlots, key)] = key;
+            }
+        }
+        slots = newSlots;
+    }
+
+}
@@ -70,6 +70,23 @@ public class VirtualGraphBuilder extends AbstractGraphBuilder {
         this.edges = new ArrayList<VirtualEdge>();
     }
     
+    /**
+     * Reconstruct many signatures, one after the other, into edge strings.
+     * The same parser is used for all of them, so each distinct symbol is 
+     * only read into a string once.
+     * 
+     * @param signatures the signature strings
+     * @return the edge string for each signature, in the same order
+     */
+    public List<String> toEdgeStrings(Iterable<? extends CharSequence> signatures) {
+        List<String> edgeStrings = new ArrayList<String>();
+        for (CharSequence signature : signatures) {
+            makeFromSignature(signature);
+            edgeStrings.add(toEdgeString());
+        }
+        return edgeStrings;
+    }
+    
     public String toEdgeString() {
         StringBuffer edgeString = new StringBuffer();
         Collections.sort(this.edges);
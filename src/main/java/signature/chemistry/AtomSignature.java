@@ -1,10 +1,19 @@
 package signature.chemistry;
 
 import signature.AbstractVertexSignature;
+import signature.AdjacencyAccessor;
+import signature.GraphAccessor;
+import signature.SymbolTable;
 import signature.chemistry.Molecule.BondOrder;
 
 public class AtomSignature extends AbstractVertexSignature {
     
+    /**
+     * The labels that {@link #getEdgeLabel(int, int)} can give
+     */
+    private static final SymbolTable BOND_LABELS = 
+        SymbolTable.of("", "=", "#", "p");
+    
     private Molecule molecule;
     
     public AtomSignature(Molecule molecule, int atomNumber) {
@@ -48,8 +57,17 @@ public class AtomSignature extends AbstractVertexSignature {
 
     @Override
     public String getEdgeLabel(int vertexIndex, int otherVertexIndex) {
-        BondOrder bondOrder = 
-            molecule.getBondOrder(vertexIndex, otherVertexIndex);
+        return getBondLabel(
+                molecule.getBondOrder(vertexIndex, otherVertexIndex));
+    }
+    
+    /**
+     * Get the label printed in the signature for a bond order.
+     * 
+     * @param bondOrder the order of a bond
+     * @return the edge label
+     */
+    public static String getBondLabel(BondOrder bondOrder) {
         switch (bondOrder) {
             case SINGLE: return "";
             case DOUBLE: return "=";
@@ -64,8 +82,27 @@ public class AtomSignature extends AbstractVertexSignature {
         return this.molecule.getSymbolFor(vertexIndex);
     }
 
+    @Override
+    protected GraphAccessor getGraphAccessor() {
+        return this.molecule.getGraphAccessor();
+    }
+
+    @Override
+    protected SymbolTable getVertexSymbolTable() {
+        return this.molecule.getSymbolTable();
+    }
+
+    @Override
+    protected SymbolTable getEdgeLabelTable() {
+        return BOND_LABELS;
+    }
+
     @Override
     protected int convertEdgeLabelToColor(String label) {
+        return convertBondLabelToColor(label);
+    }
+    
+    private static int convertBondLabelToColor(String label) {
         if (label.equals("-")) {
             return 1;
         } else if (label.equals("=")) {
@@ -75,5 +112,34 @@ public class AtomSignature extends AbstractVertexSignature {
         }
         return 1;
     }
+    
+    /**
+     * Make the int view of a molecule that atom signatures are built from, 
+     * with the codes of the atom symbols and bond labels, and the colors of
+     * the bonds.
+     * 
+     * @param molecule the molecule to view
+     * @return an accessor over the atoms and bonds of the molecule
+     */
+    static GraphAccessor makeGraphAccessor(Molecule molecule) {
+        int bondCount = molecule.getBondCount();
+        int[] first = new int[bondCount];
+        int[] second = new int[bondCount];
+        int[] colors = new int[bondCount];
+        int[] labelCodes = new int[bondCount];
+        for (int i = 0; i < bondCount; i++) {
+            first[i] = molecule.getFirstInBond(i);
+            second[i] = molecule.getSecondInBond(i);
+            String label = getBondLabel(molecule.getBondOrder(i));
+            colors[i] = convertBondLabelToColor(label);
+            labelCodes[i] = BOND_LABELS.getCode(label);
+        }
+        int[] symbolCodes = new int[molecule.getAtomCount()];
+        for (int i = 0; i < symbolCodes.length; i++) {
+            symbolCodes[i] = molecule.getSymbolCodeFor(i);
+        }
+        return new AdjacencyAccessor(
+                symbolCodes, bondCount, first, second, colors, labelCodes);
+    }
 
 }
@@ -1,9 +1,13 @@
 package signature.chemistry;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import signature.GraphAccessor;
+import signature.SymbolTable;
+
 /**
  * A trivial test molecule class, to show how to implement signatures for  
  * chemistry libraries.
@@ -112,12 +116,95 @@ public class Molecule {
         }
     }
     
+    /**
+     * The neighbours of each atom in increasing order, and the bond to each
+     * neighbour. It is made from the bonds in one pass, and does not change;
+     * the molecule makes a new one if atoms or bonds have been added since.
+     * The bonds themselves are kept, rather than their orders, so that an 
+     * order that is changed on the bond is seen at once.
+     */
+    private static class AdjacencyIndex {
+        
+        public final int atomCount;
+        
+        public final int bondCount;
+        
+        public final int[][] neighbors;
+        
+        public final Bond[][] bonds;
+        
+        public AdjacencyIndex(Molecule molecule) {
+            this.atomCount = molecule.atoms.size();
+            this.bondCount = molecule.bonds.size();
+            int[] degrees = new int[atomCount];
+            for (Bond bond : molecule.bonds) {
+                degrees[bond.a.index]++;
+                if (bond.b.index != bond.a.index) {
+                    degrees[bond.b.index]++;
+                }
+            }
+            this.neighbors = new int[atomCount][];
+            this.bonds = new Bond[atomCount][];
+            for (int i = 0; i < atomCount; i++) {
+                neighbors[i] = new int[degrees[i]];
+                bonds[i] = new Bond[degrees[i]];
+                degrees[i] = 0;
+            }
+            for (Bond bond : molecule.bonds) {
+                add(bond.a.index, bond.b.index, bond, degrees);
+                if (bond.b.index != bond.a.index) {
+                    add(bond.b.index, bond.a.index, bond, degrees);
+                }
+            }
+        }
+        
+        /**
+         * Insert a neighbour into the filled part of an atom's arrays, after
+         * any equal neighbours so that the first bond in the list comes first.
+         */
+        private void add(int atom, int neighbor, Bond bond, int[] filled) {
+            int[] atomNeighbors = neighbors[atom];
+            Bond[] atomBonds = bonds[atom];
+            int i = filled[atom]++;
+            while (i > 0 && atomNeighbors[i - 1] > neighbor) {
+                atomNeighbors[i] = atomNeighbors[i - 1];
+                atomBonds[i] = atomBonds[i - 1];
+                i--;
+            }
+            atomNeighbors[i] = neighbor;
+            atomBonds[i] = bond;
+        }
+        
+        /**
+         * @return the position of the first bond to the neighbour, or -1
+         */
+        public int indexOf(int atom, int neighbor) {
+            int[] atomNeighbors = neighbors[atom];
+            for (int i = 0; i < atomNeighbors.length; i++) {
+                if (atomNeighbors[i] == neighbor) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+    
     private List<Atom> atoms;
     
     private List<Bond> bonds;
     
     public String name;
     
+    /**
+     * The interned atom symbols, and the code of the symbol of each atom -
+     * made when first asked for, and dropped when an atom is added
+     */
+    private SymbolTable symbolTable;
+    
+    private int[] symbolCodes;
+    
+    private volatile AdjacencyIndex adjacency;
+    
     public Molecule() {
         this.atoms = new ArrayList<Atom>();
         this.bonds = new ArrayList<Bond>();
@@ -174,38 +261,41 @@ public class Molecule {
         return bonds; 
     }
     
+    /**
+     * Get the atoms bonded to an atom, in increasing order. The array is kept
+     * by the molecule, so it must not be changed.
+     * 
+     * @param atomIndex the index of the atom
+     * @return the indices of the bonded atoms
+     */
     public int[] getConnected(int atomIndex) {
-        List<Integer> connectedList = new ArrayList<Integer>();
-        
-        for (Bond bond : this.bonds) {
-            int connectedIndex = bond.getConnected(atomIndex);
-            if (connectedIndex != -1) {
-                connectedList.add(connectedIndex);
-            }
-        }
-        int[] connected = new int[connectedList.size()];
-        for (int i = 0; i < connectedList.size(); i++) {
-            connected[i] = connectedList.get(i);
-        }
-        return connected;
+        return getAdjacency().neighbors[atomIndex];
     }
     
     public boolean isConnected(int i, int j) {
-        for (Bond bond : bonds) {
-            if (bond.hasBoth(i, j)) {
-                return true;
-            }
-        }
-        return false;
+        return getAdjacency().indexOf(i, j) != -1;
     }
     
     public BondOrder getBondOrder(int atomIndex, int otherAtomIndex) {
-        for (Bond bond : this.bonds) {
-            if (bond.hasBoth(atomIndex, otherAtomIndex)) {
-                return bond.order;
-            }
+        AdjacencyIndex index = getAdjacency();
+        int i = index.indexOf(atomIndex, otherAtomIndex);
+        return (i == -1)? BondOrder.NONE : index.bonds[atomIndex][i].order;
+    }
+    
+    /**
+     * Get the index of the atoms and bonds, making it again if atoms or bonds
+     * have been added. The index is only replaced as a whole, so signatures 
+     * made on other threads can share it.
+     */
+    private AdjacencyIndex getAdjacency() {
+        AdjacencyIndex index = adjacency;
+        if (index == null 
+                || index.atomCount != atoms.size() 
+                || index.bondCount != bonds.size()) {
+            index = new AdjacencyIndex(this);
+            adjacency = index;
         }
-        return BondOrder.NONE;
+        return index;
     }
     
     public int convertBondOrderToInt(BondOrder bondOrder) {
@@ -221,10 +311,8 @@ public class Molecule {
     
     public int getTotalOrder(int atomIndex) {
         int totalOrder = 0;
-        for (Bond bond : bonds) {
-            if (bond.a.index == atomIndex || bond.b.index == atomIndex) {
-                totalOrder += convertBondOrderToInt(bond.order);
-            }
+        for (Bond bond : getAdjacency().bonds[atomIndex]) {
+            totalOrder += convertBondOrderToInt(bond.order);
         }
         return totalOrder;
     }
@@ -232,6 +320,46 @@ public class Molecule {
     public String getSymbolFor(int atomIndex) {
         return this.atoms.get(atomIndex).symbol;
     }
+    
+    /**
+     * Get a table of the distinct atom symbols in the molecule, whose codes 
+     * are in the same order as the symbols. 
+     * 
+     * @return the symbol table
+     */
+    public synchronized SymbolTable getSymbolTable() {
+        if (symbolTable == null) {
+            String[] symbols = new String[atoms.size()];
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = atoms.get(i).symbol;
+            }
+            symbolTable = new SymbolTable(Arrays.asList(symbols));
+            symbolCodes = symbolTable.encode(symbols);
+        }
+        return symbolTable;
+    }
+    
+    /**
+     * Make the view of the molecule that {@link AtomSignature}s are built 
+     * from. It is made again each time, as the bonds can be changed directly;
+     * an atom signature asks for it once, when it is made.
+     * 
+     * @return the accessor for the atoms and bonds
+     */
+    public GraphAccessor getGraphAccessor() {
+        return AtomSignature.makeGraphAccessor(this);
+    }
+    
+    /**
+     * Get the code of an atom's symbol in the {@link #getSymbolTable()}.
+     * 
+     * @param atomIndex the index of the atom
+     * @return the code of its symbol
+     */
+    public synchronized int getSymbolCodeFor(int atomIndex) {
+        getSymbolTable();
+        return symbolCodes[atomIndex];
+    }
 
     public String toString() {
         StringBuffer buffer = new StringBuffer();
@@ -252,6 +380,7 @@ public class Molecule {
 
     public void addAtom(int i, String symbol) {
         this.atoms.add(new Atom(i, symbol));
+        this.symbolTable = null;
     }
     
     public void addMultipleAtoms(int count, String symbol) {
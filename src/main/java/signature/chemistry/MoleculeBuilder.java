@@ -1,5 +1,10 @@
 package signature.chemistry;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
 import signature.AbstractGraphBuilder;
 import signature.ColoredTree;
 import signature.chemistry.Molecule.BondOrder;
@@ -41,6 +46,32 @@ public class MoleculeBuilder extends AbstractGraphBuilder {
         return this.molecule;
     }
 
+    public Molecule fromSignature(CharSequence signature) {
+        super.makeFromSignature(signature);
+        return this.molecule;
+    }
+    
+    /**
+     * Reconstruct many signatures, one after the other, and write the 
+     * molecules to a stream as an SD file. Each molecule is written as soon
+     * as it is made, so they are not all held at once.
+     * 
+     * @param signatures the signature strings
+     * @param stream the stream to write to, which is not closed
+     * @throws IOException if the stream can not be written to
+     */
+    public void writeSDFToStream(Iterable<? extends CharSequence> signatures, 
+            OutputStream stream) throws IOException {
+        BufferedWriter writer = 
+            new BufferedWriter(new OutputStreamWriter(stream));
+        for (CharSequence signature : signatures) {
+            MoleculeWriter.writeMolecule(writer, fromSignature(signature));
+            writer.write("$$$$");
+            writer.newLine();
+        }
+        writer.flush();
+    }
+    
     public Molecule getMolecule() {
         return this.molecule;
     }
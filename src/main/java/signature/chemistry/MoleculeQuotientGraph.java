@@ -45,4 +45,9 @@ public class MoleculeQuotientGraph extends AbstractQuotientGraph {
         return molecule.isConnected(i, j);
     }
 
+    @Override
+    public int[] getConnected(int vertexIndex) {
+        return molecule.getConnected(vertexIndex);
+    }
+
 }
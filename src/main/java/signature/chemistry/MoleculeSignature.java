@@ -38,14 +38,28 @@ public class MoleculeSignature extends AbstractGraphSignature {
         int height = super.getHeight();
         AtomSignature atomSignature = 
             new AtomSignature(molecule, vertexIndex, height, invariantType);
-        return atomSignature.toCanonicalString();
+        String signatureString = atomSignature.toCanonicalString();
+        atomSignature.release();
+        return signatureString;
     }
 
     @Override
     public String signatureStringForVertex(int vertexIndex, int height) {
         AtomSignature atomSignature = 
             new AtomSignature(molecule, vertexIndex, height, invariantType);
-        return atomSignature.toCanonicalString();
+        String signatureString = atomSignature.toCanonicalString();
+        atomSignature.release();
+        return signatureString;
+    }
+
+    @Override
+    protected String getVertexSymbol(int vertexIndex) {
+        return this.molecule.getSymbolFor(vertexIndex);
+    }
+
+    @Override
+    protected int getVertexDegree(int vertexIndex) {
+        return this.molecule.getConnected(vertexIndex).length;
     }
 
     @Override
@@ -23,20 +23,33 @@ public class MoleculeWriter {
         try {
             BufferedWriter writer = 
                 new BufferedWriter(new OutputStreamWriter(stream));
-            writeHeader(writer, molecule);
-            for (int i = 0; i < molecule.getAtomCount(); i++) {
-                writeAtom(writer, molecule, i);
-            }
-            for (int i = 0; i < molecule.getBondCount(); i++) {
-                writeBond(writer, molecule, i);
-            }
-            writer.write("M  END");
-            writer.newLine();
+            writeMolecule(writer, molecule);
             writer.close();
         } catch (IOException ioe) {
 
         }
     }
+    
+    /**
+     * Write a molecule as a molfile block, without closing the writer - so
+     * that many molecules can be written to the same SD file.
+     * 
+     * @param writer the writer to write to
+     * @param molecule the molecule to write
+     * @throws IOException if the writer fails
+     */
+    static void writeMolecule(
+            BufferedWriter writer, Molecule molecule) throws IOException {
+        writeHeader(writer, molecule);
+        for (int i = 0; i < molecule.getAtomCount(); i++) {
+            writeAtom(writer, molecule, i);
+        }
+        for (int i = 0; i < molecule.getBondCount(); i++) {
+            writeBond(writer, molecule, i);
+        }
+        writer.write("M  END");
+        writer.newLine();
+    }
 
     private static void writeHeader(
             BufferedWriter writer, Molecule molecule) throws IOException {
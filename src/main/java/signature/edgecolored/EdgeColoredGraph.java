@@ -3,6 +3,10 @@ package signature.edgecolored;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+
+import signature.GraphAccessor;
+import signature.SymbolTable;
 
 /**
  * A very simple graph class - the equivalent of a client library class.
@@ -124,9 +128,41 @@ public class EdgeColoredGraph {
         return degreeCount;
     }
 
+    /**
+     * Make an unchangeable copy of the graph as it is now, with the edges in
+     * arrays that are quick to look up.
+     * 
+     * @return a frozen copy of the graph
+     */
+    public FrozenEdgeColoredGraph freeze() {
+        return new FrozenEdgeColoredGraph(this);
+    }
+    
+    /**
+     * Get a table of the distinct labels of the edges, from a new frozen copy.
+     * 
+     * @return the edge label table
+     */
+    public SymbolTable getEdgeLabelTable() {
+        return freeze().getEdgeLabelTable();
+    }
+    
+    /**
+     * Get a view of the graph with the neighbours of each vertex in order, 
+     * and the edge labels as codes in the {@link #getEdgeLabelTable()}, from
+     * a new frozen copy. All the vertices have the label code 0.
+     * 
+     * @param colorMap the color of each edge label, or 1 if it is not there
+     * @return the accessor for the vertices and edges
+     */
+    public GraphAccessor getGraphAccessor(Map<String, Integer> colorMap) {
+        return freeze().getGraphAccessor(colorMap);
+    }
+
     public String toString() {
-        Collections.sort(edges);
-        return edges.toString();
+        List<Edge> sortedEdges = new ArrayList<Edge>(edges);
+        Collections.sort(sortedEdges);
+        return sortedEdges.toString();
     }
     
 }
@@ -31,5 +31,10 @@ public class EdgeColoredGraphBuilder extends AbstractGraphBuilder {
         super.makeFromColoredTree(tree);
         return this.graph;
     }
+    
+    public EdgeColoredGraph fromSignature(CharSequence signature) {
+        super.makeFromSignature(signature);
+        return this.graph;
+    }
 
 }
@@ -6,7 +6,11 @@ import signature.AbstractGraphSignature;
 import signature.AbstractVertexSignature;
 
 /**
- * A test implementation of signatures for {@link EdgeColoredGraph}s.
+ * A test implementation of signatures for {@link EdgeColoredGraph}s. A 
+ * signature for an EdgeColoredGraph reads the graph as it is when each vertex
+ * signature is made, and freezes it again for each one; for a large graph,
+ * make the signature for a {@link EdgeColoredGraph#freeze()} copy instead, so
+ * that it is frozen only once.
  * 
  * @author maclean
  *
@@ -17,43 +21,88 @@ public class EdgeColoredGraphSignature extends AbstractGraphSignature {
     
     private Map<String, Integer> colorMap;
     
+    /**
+     * The graph, if the signature was made for a frozen graph
+     */
+    private FrozenEdgeColoredGraph frozenGraph;
+    
     public EdgeColoredGraphSignature(EdgeColoredGraph graph, Map<String, Integer> colorMap) {
         super();
         this.graph = graph;
         this.colorMap = colorMap;
     }
+    
+    public EdgeColoredGraphSignature(
+            FrozenEdgeColoredGraph frozenGraph, Map<String, Integer> colorMap) {
+        super();
+        this.frozenGraph = frozenGraph;
+        this.colorMap = colorMap;
+    }
+    
+    private EdgeColoredVertexSignature makeVertexSignature(
+            int vertexIndex, int height) {
+        if (frozenGraph == null) {
+            return new EdgeColoredVertexSignature(
+                    vertexIndex, height, graph, this.colorMap);
+        } else {
+            return new EdgeColoredVertexSignature(
+                    vertexIndex, height, frozenGraph, this.colorMap);
+        }
+    }
 
     public int getVertexCount() {
-        return this.graph.getVertexCount();
+        if (frozenGraph == null) {
+            return this.graph.getVertexCount();
+        } else {
+            return frozenGraph.getVertexCount();
+        }
     }
 
     @Override
     public String signatureStringForVertex(int vertexIndex) {
-        EdgeColoredVertexSignature vertexSignature;
-        int height = super.getHeight();
-        if (height == -1) {
-            vertexSignature = 
-                new EdgeColoredVertexSignature(vertexIndex, this.graph, this.colorMap);
-        } else {
-            vertexSignature = 
-                new EdgeColoredVertexSignature(vertexIndex, height, this.graph, this.colorMap);
-        }
-        return vertexSignature.toCanonicalString();
+        EdgeColoredVertexSignature vertexSignature = 
+            makeVertexSignature(vertexIndex, super.getHeight());
+        String signatureString = vertexSignature.toCanonicalString();
+        vertexSignature.release();
+        return signatureString;
     }
 
     @Override
     public String signatureStringForVertex(int vertexIndex, int height) {
         EdgeColoredVertexSignature vertexSignature  = 
-            new EdgeColoredVertexSignature(vertexIndex, height, this.graph, this.colorMap);
-        return vertexSignature.toCanonicalString();
+            makeVertexSignature(vertexIndex, height);
+        String signatureString = vertexSignature.toCanonicalString();
+        vertexSignature.release();
+        return signatureString;
     }
 
     public String toCanonicalString() {
         return super.toCanonicalString();
     }
 
+    /**
+     * Every vertex has the same symbol, so the only roots that this skips 
+     * before canonizing are those that have neighbours, when some vertex has
+     * none. The degree can not be used to order the other roots, as the 
+     * string that follows the root depends on the order of its children, 
+     * which is only known after the search.
+     */
+    @Override
+    protected String getVertexSymbol(int vertexIndex) {
+        return ".";
+    }
+
+    @Override
+    protected int getVertexDegree(int vertexIndex) {
+        if (frozenGraph == null) {
+            return this.graph.degree(vertexIndex);
+        } else {
+            return frozenGraph.degree(vertexIndex);
+        }
+    }
+
     @Override
     public AbstractVertexSignature signatureForVertex(int vertexIndex) {
-        return new EdgeColoredVertexSignature(vertexIndex, this.graph, this.colorMap);
+        return makeVertexSignature(vertexIndex, -1);
     }
 }
@@ -6,21 +6,21 @@ import signature.AbstractQuotientGraph;
 
 public class EdgeColoredQuotientGraph extends AbstractQuotientGraph {
     
-    private EdgeColoredGraph graph;
+    private FrozenEdgeColoredGraph graph;
     
     public EdgeColoredQuotientGraph(EdgeColoredGraph graph, Map<String, Integer> colorMap) {
         super();
-        this.graph = graph;
+        this.graph = graph.freeze();
         
-        EdgeColoredGraphSignature graphSignature = new EdgeColoredGraphSignature(graph, colorMap);
+        EdgeColoredGraphSignature graphSignature = new EdgeColoredGraphSignature(this.graph, colorMap);
         super.construct(graphSignature.getSymmetryClasses());
     }
     
     public EdgeColoredQuotientGraph(EdgeColoredGraph graph, Map<String, Integer> colorMap, int height) {
         super();
-        this.graph = graph;
+        this.graph = graph.freeze();
         
-        EdgeColoredGraphSignature graphSignature = new EdgeColoredGraphSignature(graph, colorMap);
+        EdgeColoredGraphSignature graphSignature = new EdgeColoredGraphSignature(this.graph, colorMap);
         super.construct(graphSignature.getSymmetryClasses(height));
     }
 
@@ -28,4 +28,8 @@ public class EdgeColoredQuotientGraph extends AbstractQuotientGraph {
         return graph.isConnected(i, j);
     }
 
+    public int[] getConnected(int vertexIndex) {
+        return graph.getConnected(vertexIndex);
+    }
+
 }
@@ -3,20 +3,37 @@ package signature.edgecolored;
 import java.util.Map;
 
 import signature.AbstractVertexSignature;
+import signature.GraphAccessor;
+import signature.SymbolTable;
 
 public class EdgeColoredVertexSignature extends AbstractVertexSignature {
     
-    private EdgeColoredGraph graph;
+    private FrozenEdgeColoredGraph graph;
+    
+    /**
+     * The only vertex symbol
+     */
+    private static final SymbolTable VERTEX_SYMBOLS = SymbolTable.of(".");
     
     private Map<String, Integer> colorMap;
     
     public EdgeColoredVertexSignature(
             int rootVertexIndex, EdgeColoredGraph graph, Map<String, Integer> colorMap) {
-        this(rootVertexIndex, -1, graph, colorMap);
+        this(rootVertexIndex, -1, graph.freeze(), colorMap);
     }
     
     public EdgeColoredVertexSignature(
             int rootVertexIndex, int height, EdgeColoredGraph graph, Map<String, Integer> colorMap) {
+        this(rootVertexIndex, height, graph.freeze(), colorMap);
+    }
+    
+    public EdgeColoredVertexSignature(int rootVertexIndex,
+            FrozenEdgeColoredGraph graph, Map<String, Integer> colorMap) {
+        this(rootVertexIndex, -1, graph, colorMap);
+    }
+    
+    public EdgeColoredVertexSignature(int rootVertexIndex, int height,
+            FrozenEdgeColoredGraph graph, Map<String, Integer> colorMap) {
         super();
         this.graph = graph;
         this.colorMap = colorMap;
@@ -34,9 +51,9 @@ public class EdgeColoredVertexSignature extends AbstractVertexSignature {
 
     @Override
     public String getEdgeLabel(int vertexIndex, int otherVertexIndex) {
-        EdgeColoredGraph.Edge edge = this.graph.getEdge(vertexIndex, otherVertexIndex);
-        if (edge != null) {
-            return edge.edgeLabel;
+        String edgeLabel = this.graph.getEdgeLabel(vertexIndex, otherVertexIndex);
+        if (edgeLabel != null) {
+            return edgeLabel;
         } else {
             // ??
             return "";
@@ -48,6 +65,21 @@ public class EdgeColoredVertexSignature extends AbstractVertexSignature {
         return ".";
     }
 
+    @Override
+    protected SymbolTable getVertexSymbolTable() {
+        return VERTEX_SYMBOLS;
+    }
+
+    @Override
+    protected GraphAccessor getGraphAccessor() {
+        return graph.getGraphAccessor(colorMap);
+    }
+
+    @Override
+    protected SymbolTable getEdgeLabelTable() {
+        return graph.getEdgeLabelTable();
+    }
+
     @Override
     protected int getIntLabel(int vertexIndex) {
         return -1;
@@ -0,0 +1,191 @@
+package signature.edgecolored;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import signature.AdjacencyAccessor;
+import signature.GraphAccessor;
+import signature.SymbolTable;
+
+/**
+ * An unchangeable copy of an {@link EdgeColoredGraph}, stored as sorted
+ * adjacency arrays (compressed sparse rows), with the label of each edge as
+ * a code in a {@link SymbolTable}. Finding the neighbours of a vertex takes
+ * constant time, and finding the edge between two vertices is a binary 
+ * search rather than a scan over all the edges.
+ * 
+ * @author maclean
+ *
+ */
+public class FrozenEdgeColoredGraph {
+    
+    /**
+     * The adjacency, with the edge label codes as the edge colors
+     */
+    private final AdjacencyAccessor adjacency;
+    
+    private final SymbolTable edgeLabels;
+    
+    private final int[] edgeA;
+    
+    private final int[] edgeB;
+    
+    private final int[] edgeLabelCodes;
+    
+    /**
+     * The last accessor made with a color map, and that map
+     */
+    private GraphAccessor coloredAdjacency;
+    
+    private Map<String, Integer> colorMap;
+    
+    public String name;
+    
+    /**
+     * Freeze an edge colored graph, as it is now.
+     * 
+     * @param graph the graph to copy
+     */
+    public FrozenEdgeColoredGraph(EdgeColoredGraph graph) {
+        int edgeCount = graph.edges.size();
+        this.edgeA = new int[edgeCount];
+        this.edgeB = new int[edgeCount];
+        String[] labels = new String[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            EdgeColoredGraph.Edge edge = graph.edges.get(i);
+            edgeA[i] = edge.a;
+            edgeB[i] = edge.b;
+            labels[i] = edge.edgeLabel;
+        }
+        this.edgeLabels = new SymbolTable(Arrays.asList(labels));
+        this.edgeLabelCodes = edgeLabels.encode(labels);
+        this.adjacency = new AdjacencyAccessor(new int[graph.getVertexCount()], 
+                edgeCount, edgeA, edgeB, edgeLabelCodes, edgeLabelCodes);
+        this.name = graph.name;
+    }
+    
+    public int getVertexCount() {
+        return adjacency.getVertexCount();
+    }
+    
+    public int getEdgeCount() {
+        return edgeA.length;
+    }
+    
+    public int degree(int vertexIndex) {
+        return adjacency.degree(vertexIndex);
+    }
+    
+    /**
+     * Get a neighbour of a vertex, without making an array.
+     * 
+     * @param vertexIndex the index of a vertex
+     * @param i the position of the neighbour, up to the degree
+     * @return the i<sup>th</sup> neighbour, in increasing order
+     */
+    public int getNeighbor(int vertexIndex, int i) {
+        return adjacency.neighbor(vertexIndex, i);
+    }
+    
+    /**
+     * Get the neighbours of a vertex, in increasing order, as a new array.
+     * 
+     * @param vertexIndex the index of a vertex
+     * @return the indices of the connected vertices
+     */
+    public int[] getConnected(int vertexIndex) {
+        int[] connected = new int[adjacency.degree(vertexIndex)];
+        for (int i = 0; i < connected.length; i++) {
+            connected[i] = adjacency.neighbor(vertexIndex, i);
+        }
+        return connected;
+    }
+    
+    public boolean isConnected(int i, int j) {
+        return adjacency.indexOf(i, j) != -1;
+    }
+    
+    /**
+     * Get the code of the label of the edge between two vertices.
+     * 
+     * @param i the index of a vertex
+     * @param j the index of another vertex
+     * @return the code in {@link #getEdgeLabelTable()}, or 
+     *         SymbolTable.UNKNOWN if there is no edge
+     */
+    public int getEdgeLabelCode(int i, int j) {
+        int position = adjacency.indexOf(i, j);
+        if (position == -1) {
+            return SymbolTable.UNKNOWN;
+        }
+        return adjacency.edgeLabelCode(i, position);
+    }
+    
+    /**
+     * Get the label of the edge between two vertices.
+     * 
+     * @param i the index of a vertex
+     * @param j the index of another vertex
+     * @return the label, or null if there is no edge
+     */
+    public String getEdgeLabel(int i, int j) {
+        int code = getEdgeLabelCode(i, j);
+        return (code == SymbolTable.UNKNOWN)? null : edgeLabels.getSymbol(code);
+    }
+    
+    public SymbolTable getEdgeLabelTable() {
+        return edgeLabels;
+    }
+    
+    /**
+     * Get the view of the graph that signatures are built from, with the 
+     * edge colors from a color map. The colors are looked up once for each
+     * label, and the view is kept until it is asked for with another map.
+     * 
+     * @param colorMap the color of each edge label, or 1 if it is not there
+     * @return the accessor for the vertices and edges
+     */
+    public synchronized GraphAccessor getGraphAccessor(
+            Map<String, Integer> colorMap) {
+        if (coloredAdjacency == null || this.colorMap != colorMap) {
+            int[] colorForCode = new int[edgeLabels.size()];
+            for (int code = 0; code < colorForCode.length; code++) {
+                Integer color = colorMap.get(edgeLabels.getSymbol(code));
+                colorForCode[code] = (color == null)? 1 : color;
+            }
+            int[] colors = new int[edgeA.length];
+            for (int i = 0; i < colors.length; i++) {
+                colors[i] = colorForCode[edgeLabelCodes[i]];
+            }
+            coloredAdjacency = new AdjacencyAccessor(
+                    new int[getVertexCount()], edgeA.length, 
+                    edgeA, edgeB, colors, edgeLabelCodes);
+            this.colorMap = colorMap;
+        }
+        return coloredAdjacency;
+    }
+    
+    public String toString() {
+        List<String> edges = new ArrayList<String>();
+        for (int v = 0; v < getVertexCount(); v++) {
+            boolean loop = false;
+            for (int i = 0; i < adjacency.degree(v); i++) {
+                int w = adjacency.neighbor(v, i);
+                
+                // a loop is in the neighbours twice, but is one edge
+                if (w == v) {
+                    loop = !loop;
+                    if (!loop) continue;
+                } else if (w < v) {
+                    continue;
+                }
+                String label = edgeLabels.getSymbol(adjacency.edgeLabelCode(v, i));
+                edges.add(v + "-" + w + "(" + label + ")");
+            }
+        }
+        return edges.toString();
+    }
+
+}
@@ -0,0 +1,136 @@
+package signature.simple;
+
+import java.util.Arrays;
+
+import signature.AdjacencyAccessor;
+import signature.GraphAccessor;
+
+/**
+ * An unchangeable copy of a {@link SimpleGraph}, stored as sorted adjacency
+ * arrays (compressed sparse rows). Finding the neighbours of a vertex or its
+ * degree takes constant time, and testing if two vertices are connected is a
+ * binary search - rather than a scan over all the edges - so that signatures
+ * can be made for graphs with very many vertices.
+ *
+ * @author maclean
+ *
+ */
+public class FrozenSimpleGraph {
+
+    private final AdjacencyAccessor adjacency;
+
+    private final int edgeCount;
+
+    public String name;
+
+    /**
+     * Freeze a simple graph, as it is now.
+     *
+     * @param graph the graph to copy
+     */
+    public FrozenSimpleGraph(SimpleGraph graph) {
+        this.edgeCount = graph.edges.size();
+        int[] a = new int[edgeCount];
+        int[] b = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            SimpleGraph.Edge edge = graph.edges.get(i);
+            a[i] = edge.a;
+            b[i] = edge.b;
+        }
+        this.adjacency = makeAdjacency(graph.getVertexCount(), a, b);
+        this.name = graph.name;
+    }
+
+    /**
+     * Make a graph directly from arrays of edges, without a
+     * {@link SimpleGraph}.
+     *
+     * @param vertexCount the number of vertices
+     * @param a one end of each edge
+     * @param b the other end of each edge
+     */
+    public FrozenSimpleGraph(int vertexCount, int[] a, int[] b) {
+        this.edgeCount = a.length;
+        this.adjacency = makeAdjacency(vertexCount, a, b);
+    }
+
+    private static AdjacencyAccessor makeAdjacency(
+            int vertexCount, int[] a, int[] b) {
+        int[] colors = new int[a.length];
+        Arrays.fill(colors, 1);
+        return new AdjacencyAccessor(
+                new int[vertexCount], a.length, a, b, colors, new int[a.length]);
+    }
+
+    public int getVertexCount() {
+        return adjacency.getVertexCount();
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public int degree(int vertexIndex) {
+        return adjacency.degree(vertexIndex);
+    }
+
+    /**
+     * Get a neighbour of a vertex, without making an array.
+     *
+     * @param vertexIndex the index of a vertex
+     * @param i the position of the neighbour, up to the degree
+     * @return the i<sup>th</sup> neighbour, in increasing order
+     */
+    public int getNeighbor(int vertexIndex, int i) {
+        return adjacency.neighbor(vertexIndex, i);
+    }
+
+    /**
+     * Get the neighbours of a vertex, in increasing order, as a new array.
+     *
+     * @param vertexIndex the index of a vertex
+     * @return the indices of the connected vertices
+     */
+    public int[] getConnected(int vertexIndex) {
+        int[] connected = new int[adjacency.degree(vertexIndex)];
+        for (int i = 0; i < connected.length; i++) {
+            connected[i] = adjacency.neighbor(vertexIndex, i);
+        }
+        return connected;
+    }
+
+    public boolean isConnected(int i, int j) {
+        return adjacency.indexOf(i, j) != -1;
+    }
+
+    /**
+     * @return the view of the graph that signatures are built from
+     */
+    public GraphAccessor getGraphAccessor() {
+        return adjacency;
+    }
+
+    public String toString() {
+        StringBuffer buffer = new StringBuffer("[");
+        for (int v = 0; v < getVertexCount(); v++) {
+            boolean loop = false;
+            for (int i = 0; i < adjacency.degree(v); i++) {
+                int w = adjacency.neighbor(v, i);
+
+                // a loop is in the neighbours twice, but is one edge
+                if (w == v) {
+                    loop = !loop;
+                    if (!loop) continue;
+                } else if (w < v) {
+                    continue;
+                }
+                if (buffer.length() > 1) {
+                    buffer.append(", ");
+                }
+                buffer.append(v).append('-').append(w);
+            }
+        }
+        return buffer.append(']').toString();
+    }
+
+}
@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import signature.GraphAccessor;
+
 /**
  * A very simple graph class - the equivalent of a client library class.
  * 
@@ -126,9 +128,31 @@ public class SimpleGraph {
         return degreeCount;
     }
 
+    /**
+     * Make an unchangeable copy of the graph as it is now, with the edges in
+     * arrays that are quick to look up.
+     * 
+     * @return a frozen copy of the graph
+     */
+    public FrozenSimpleGraph freeze() {
+        return new FrozenSimpleGraph(this);
+    }
+    
+    /**
+     * Get a view of the graph with the neighbours of each vertex in order, 
+     * from a new frozen copy. All the vertices have the label code 0, and
+     * all the edges have the color 1 and the label code 0.
+     * 
+     * @return the accessor for the vertices and edges
+     */
+    public GraphAccessor getGraphAccessor() {
+        return freeze().getGraphAccessor();
+    }
+
     public String toString() {
-        Collections.sort(edges);
-        return edges.toString();
+        List<Edge> sortedEdges = new ArrayList<Edge>(edges);
+        Collections.sort(sortedEdges);
+        return sortedEdges.toString();
     }
     
 }
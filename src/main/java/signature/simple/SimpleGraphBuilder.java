@@ -31,5 +31,10 @@ public class SimpleGraphBuilder extends AbstractGraphBuilder {
         super.makeFromColoredTree(tree);
         return this.graph;
     }
+    
+    public SimpleGraph fromSignature(CharSequence signature) {
+        super.makeFromSignature(signature);
+        return this.graph;
+    }
 
 }
@@ -4,7 +4,11 @@ import signature.AbstractGraphSignature;
 import signature.AbstractVertexSignature;
 
 /**
- * A test implementation of signatures for {@link SimpleGraph}s.
+ * A test implementation of signatures for {@link SimpleGraph}s. A signature
+ * for a SimpleGraph reads the graph as it is when each vertex signature is 
+ * made, and freezes it again for each one; for a large graph, make the 
+ * signature for a {@link SimpleGraph#freeze()} copy instead, so that it is 
+ * frozen only once.
  * 
  * @author maclean
  *
@@ -13,42 +17,83 @@ public class SimpleGraphSignature extends AbstractGraphSignature {
     
     public SimpleGraph graph;
     
+    /**
+     * The graph, if the signature was made for a frozen graph
+     */
+    private FrozenSimpleGraph frozenGraph;
+    
     public SimpleGraphSignature(SimpleGraph graph) {
         super();
         this.graph = graph;
     }
+    
+    public SimpleGraphSignature(FrozenSimpleGraph frozenGraph) {
+        super();
+        this.frozenGraph = frozenGraph;
+    }
+    
+    private SimpleVertexSignature makeVertexSignature(
+            int vertexIndex, int height) {
+        if (frozenGraph == null) {
+            return new SimpleVertexSignature(vertexIndex, height, graph);
+        } else {
+            return new SimpleVertexSignature(vertexIndex, height, frozenGraph);
+        }
+    }
 
     public int getVertexCount() {
-        return this.graph.getVertexCount();
+        if (frozenGraph == null) {
+            return this.graph.getVertexCount();
+        } else {
+            return frozenGraph.getVertexCount();
+        }
     }
 
     @Override
     public String signatureStringForVertex(int vertexIndex) {
-        SimpleVertexSignature vertexSignature;
-        int height = super.getHeight();
-        if (height == -1) {
-            vertexSignature = 
-                new SimpleVertexSignature(vertexIndex, this.graph);
-        } else {
-            vertexSignature = 
-                new SimpleVertexSignature(vertexIndex, height, this.graph);
-        }
-        return vertexSignature.toCanonicalString();
+        SimpleVertexSignature vertexSignature = 
+            makeVertexSignature(vertexIndex, super.getHeight());
+        String signatureString = vertexSignature.toCanonicalString();
+        vertexSignature.release();
+        return signatureString;
     }
 
     @Override
     public String signatureStringForVertex(int vertexIndex, int height) {
         SimpleVertexSignature vertexSignature  = 
-            new SimpleVertexSignature(vertexIndex, height, this.graph);
-        return vertexSignature.toCanonicalString();
+            makeVertexSignature(vertexIndex, height);
+        String signatureString = vertexSignature.toCanonicalString();
+        vertexSignature.release();
+        return signatureString;
     }
 
     public String toCanonicalString() {
         return super.toCanonicalString();
     }
 
+    /**
+     * Every vertex has the same symbol, so the only roots that this skips 
+     * before canonizing are those that have neighbours, when some vertex has
+     * none. The degree can not be used to order the other roots, as the 
+     * string that follows the root depends on the order of its children, 
+     * which is only known after the search.
+     */
+    @Override
+    protected String getVertexSymbol(int vertexIndex) {
+        return ".";
+    }
+
+    @Override
+    protected int getVertexDegree(int vertexIndex) {
+        if (frozenGraph == null) {
+            return this.graph.degree(vertexIndex);
+        } else {
+            return frozenGraph.degree(vertexIndex);
+        }
+    }
+
     @Override
     public AbstractVertexSignature signatureForVertex(int vertexIndex) {
-        return new SimpleVertexSignature(vertexIndex, this.graph);
+        return makeVertexSignature(vertexIndex, -1);
     }
 }
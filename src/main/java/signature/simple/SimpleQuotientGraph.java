@@ -4,21 +4,21 @@ import signature.AbstractQuotientGraph;
 
 public class SimpleQuotientGraph extends AbstractQuotientGraph {
     
-    private SimpleGraph graph;
+    private FrozenSimpleGraph graph;
     
     public SimpleQuotientGraph(SimpleGraph graph) {
         super();
-        this.graph = graph;
+        this.graph = graph.freeze();
         
-        SimpleGraphSignature graphSignature = new SimpleGraphSignature(graph);
+        SimpleGraphSignature graphSignature = new SimpleGraphSignature(this.graph);
         super.construct(graphSignature.getSymmetryClasses());
     }
     
     public SimpleQuotientGraph(SimpleGraph graph, int height) {
         super();
-        this.graph = graph;
+        this.graph = graph.freeze();
         
-        SimpleGraphSignature graphSignature = new SimpleGraphSignature(graph);
+        SimpleGraphSignature graphSignature = new SimpleGraphSignature(this.graph);
         super.construct(graphSignature.getSymmetryClasses(height));
     }
 
@@ -26,4 +26,8 @@ public class SimpleQuotientGraph extends AbstractQuotientGraph {
         return graph.isConnected(i, j);
     }
 
+    public int[] getConnected(int vertexIndex) {
+        return graph.getConnected(vertexIndex);
+    }
+
 }
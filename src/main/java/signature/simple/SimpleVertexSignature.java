@@ -1,17 +1,38 @@
 package signature.simple;
 
 import signature.AbstractVertexSignature;
+import signature.GraphAccessor;
+import signature.SymbolTable;
 
 public class SimpleVertexSignature extends AbstractVertexSignature {
     
-    private SimpleGraph graph;
+    /**
+     * The only vertex symbol
+     */
+    private static final SymbolTable VERTEX_SYMBOLS = SymbolTable.of(".");
+    
+    /**
+     * The only edge label
+     */
+    private static final SymbolTable EDGE_LABELS = SymbolTable.of("");
+    
+    private FrozenSimpleGraph graph;
     
     public SimpleVertexSignature(int rootVertexIndex, SimpleGraph graph) {
-        this(rootVertexIndex, -1, graph);
+        this(rootVertexIndex, -1, graph.freeze());
     }
     
     public SimpleVertexSignature(
             int rootVertexIndex, int height, SimpleGraph graph) {
+        this(rootVertexIndex, height, graph.freeze());
+    }
+    
+    public SimpleVertexSignature(int rootVertexIndex, FrozenSimpleGraph graph) {
+        this(rootVertexIndex, -1, graph);
+    }
+    
+    public SimpleVertexSignature(
+            int rootVertexIndex, int height, FrozenSimpleGraph graph) {
         super();
         this.graph = graph;
         if (height == -1) {
@@ -36,6 +57,21 @@ public class SimpleVertexSignature extends AbstractVertexSignature {
         return ".";
     }
 
+    @Override
+    protected SymbolTable getVertexSymbolTable() {
+        return VERTEX_SYMBOLS;
+    }
+
+    @Override
+    protected GraphAccessor getGraphAccessor() {
+        return graph.getGraphAccessor();
+    }
+
+    @Override
+    protected SymbolTable getEdgeLabelTable() {
+        return EDGE_LABELS;
+    }
+
     @Override
     protected int getIntLabel(int vertexIndex) {
         return -1;
@@ -0,0 +1,59 @@
+package signature;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import signature.simple.SimpleGraph;
+import signature.simple.SimpleGraphFactory;
+import signature.simple.SimpleVertexSignature;
+
+public class AdjacencyAccessorTest {
+
+    /**
+     * A signature that builds its DAG from getConnected and getEdgeLabel,
+     * as if there were no accessor.
+     */
+    private static class StringSignature extends SimpleVertexSignature {
+
+        public StringSignature(int rootVertexIndex, SimpleGraph graph) {
+            super(rootVertexIndex, graph);
+        }
+
+        @Override
+        protected GraphAccessor getGraphAccessor() {
+            return null;
+        }
+    }
+
+    @Test
+    public void neighborsAreSorted() {
+        int[] a = { 3, 0, 2, 1, 0 };
+        int[] b = { 0, 2, 1, 3, 1 };
+        int[] colors = { 1, 2, 3, 4, 5 };
+        int[] labels = { 5, 4, 3, 2, 1 };
+        AdjacencyAccessor accessor = 
+            new AdjacencyAccessor(new int[] { 0, 1, 0, 1 }, 5, a, b, colors, labels);
+        Assert.assertEquals(4, accessor.getVertexCount());
+        Assert.assertEquals(3, accessor.degree(0));
+        Assert.assertEquals(1, accessor.neighbor(0, 0));
+        Assert.assertEquals(2, accessor.neighbor(0, 1));
+        Assert.assertEquals(3, accessor.neighbor(0, 2));
+        Assert.assertEquals(5, accessor.edgeColor(0, 0));
+        Assert.assertEquals(4, accessor.edgeLabelCode(0, 1));
+        Assert.assertEquals(1, accessor.edgeColor(0, 2));
+        Assert.assertEquals(1, accessor.vertexLabelCode(3));
+        Assert.assertEquals(2, accessor.indexOf(1, 3));
+        Assert.assertEquals(-1, accessor.indexOf(2, 3));
+    }
+
+    @Test
+    public void sameSignaturesAsStrings() {
+        SimpleGraph graph = SimpleGraphFactory.makeHerschelGraph();
+        for (int i = 0; i < graph.getVertexCount(); i++) {
+            Assert.assertEquals(
+                    new StringSignature(i, graph).toCanonicalString(),
+                    new SimpleVertexSignature(i, graph).toCanonicalString());
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package signature;
 
+import java.util.Arrays;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -248,6 +250,67 @@ public class DAGTester {
         dag.updateVertexInvariants();
         System.out.println(dag.copyInvariants());
     }
-
+    
+    @Test
+    public void compactStorageViews() {
+        // a three-cycle, as the signature builder would make it
+        DAG dag = new DAG(0, 3);
+        int childA = dag.addNode(1, 1);
+        dag.addRelation(childA, 0, 1);
+        int childB = dag.addNode(2, 1);
+        dag.addRelation(childB, 0, 2);
+        int childC = dag.addNode(2, 2);
+        dag.addRelation(childC, childA, 1);
+        int childD = dag.addNode(1, 2);
+        dag.addRelation(childD, childB, 1);
+        
+        Assert.assertEquals(5, dag.getNodeCount());
+        Assert.assertEquals(3, dag.getLayerCount());
+        Assert.assertEquals(2, dag.getChildCount(0));
+        Assert.assertEquals(childA, dag.getChild(0, 0));
+        Assert.assertEquals(childB, dag.getChild(0, 1));
+        
+        DAG.Node root = dag.getRoot();
+        Assert.assertEquals(2, root.children.size());
+        Assert.assertEquals(2, root.children.get(1).vertexIndex);
+        Assert.assertEquals(Integer.valueOf(2), root.edgeColors.get(2));
+        DAG.Node nodeC = dag.getNode(childC);
+        Assert.assertEquals(1, nodeC.parents.get(0).vertexIndex);
+        Assert.assertEquals(2, dag.getLayer(2).size());
+    }
+    
+    @SuppressWarnings("deprecation")
+    @Test
+    public void nodeObjectBuilding() {
+        // the same three-cycle, built with the node methods
+        DAG dag = new DAG(0, 3);
+        DAG.Node root = dag.getRoot();
+        DAG.Node nodeA = dag.new Node(1, 1);
+        DAG.Node nodeB = dag.makeNode(2, 1);
+        nodeA.addParent(root);
+        root.addChild(nodeA);
+        root.addChild(nodeB);
+        dag.addLayer(Arrays.asList(nodeA, nodeB));
+        DAG.Node nodeC = dag.makeNode(2, 2);
+        nodeA.addChild(nodeC);
+        
+        Assert.assertSame(nodeA, dag.getNode(nodeA.getIndex()));
+        Assert.assertEquals(2, root.children.size());
+        Assert.assertEquals(1, nodeA.parents.size());
+        Assert.assertEquals(1, nodeC.parents.size());
+        Assert.assertEquals(2, dag.getLayer(1).size());
+        
+        dag.initializeWithStringLabels(new String[] { "C", "C", "C" });
+        dag.updateLayer(dag.getLayer(2), DAG.Direction.UP);
+        String byNodes = dag.copyInvariants().toString();
+        dag.updateLayer(2, DAG.Direction.UP);
+        Assert.assertEquals(byNodes, dag.copyInvariants().toString());
+        
+        try {
+            dag.addLayer(Arrays.asList(nodeA));
+            Assert.fail("a node from an earlier layer was accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
 
 }
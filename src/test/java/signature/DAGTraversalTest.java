@@ -0,0 +1,58 @@
+package signature;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DAGTraversalTest {
+
+    /**
+     * Make the DAG for a square, rooted at vertex 0.
+     */
+    public DAG makeSquareDAG() {
+        DAG dag = new DAG(0, 4);
+        int a = dag.addNode(1, 1);
+        dag.addRelation(a, 0, 0);
+        int b = dag.addNode(3, 1);
+        dag.addRelation(b, 0, 0);
+        int c = dag.addNode(2, 2);
+        dag.addRelation(c, a, 0);
+        dag.addRelation(c, b, 0);
+        dag.initializeWithStringLabels(new String[] { "C", "C", "C", "C" });
+        return dag;
+    }
+
+    @Test
+    public void squareEvents() {
+        DAG dag = makeSquareDAG();
+        DAGTraversal traversal = new DAGTraversal(dag);
+        traversal.traverse();
+        int o = DAGTraversal.OPEN_BRANCH;
+        int c = DAGTraversal.CLOSE_BRANCH;
+        int[] expected = new int[] { 0, o, 1, o, 3, c, 2, o, 3, c, c };
+        int[] events = new int[traversal.getEventCount()];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = traversal.getEvent(i);
+        }
+        Assert.assertArrayEquals(expected, events);
+        Assert.assertArrayEquals(
+                new int[] { 1, 1, 2, 1 }, traversal.getOccurrences());
+        Assert.assertArrayEquals(
+                new int[] { 0, 1, 2, 1 }, traversal.getParentCounts());
+        Assert.assertArrayEquals(
+                new int[] { 0, 1, 2, 3, 2 }, traversal.getPrintOrder());
+    }
+
+    @Test
+    public void repeatedTraversalIsTheSame() {
+        DAG dag = makeSquareDAG();
+        dag.updateVertexInvariants();
+        DAGTraversal traversal = new DAGTraversal(dag);
+        traversal.traverse();
+        int[] first = traversal.getPrintOrder();
+        traversal.traverse();
+        Assert.assertArrayEquals(first, traversal.getPrintOrder());
+        Assert.assertArrayEquals(
+                dag.getParentsInFinalString(), traversal.getParentCounts());
+    }
+
+}
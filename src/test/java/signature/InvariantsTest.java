@@ -0,0 +1,59 @@
+package signature;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InvariantsTest {
+
+    @Test
+    public void rollbackUndoesChanges() {
+        Invariants invariants = new Invariants(3, 4);
+        invariants.setVertexInvariant(0, 1);
+        Invariants before = (Invariants) invariants.clone();
+
+        int mark = invariants.mark();
+        invariants.setColor(1, 0);
+        invariants.setNodeInvariant(2, 5);
+        invariants.setVertexInvariant(0, 2);
+        invariants.setVertexInvariant(0, 3);
+        Assert.assertEquals(4, invariants.getTrailSize());
+
+        invariants.rollback(mark);
+        Assert.assertEquals(0, invariants.getTrailSize());
+        Assert.assertArrayEquals(before.colors, invariants.colors);
+        Assert.assertArrayEquals(before.nodeInvariants, invariants.nodeInvariants);
+        Assert.assertArrayEquals(
+                before.vertexInvariants, invariants.vertexInvariants);
+    }
+
+    @Test
+    public void nestedMarks() {
+        Invariants invariants = new Invariants(2, 2);
+        int outer = invariants.mark();
+        invariants.setColor(0, 0);
+        int inner = invariants.mark();
+        invariants.setColor(1, 1);
+        invariants.rollback(inner);
+        Assert.assertEquals(0, invariants.getColor(0));
+        Assert.assertEquals(-1, invariants.getColor(1));
+        invariants.rollback(outer);
+        Assert.assertEquals(-1, invariants.getColor(0));
+    }
+
+    @Test
+    public void unchangedValuesAreNotRecorded() {
+        Invariants invariants = new Invariants(2, 2);
+        invariants.mark();
+        invariants.setColor(0, -1);
+        invariants.setNodeInvariant(0, 0);
+        Assert.assertEquals(0, invariants.getTrailSize());
+    }
+
+    @Test
+    public void noTrailWithoutMark() {
+        Invariants invariants = new Invariants(2, 2);
+        invariants.setColor(0, 1);
+        Assert.assertEquals(0, invariants.getTrailSize());
+    }
+
+}
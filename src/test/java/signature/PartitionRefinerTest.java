@@ -0,0 +1,105 @@
+package signature;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PartitionRefinerTest {
+
+    /**
+     * Make a star with a center and two leaves, as a DAG rooted at the center.
+     */
+    public CompactDAG makeStar() {
+        CompactDAG dag = new CompactDAG();
+        int root = dag.addNode(0, 0);
+        dag.addArc(dag.addNode(1, 1), root, 0);
+        dag.addArc(dag.addNode(2, 1), root, 0);
+        return dag;
+    }
+
+    @Test
+    public void equalLeavesHaveEqualRanks() {
+        CompactDAG dag = makeStar();
+        Invariants invariants = new Invariants(3, 3);
+        PartitionRefiner refiner = new PartitionRefiner(dag);
+        refiner.updateLayer(invariants, 3, 1, DAG.Direction.UP);
+        Assert.assertEquals(1, invariants.getNodeInvariant(1));
+        Assert.assertEquals(1, invariants.getNodeInvariant(2));
+    }
+
+    @Test
+    public void largeKeysAreNotEqual() {
+        // the boxed comparison only matched values in the Integer cache
+        CompactDAG dag = makeStar();
+        Invariants invariants = new Invariants(3, 3);
+        invariants.setVertexInvariant(1, 1000);
+        invariants.setVertexInvariant(2, 1000);
+        PartitionRefiner refiner = new PartitionRefiner(dag);
+        refiner.updateLayer(invariants, 3, 1, DAG.Direction.UP);
+        Assert.assertEquals(1, invariants.getNodeInvariant(1));
+        Assert.assertEquals(2, invariants.getNodeInvariant(2));
+    }
+
+    @Test
+    public void vertexRanks() {
+        CompactDAG dag = makeStar();
+        Invariants invariants = new Invariants(3, 3);
+        invariants.setNodeInvariant(0, 1);
+        invariants.setNodeInvariant(1, 2);
+        invariants.setNodeInvariant(2, 1);
+        PartitionRefiner refiner = new PartitionRefiner(dag);
+        refiner.computeVertexInvariants(invariants, 3);
+        // the root is [1, 0], and the leaves are [0, 2] and [0, 1]
+        Assert.assertArrayEquals(
+                new int[] { 3, 2, 1 }, invariants.getVertexInvariants());
+    }
+
+    /**
+     * Make the DAG for a square, rooted at vertex 0.
+     */
+    public DAG makeSquareDAG() {
+        DAG dag = new DAG(0, 4);
+        int a = dag.addNode(1, 1);
+        dag.addRelation(a, 0, 0);
+        int b = dag.addNode(3, 1);
+        dag.addRelation(b, 0, 0);
+        int c = dag.addNode(2, 2);
+        dag.addRelation(c, a, 0);
+        dag.addRelation(c, b, 0);
+        dag.initializeWithStringLabels(new String[] { "C", "C", "C", "C" });
+        return dag;
+    }
+
+    @Test
+    public void unchangedInputsAreSkipped() {
+        DAG dag = makeSquareDAG();
+        dag.updateVertexInvariants();
+        Assert.assertTrue(dag.getRefiner().getRankedNodeCount() > 0);
+        int[] vertexInvariants = dag.copyInvariants().getVertexInvariants();
+
+        dag.updateVertexInvariants();
+        Assert.assertEquals(0, dag.getRefiner().getRankedNodeCount());
+        Assert.assertTrue(dag.getRefiner().getSkippedNodeCount() > 0);
+        Assert.assertArrayEquals(
+                vertexInvariants, dag.copyInvariants().getVertexInvariants());
+    }
+
+    @Test
+    public void incrementalMatchesFullSweeps() {
+        DAG incremental = makeSquareDAG();
+        DAG full = makeSquareDAG();
+        full.getRefiner().setIncremental(false);
+        incremental.updateVertexInvariants();
+        full.updateVertexInvariants();
+        incremental.setColor(1, 1);
+        full.setColor(1, 1);
+        incremental.updateVertexInvariants();
+        full.updateVertexInvariants();
+        Assert.assertArrayEquals(
+                full.copyInvariants().getVertexInvariants(),
+                incremental.copyInvariants().getVertexInvariants());
+        Assert.assertArrayEquals(
+                full.copyInvariants().nodeInvariants,
+                incremental.copyInvariants().nodeInvariants);
+    }
+
+}
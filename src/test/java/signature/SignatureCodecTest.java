@@ -0,0 +1,108 @@
+package signature;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import signature.chemistry.MoleculeFactory;
+import signature.chemistry.MoleculeSignature;
+
+public class SignatureCodecTest {
+
+    private static final String[] SYMBOLS = { "C", "Cl", "CA", "c", "O", "N" };
+
+    private static final String[] EDGES = { "", "=", "#", "-", "p" };
+
+    /**
+     * Make a random signature string, with symbols that are prefixes of each
+     * other and colors that sort differently as numbers and as strings.
+     */
+    public String randomSignature(Random random, int depth) {
+        StringBuilder builder = new StringBuilder();
+        appendNode(random, builder, "", depth);
+        return builder.toString();
+    }
+
+    private void appendNode(
+            Random random, StringBuilder builder, String edge, int depth) {
+        builder.append(edge).append('[');
+        builder.append(SYMBOLS[random.nextInt(SYMBOLS.length)]);
+        if (random.nextInt(3) == 0) {
+            builder.append(',').append(random.nextInt(12));
+        }
+        builder.append(']');
+        int childCount = (depth == 0) ? 0 : random.nextInt(3);
+        if (childCount > 0) {
+            builder.append('(');
+            for (int i = 0; i < childCount; i++) {
+                appendNode(random, builder, 
+                        EDGES[random.nextInt(EDGES.length)], depth - 1);
+            }
+            builder.append(')');
+        }
+    }
+
+    @Test
+    public void orderMatchesStringOrder() {
+        Random random = new Random(42);
+        List<String> signatures = new ArrayList<String>();
+        for (int i = 0; i < 300; i++) {
+            signatures.add(randomSignature(random, 3));
+        }
+        SignatureCodec codec = new SignatureCodec(
+                Arrays.asList(SYMBOLS), Arrays.asList(EDGES));
+        List<byte[]> encoded = new ArrayList<byte[]>();
+        for (String signature : signatures) {
+            byte[] bytes = codec.encode(signature);
+            Assert.assertEquals(signature, codec.decode(bytes));
+            encoded.add(bytes);
+        }
+        for (int i = 0; i < signatures.size(); i++) {
+            for (int j = 0; j < signatures.size(); j++) {
+                int expected = Integer.signum(
+                        signatures.get(i).compareTo(signatures.get(j)));
+                Assert.assertEquals(expected, Integer.signum(
+                        SignatureCodec.compare(encoded.get(i), encoded.get(j))));
+            }
+        }
+    }
+
+    @Test
+    public void colorsCompareAsStrings() {
+        SignatureCodec codec = new SignatureCodec(
+                Arrays.asList("C"), new ArrayList<String>());
+        byte[] ten = codec.encode("[C,10]");
+        byte[] nine = codec.encode("[C,9]");
+        byte[] one = codec.encode("[C,1]");
+        Assert.assertTrue(SignatureCodec.compare(ten, nine) < 0);
+        Assert.assertTrue(SignatureCodec.compare(ten, one) < 0);
+        Assert.assertTrue(SignatureCodec.compare(
+                ByteBuffer.wrap(one), ByteBuffer.wrap(nine)) < 0);
+    }
+
+    @Test
+    public void moleculeSignatures() {
+        MoleculeSignature signature = 
+            new MoleculeSignature(MoleculeFactory.propellane());
+        List<String> strings = signature.getVertexSignatureStrings();
+        SignatureCodec codec = SignatureCodec.forSignatures(strings);
+        for (String string : strings) {
+            byte[] bytes = codec.encode(string);
+            Assert.assertEquals(string, codec.decode(bytes));
+            Assert.assertTrue(bytes.length < string.length());
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void unknownSymbol() {
+        SignatureCodec codec = new SignatureCodec(
+                Arrays.asList("C"), new ArrayList<String>());
+        codec.encode("[C]([O])");
+    }
+
+}
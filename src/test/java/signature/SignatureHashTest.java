@@ -0,0 +1,98 @@
+package signature;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import signature.chemistry.AtomSignature;
+import signature.chemistry.Molecule;
+import signature.chemistry.MoleculeFactory;
+import signature.chemistry.MoleculeSignature;
+
+public class SignatureHashTest {
+
+    @Test
+    public void stableValues() {
+        // these must only change along with the version
+        Assert.assertEquals(1, SignatureHash.VERSION);
+        Assert.assertEquals(0xc81642f94629f873L, SignatureHash.hash64("[C]([O])"));
+        Assert.assertArrayEquals(
+                new long[] { 0xc81642f94629f873L, 0xf59d0d00250371f6L },
+                SignatureHash.hash128("[C]([O])"));
+    }
+
+    @Test
+    public void streamingMatchesWhole() {
+        SignatureHash hash = new SignatureHash();
+        hash.append("[C]").append('(').append("[O])");
+        Assert.assertEquals(SignatureHash.hash64("[C]([O])"), hash.getHash64());
+        Assert.assertFalse(
+                SignatureHash.hash64("[C]([O])") == SignatureHash.hash64("[O]([C])"));
+    }
+
+    @Test
+    public void multisetIgnoresOrder() {
+        long a = SignatureHash.hash64("[C]");
+        long b = SignatureHash.hash64("[O]");
+        Assert.assertEquals(
+                SignatureHash.multisetHash64(new long[] { a, b, a }),
+                SignatureHash.multisetHash64(new long[] { a, a, b }));
+        Assert.assertFalse(
+                SignatureHash.multisetHash64(new long[] { a, b })
+                == SignatureHash.multisetHash64(new long[] { a, b, b }));
+    }
+
+    @Test
+    public void vertexHashIsHashOfCanonicalString() {
+        Molecule molecule = MoleculeFactory.propellane();
+        for (int i = 0; i < molecule.getAtomCount(); i++) {
+            String canonical = new AtomSignature(molecule, i).toCanonicalString();
+            AtomSignature signature = new AtomSignature(molecule, i);
+            Assert.assertArrayEquals(
+                    SignatureHash.hash128(canonical), signature.canonicalHash128());
+            Assert.assertEquals(
+                    SignatureHash.hash64(canonical), signature.canonicalHash64());
+        }
+    }
+
+    @Test
+    public void graphHashes() {
+        MoleculeSignature signature = 
+            new MoleculeSignature(MoleculeFactory.methylatedCyclobutane());
+        Assert.assertEquals(
+                SignatureHash.hash64(signature.toCanonicalString()),
+                signature.canonicalHash64());
+        List<String> strings = signature.getVertexSignatureStrings();
+        long[][] hashes = new long[strings.size()][];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[strings.size() - 1 - i] = SignatureHash.hash128(strings.get(i));
+        }
+        Assert.assertArrayEquals(
+                SignatureHash.multisetHash128(hashes), signature.fullHash128());
+    }
+
+    @Test
+    public void graphHashIsHashOfCanonicalString() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Molecule[] molecules = {
+                MoleculeFactory.propellane(),
+                MoleculeFactory.sixCage(),
+                MoleculeFactory.methylatedCyclobutane()
+        };
+        for (Molecule molecule : molecules) {
+            String canonical = new MoleculeSignature(molecule).toCanonicalString();
+            MoleculeSignature sequential = new MoleculeSignature(molecule);
+            Assert.assertArrayEquals(
+                    SignatureHash.hash128(canonical), sequential.canonicalHash128());
+            MoleculeSignature parallel = new MoleculeSignature(molecule);
+            parallel.setExecutor(executor);
+            Assert.assertArrayEquals(
+                    SignatureHash.hash128(canonical), parallel.canonicalHash128());
+        }
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,99 @@
+package signature;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import signature.simple.SimpleGraphFactory;
+import signature.simple.SimpleGraphSignature;
+
+public class SignatureParserTest {
+    
+    private static final String[] SIGNATURES = {
+        "[A]",
+        "[A]([B1][B2][B3])",
+        "[A](=[B1]([C])=[B2])",
+        "[C]([C]([C,12]=[O])[C]([C,12])#[N])",
+        "[.]([.]([.]([.,1][.,2])[.]([.,2][.,1])))"
+    };
+    
+    @Test
+    public void compactTreeRoundTrip() {
+        SignatureParser parser = new SignatureParser();
+        for (String signature : SIGNATURES) {
+            CompactColoredTree tree = parser.parse(signature);
+            Assert.assertEquals(signature, tree.toString());
+            Assert.assertEquals(signature, tree.toColoredTree().toString());
+            ColoredTree coloredTree = AbstractVertexSignature.parse(signature);
+            Assert.assertEquals(coloredTree.getHeight(), tree.getHeight());
+            Assert.assertEquals(
+                    coloredTree.numberOfColors(), tree.numberOfColors());
+        }
+    }
+    
+    @Test
+    public void treeStructure() {
+        SignatureParser parser = new SignatureParser();
+        CompactColoredTree tree = parser.parse("[A](=[B1]([C,3])[B2])");
+        Assert.assertEquals(4, tree.getNodeCount());
+        Assert.assertEquals(2, tree.getChildCount(0));
+        Assert.assertEquals(3, tree.getChild(0, 1));
+        Assert.assertEquals(1, tree.getParent(2));
+        Assert.assertEquals(3, tree.getNodeHeight(2));
+        Assert.assertEquals("=", tree.getEdgeLabel(1));
+        Assert.assertEquals("", tree.getEdgeLabel(3));
+        Assert.assertEquals("C", tree.getVertexSymbol(2));
+        Assert.assertEquals(3, tree.getColor(2));
+        Assert.assertFalse(tree.isColored(3));
+    }
+    
+    @Test
+    public void bytesSameAsString() {
+        SignatureParser parser = new SignatureParser();
+        for (String signature : SIGNATURES) {
+            byte[] bytes = signature.getBytes(StandardCharsets.US_ASCII);
+            Assert.assertEquals(signature, parser.parse(bytes).toString());
+        }
+    }
+    
+    @Test
+    public void codesAreKeptBetweenSignatures() {
+        SignatureParser parser = new SignatureParser();
+        CompactColoredTree first = parser.parse("[C]([O][N])");
+        CompactColoredTree second = parser.parse("[N]([C])");
+        Assert.assertEquals(3, parser.getVertexSymbols().size());
+        Assert.assertEquals(
+                first.getVertexSymbolCode(0), second.getVertexSymbolCode(1));
+        Assert.assertEquals(
+                first.getVertexSymbolCode(2), second.getVertexSymbolCode(0));
+    }
+    
+    @Test
+    public void streamingVisitor() {
+        String signature = new SimpleGraphSignature(
+                SimpleGraphFactory.make26Fullerene()).toCanonicalString();
+        final int[] counts = new int[2];
+        SignatureParser parser = new SignatureParser();
+        int nodeCount = parser.parse(signature, new SignatureVisitor() {
+            
+            public void visitNode(int nodeIndex, int parentIndex, int height,
+                    int vertexSymbolCode, int edgeLabelCode, int color) {
+                Assert.assertEquals(counts[0], nodeIndex);
+                Assert.assertTrue(parentIndex < nodeIndex);
+                counts[0]++;
+                if (color != -1) {
+                    counts[1]++;
+                }
+            }
+            
+        });
+        Assert.assertEquals(nodeCount, counts[0]);
+        Assert.assertEquals(
+                parser.parse(signature).getNodeCount(), counts[0]);
+        Assert.assertTrue(counts[1] > 0);
+        Assert.assertEquals(signature, 
+                AbstractVertexSignature.parse(signature).toString());
+    }
+
+}
@@ -0,0 +1,73 @@
+package signature;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SignatureWriterTest {
+
+    @Test
+    public void worseCandidateIsAbandoned() {
+        SignatureWriter writer = new SignatureWriter("[C]([O])", null);
+        writer.append("[C]([N]([H]))");
+        Assert.assertTrue(writer.isAbandoned());
+        Assert.assertTrue(writer.compareToBest() < 0);
+        Assert.assertEquals("[C]([", writer.getCandidate());
+    }
+
+    @Test
+    public void betterCandidateIsWritten() {
+        SignatureWriter writer = new SignatureWriter("[C]([N])", null);
+        writer.append("[C]([O]").append(')');
+        Assert.assertFalse(writer.isAbandoned());
+        Assert.assertTrue(writer.compareToBest() > 0);
+        Assert.assertEquals("[C]([O])", writer.getCandidate());
+    }
+
+    @Test
+    public void prefixesCompareLikeStrings() {
+        SignatureWriter shorter = new SignatureWriter("[C]([O])", null);
+        shorter.append("[C]");
+        Assert.assertEquals(
+                Integer.signum("[C]".compareTo("[C]([O])")),
+                Integer.signum(shorter.compareToBest()));
+
+        SignatureWriter longer = new SignatureWriter("[C]", null);
+        longer.append("[C]([O])");
+        Assert.assertTrue(longer.compareToBest() > 0);
+
+        SignatureWriter same = new SignatureWriter("[C]", null);
+        same.append("[C]");
+        Assert.assertEquals(0, same.compareToBest());
+    }
+
+    @Test
+    public void equalToOtherIsNotAbandoned() {
+        SignatureWriter writer = new SignatureWriter("[C]([O])", "[C]([N])");
+        writer.append("[C]([N])");
+        Assert.assertFalse(writer.isAbandoned());
+        Assert.assertTrue(writer.equalsOther());
+        Assert.assertTrue(writer.compareToBest() < 0);
+    }
+
+    @Test
+    public void greaterThanBoundIsAbandoned() {
+        // better than the best, but greater than the bound
+        SignatureWriter writer = 
+            new SignatureWriter("[C]([N])", null, "[C]([O])");
+        writer.append("[C]([P])");
+        Assert.assertTrue(writer.isAbandoned());
+        Assert.assertTrue(writer.exceedsBound());
+        Assert.assertEquals("[C]([", writer.getCandidate());
+
+        SignatureWriter longer = new SignatureWriter("", null, "[C]");
+        longer.append("[C]([O])");
+        Assert.assertTrue(longer.exceedsBound());
+
+        SignatureWriter same = new SignatureWriter("", null, "[C]([O])");
+        same.append("[C]([O])");
+        Assert.assertFalse(same.exceedsBound());
+        Assert.assertFalse(same.isAbandoned());
+        Assert.assertEquals("[C]([O])", same.getCandidate());
+    }
+
+}
@@ -0,0 +1,47 @@
+package signature;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import signature.chemistry.AtomSignature;
+import signature.chemistry.Molecule;
+
+public class SymbolTableTest {
+
+    @Test
+    public void codesFollowStringOrder() {
+        String[] symbols = { "O", "C", "Cl", "H", "C", "Br", "O" };
+        SymbolTable table = new SymbolTable(Arrays.asList(symbols));
+        Assert.assertEquals(5, table.size());
+        int[] codes = table.encode(symbols);
+        for (int i = 0; i < symbols.length; i++) {
+            Assert.assertEquals(symbols[i], table.getSymbol(codes[i]));
+            for (int j = 0; j < symbols.length; j++) {
+                int stringOrder = Integer.signum(symbols[i].compareTo(symbols[j]));
+                int codeOrder = Integer.signum(Integer.compare(codes[i], codes[j]));
+                Assert.assertEquals(stringOrder, codeOrder);
+            }
+        }
+        Assert.assertEquals(SymbolTable.UNKNOWN, table.getCode("N"));
+        Assert.assertFalse(table.containsAll(new String[] { "C", "N" }));
+    }
+
+    @Test
+    public void moleculeTableFollowsAtoms() {
+        Molecule molecule = new Molecule();
+        molecule.addAtom("O");
+        molecule.addAtom("C");
+        Assert.assertEquals(2, molecule.getSymbolTable().size());
+        Assert.assertEquals(1, molecule.getSymbolCodeFor(0));
+        molecule.addAtom("B");
+        molecule.addSingleBond(0, 1);
+        molecule.addSingleBond(1, 2);
+        Assert.assertEquals(2, molecule.getSymbolCodeFor(0));
+        Assert.assertEquals(0, molecule.getSymbolCodeFor(2));
+        Assert.assertEquals("[O]([C]([B]))",
+                new AtomSignature(molecule, 0).toCanonicalString());
+    }
+
+}
@@ -0,0 +1,35 @@
+package signature;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VertexPairSetTest {
+
+    @Test
+    public void pairsAreUnordered() {
+        VertexPairSet set = new VertexPairSet();
+        Assert.assertTrue(set.add(3, 1));
+        Assert.assertTrue(set.contains(1, 3));
+        Assert.assertTrue(set.contains(3, 1));
+        Assert.assertFalse(set.add(1, 3));
+        Assert.assertFalse(set.contains(1, 2));
+        Assert.assertEquals(1, set.size());
+    }
+
+    @Test
+    public void growAndClear() {
+        VertexPairSet set = new VertexPairSet(2);
+        for (int i = 0; i < 100; i++) {
+            set.add(i, i + 1);
+        }
+        Assert.assertEquals(100, set.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(set.contains(i + 1, i));
+        }
+        Assert.assertFalse(set.contains(0, 2));
+        set.clear();
+        Assert.assertEquals(0, set.size());
+        Assert.assertFalse(set.contains(0, 1));
+    }
+
+}
@@ -0,0 +1,58 @@
+package signature.chemistry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import signature.GraphAccessor;
+import signature.chemistry.Molecule.BondOrder;
+
+public class GraphAccessorTest {
+
+    /**
+     * An atom signature built from the molecule's string methods.
+     */
+    private static class StringAtomSignature extends AtomSignature {
+
+        public StringAtomSignature(Molecule molecule, int atomNumber) {
+            super(molecule, atomNumber);
+        }
+
+        @Override
+        protected GraphAccessor getGraphAccessor() {
+            return null;
+        }
+    }
+
+    @Test
+    public void sameSignaturesAsStrings() {
+        Molecule molecule = new Molecule();
+        molecule.addMultipleAtoms(6, "C");
+        molecule.addAtom("O");
+        molecule.addAtom("N");
+        molecule.addBond(0, 1, BondOrder.AROMATIC);
+        molecule.addBond(1, 2, BondOrder.AROMATIC);
+        molecule.addBond(2, 3, BondOrder.AROMATIC);
+        molecule.addBond(3, 4, BondOrder.AROMATIC);
+        molecule.addBond(4, 5, BondOrder.AROMATIC);
+        molecule.addBond(5, 0, BondOrder.AROMATIC);
+        molecule.addBond(6, 0, BondOrder.DOUBLE);
+        molecule.addBond(7, 3, BondOrder.TRIPLE);
+        for (int i = 0; i < molecule.getAtomCount(); i++) {
+            Assert.assertEquals(
+                    new StringAtomSignature(molecule, i).toCanonicalString(),
+                    new AtomSignature(molecule, i).toCanonicalString());
+        }
+    }
+
+    @Test
+    public void accessorFollowsBonds() {
+        Molecule molecule = new Molecule("C", 3);
+        molecule.addSingleBond(0, 1);
+        Assert.assertEquals(0, molecule.getGraphAccessor().degree(2));
+        molecule.addBond(1, 2, BondOrder.DOUBLE);
+        GraphAccessor accessor = molecule.getGraphAccessor();
+        Assert.assertEquals(1, accessor.degree(2));
+        Assert.assertEquals(2, accessor.edgeColor(2, 0));
+    }
+
+}
@@ -1,12 +1,17 @@
 package signature.chemistry;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.Assert;
 
 import org.junit.Test;
 
 import signature.ColoredTree;
+import signature.RootSelectionStatistics;
 import signature.SymmetryClass;
 import signature.chemistry.AtomPermutor;
 import signature.chemistry.AtomSignature;
@@ -398,4 +403,49 @@ public class MoleculeSignatureTest {
         this.testCanonicalIsUnique(molecule);
     }
 
+    @Test
+    public void executorTest() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Molecule molecule = MoleculeFactory.sixCage();
+        MoleculeSignature sequential = new MoleculeSignature(molecule);
+        MoleculeSignature parallel = new MoleculeSignature(molecule);
+        parallel.setExecutor(executor);
+        Assert.assertEquals(
+                sequential.toCanonicalString(), parallel.toCanonicalString());
+        Assert.assertEquals(
+                sequential.toFullString(), parallel.toFullString());
+        Assert.assertEquals(
+                sequential.getVertexSignatureStrings(), 
+                parallel.getVertexSignatureStrings());
+        Assert.assertEquals(
+                sequential.getSymmetryClasses().toString(), 
+                parallel.getSymmetryClasses().toString());
+        Assert.assertTrue(Arrays.equals(
+                sequential.getCanonicalLabels(), parallel.getCanonicalLabels()));
+        executor.shutdown();
+    }
+    
+    @Test
+    public void rootSelectionTest() {
+        // only the carbons have the smallest root key
+        Molecule molecule = new Molecule();
+        molecule.addAtom(0, "C");
+        molecule.addAtom(1, "N");
+        molecule.addAtom(2, "C");
+        molecule.addAtom(3, "O");
+        molecule.addAtom(4, "Cl");
+        molecule.addSingleBond(0, 1);
+        molecule.addSingleBond(1, 2);
+        molecule.addSingleBond(2, 3);
+        molecule.addSingleBond(2, 4);
+        MoleculeSignature signature = new MoleculeSignature(molecule);
+        String canonicalString = signature.toCanonicalString();
+        Assert.assertEquals(Collections.min(
+                signature.getVertexSignatureStrings()), canonicalString);
+        RootSelectionStatistics statistics = 
+            signature.getRootSelectionStatistics();
+        Assert.assertEquals(5, statistics.getRootCount());
+        Assert.assertEquals(2, statistics.getCanonizedRootCount());
+        Assert.assertEquals(3, statistics.getKeySkippedRootCount());
+    }
 }
@@ -0,0 +1,58 @@
+package signature.chemistry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import signature.chemistry.Molecule.BondOrder;
+
+public class MoleculeTest {
+
+    @Test
+    public void adjacencyFollowsBonds() {
+        Molecule molecule = new Molecule("C", 4);
+        molecule.addBond(0, 3, BondOrder.DOUBLE);
+        molecule.addSingleBond(0, 1);
+        Assert.assertArrayEquals(new int[] { 1, 3 }, molecule.getConnected(0));
+        Assert.assertEquals(3, molecule.getTotalOrder(0));
+        Assert.assertFalse(molecule.isConnected(1, 2));
+        Assert.assertEquals(BondOrder.NONE, molecule.getBondOrder(1, 2));
+
+        molecule.addBond(2, 1, BondOrder.TRIPLE);
+        Assert.assertArrayEquals(new int[] { 0, 2 }, molecule.getConnected(1));
+        Assert.assertTrue(molecule.isConnected(1, 2));
+        Assert.assertEquals(BondOrder.TRIPLE, molecule.getBondOrder(1, 2));
+        Assert.assertEquals(BondOrder.DOUBLE, molecule.getBondOrder(3, 0));
+        Assert.assertEquals(4, molecule.getTotalOrder(1));
+        Assert.assertArrayEquals(new int[] { 1 }, molecule.getConnected(2));
+    }
+
+    @Test
+    public void adjacencyOfPermutedCopy() {
+        Molecule molecule = MoleculeFactory.methylatedCyclobutane();
+        Molecule copy = new Molecule(molecule, new int[] { 4, 3, 2, 1, 0 });
+        for (int i = 0; i < molecule.getAtomCount(); i++) {
+            Assert.assertEquals(
+                    molecule.getConnected(i).length, 
+                    copy.getConnected(4 - i).length);
+        }
+    }
+
+    @Test
+    public void changedBondOrderIsSeen() {
+        Molecule molecule = new Molecule();
+        molecule.addAtom("C");
+        molecule.addAtom("O");
+        molecule.addSingleBond(0, 1);
+        Assert.assertEquals("[C]([O])", 
+                new MoleculeSignature(molecule).signatureStringForVertex(0));
+        Assert.assertEquals(1, molecule.getTotalOrder(0));
+
+        // the same number of bonds, but a different order
+        molecule.bonds().get(0).order = BondOrder.DOUBLE;
+        Assert.assertEquals(BondOrder.DOUBLE, molecule.getBondOrder(0, 1));
+        Assert.assertEquals(2, molecule.getTotalOrder(0));
+        Assert.assertEquals("[C](=[O])", 
+                new MoleculeSignature(molecule).signatureStringForVertex(0));
+    }
+
+}
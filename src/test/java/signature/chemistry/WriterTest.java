@@ -1,5 +1,12 @@
 package signature.chemistry;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
 import org.junit.Test;
 
 import signature.chemistry.Molecule.BondOrder;
@@ -18,5 +25,31 @@ public class WriterTest {
        // TODO : test this somehow...
 //       MoleculeWriter.writeToStream(System.out, mol);
     }
+    
+    @Test
+    public void signaturesToSDFTest() throws IOException {
+        Molecule mol = new Molecule();
+        mol.addAtom("C");
+        mol.addAtom("O");
+        mol.addAtom("N");
+        mol.addSingleBond(0, 1);
+        mol.addBond(0, 2, BondOrder.DOUBLE);
+        Molecule[] molecules = { 
+                mol, MoleculeFactory.sixCycle(), MoleculeFactory.propellane() };
+        List<String> signatures = new ArrayList<String>();
+        for (Molecule molecule : molecules) {
+            signatures.add(new MoleculeSignature(molecule).toCanonicalString());
+        }
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new MoleculeBuilder().writeSDFToStream(signatures, out);
+        List<Molecule> readBack = MoleculeReader.readSDFfromStream(
+                new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(molecules.length, readBack.size());
+        for (int i = 0; i < molecules.length; i++) {
+            Assert.assertEquals(signatures.get(i), 
+                    new MoleculeSignature(readBack.get(i)).toCanonicalString());
+        }
+    }
 
 }
@@ -2,9 +2,14 @@ package signature.edgecolored;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.junit.Assert;
 import org.junit.Test;
 
+import signature.RootSelectionStatistics;
+
 public class BasicTests {
     
     @SuppressWarnings("serial")
@@ -27,5 +32,64 @@ public class BasicTests {
             System.out.println(i + "\t" + graphSignature.signatureStringForVertex(i));
         }
     }
-    
+
+    @Test
+    public void executorTest() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        EdgeColoredGraph g = new EdgeColoredGraph();
+        g.makeEdge(0, 1, "r");
+        g.makeEdge(1, 2, "b");
+        g.makeEdge(2, 3, "r");
+        g.makeEdge(3, 0, "b");
+        EdgeColoredGraphSignature sequential = 
+            new EdgeColoredGraphSignature(g, colorMap);
+        EdgeColoredGraphSignature parallel = 
+            new EdgeColoredGraphSignature(g, colorMap);
+        parallel.setExecutor(executor);
+        Assert.assertEquals(
+                sequential.toFullString(), parallel.toFullString());
+        executor.shutdown();
+    }
+
+    @Test
+    public void frozenGraph() {
+        EdgeColoredGraph g = new EdgeColoredGraph();
+        g.makeEdge(0, 1, "r");
+        g.makeEdge(1, 2, "b");
+        g.makeEdge(2, 3, "r");
+        g.makeEdge(3, 0, "b");
+        g.makeEdge(0, 2, "b");
+        FrozenEdgeColoredGraph frozen = g.freeze();
+        Assert.assertEquals("b", frozen.getEdgeLabel(2, 1));
+        Assert.assertNull(frozen.getEdgeLabel(1, 3));
+        Assert.assertEquals(
+                "[0-1(r), 0-2(b), 0-3(b), 1-2(b), 2-3(r)]", frozen.toString());
+        Assert.assertEquals(
+                new EdgeColoredGraphSignature(g, colorMap).toCanonicalString(),
+                new EdgeColoredGraphSignature(frozen, colorMap).toCanonicalString());
+    }
+
+    @Test
+    public void rootSelection() {
+        EdgeColoredGraph g = new EdgeColoredGraph();
+        g.makeEdge(0, 1, "r");
+        g.makeEdge(1, 2, "b");
+        g.makeEdge(2, 0, "r");
+        
+        // an isolated vertex has the smallest key, so it is the only root
+        g.maxVertexIndex = 3;
+        EdgeColoredGraphSignature signature = 
+            new EdgeColoredGraphSignature(g, colorMap);
+        Assert.assertEquals("[.]", signature.toCanonicalString());
+        RootSelectionStatistics statistics = 
+            signature.getRootSelectionStatistics();
+        Assert.assertEquals(1, statistics.getCanonizedRootCount());
+        Assert.assertEquals(3, statistics.getKeySkippedRootCount());
+        
+        // without it, every vertex has the same key
+        g.maxVertexIndex = 2;
+        signature.toCanonicalString();
+        Assert.assertEquals(0, 
+                signature.getRootSelectionStatistics().getKeySkippedRootCount());
+    }
 }
@@ -1,15 +1,22 @@
 package signature.simple;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.Assert;
 
 import org.junit.Ignore;
 import org.junit.Test;
 
+import signature.CanonicalResult;
+import signature.RootSelectionStatistics;
 import signature.SymmetryClass;
 
 public class CanonicalLabellingTest {
@@ -115,4 +122,130 @@ public class CanonicalLabellingTest {
         Assert.assertEquals(sigA.toCanonicalString(), sigB.toCanonicalString());
     }
     
+    public void canonicalResultTest(SimpleGraph graph) {
+        SimpleGraphPermutor permutor = new SimpleGraphPermutor(graph);
+        Set<String> relabelledStrings = new HashSet<String>();
+        while (permutor.hasNext()) {
+            SimpleGraph permutation = permutor.next();
+            SimpleGraphSignature signature = new SimpleGraphSignature(permutation);
+            CanonicalResult result = signature.toCanonicalResult();
+            Assert.assertEquals(
+                    signature.toCanonicalString(), result.getSignature());
+            
+            // the labels follow the string, as the reconstruction does
+            SimpleGraph relabelled = 
+                new SimpleGraph(permutation, result.getLabels());
+            SimpleGraph reconstructed = 
+                new SimpleGraphBuilder().fromSignature(result.getSignature());
+            Assert.assertEquals(
+                    sortedEdges(reconstructed), sortedEdges(relabelled));
+            relabelledStrings.add(sortedEdges(relabelled));
+            
+            // the orbits are the symmetry classes
+            List<SymmetryClass> classes = signature.getSymmetryClasses();
+            Assert.assertEquals(classes.size(), result.getOrbits().size());
+            for (SymmetryClass symmetryClass : classes) {
+                int representative = symmetryClass.iterator().next();
+                for (int i : symmetryClass) {
+                    Assert.assertEquals(
+                            representative, result.getOrbitRepresentative(i));
+                }
+            }
+        }
+        Assert.assertEquals(1, relabelledStrings.size());
+    }
+    
+    private String sortedEdges(SimpleGraph graph) {
+        List<String> edges = new ArrayList<String>();
+        for (int i = 0; i < graph.getVertexCount(); i++) {
+            for (int j : graph.getConnected(i)) {
+                if (i < j) edges.add(i + ":" + j);
+            }
+        }
+        Collections.sort(edges);
+        return edges.toString();
+    }
+    
+    @Test
+    public void canonicalResultForCyclesTest() {
+        canonicalResultTest(new SimpleGraph("0:1,0:3,1:2,2:3"));
+        canonicalResultTest(new SimpleGraph("0:1,0:2,1:2,1:3,2:4,3:4"));
+    }
+    
+    @Test
+    public void canonicalResultForPrismTest() {
+        canonicalResultTest(SimpleGraphFactory.makePrism(3));
+    }
+    
+    @Test
+    public void canonicalResultSkipsRootsTest() {
+        SimpleGraph graph = SimpleGraphFactory.makePrism(4);
+        SimpleGraphSignature signature = new SimpleGraphSignature(graph);
+        CanonicalResult result = signature.toCanonicalResult();
+        RootSelectionStatistics statistics = 
+            signature.getRootSelectionStatistics();
+        Assert.assertTrue(statistics.getOrbitSkippedRootCount() 
+                + statistics.getBoundCutRootCount() > 0);
+        Assert.assertEquals(1, result.getOrbits().size());
+        
+        // the same root and labels, whatever order the roots finish in
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            signature.setExecutor(executor);
+            CanonicalResult parallelResult = signature.toCanonicalResult();
+            Assert.assertEquals(
+                    result.getSignature(), parallelResult.getSignature());
+            Assert.assertEquals(result.getRoot(), parallelResult.getRoot());
+            Assert.assertTrue(Arrays.equals(
+                    result.getLabels(), parallelResult.getLabels()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    public void canonicalResultForComponentsTest() {
+        SimpleGraph graph = new SimpleGraph("0:1,0:2,1:2,3:4,3:5,4:5");
+        CanonicalResult result = 
+            new SimpleGraphSignature(graph).toCanonicalResult();
+        Assert.assertEquals(0, result.getRoot());
+        
+        // the components are joined by the roots with the canonical string
+        Assert.assertEquals(1, result.getOrbits().size());
+    }
+    
+    @Test
+    public void canonicalResultOrbitsTest() {
+        SimpleGraph graph = 
+            new SimpleGraph("0:1,0:2,0:3,0:5,0:6,1:2,1:3,1:4,1:5,1:6,2:4");
+        SimpleGraphSignature signature = new SimpleGraphSignature(graph);
+        List<String> classes = new ArrayList<String>();
+        for (SymmetryClass symmetryClass : signature.getSymmetryClasses()) {
+            List<Integer> indices = new ArrayList<Integer>();
+            for (int i : symmetryClass) {
+                indices.add(i);
+            }
+            classes.add(indices.toString());
+        }
+        Assert.assertTrue(classes.contains("[3, 5, 6]"));
+        
+        // the orbits are the symmetry classes, with or without an executor
+        List<String> orbits = new ArrayList<String>();
+        for (int[] orbit : signature.toCanonicalResult().getOrbits()) {
+            orbits.add(Arrays.toString(orbit));
+        }
+        Assert.assertEquals(classes, orbits);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            signature.setExecutor(executor);
+            List<String> parallelOrbits = new ArrayList<String>();
+            for (int[] orbit : signature.toCanonicalResult().getOrbits()) {
+                parallelOrbits.add(Arrays.toString(orbit));
+            }
+            Assert.assertEquals(classes, parallelOrbits);
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
 }
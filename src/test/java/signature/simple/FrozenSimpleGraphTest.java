@@ -0,0 +1,56 @@
+package signature.simple;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FrozenSimpleGraphTest {
+    
+    @Test
+    public void queries() {
+        SimpleGraph graph = new SimpleGraph("0:1,0:2,0:3,2:3");
+        FrozenSimpleGraph frozen = graph.freeze();
+        Assert.assertEquals(4, frozen.getVertexCount());
+        Assert.assertEquals(4, frozen.getEdgeCount());
+        Assert.assertEquals(3, frozen.degree(0));
+        Assert.assertArrayEquals(new int[] { 0, 3 }, frozen.getConnected(2));
+        Assert.assertTrue(frozen.isConnected(3, 2));
+        Assert.assertFalse(frozen.isConnected(1, 2));
+        Assert.assertEquals("[0-1, 0-2, 0-3, 2-3]", frozen.toString());
+    }
+    
+    @Test
+    public void sameSignaturesAsMutable() {
+        SimpleGraph graph = 
+            new SimpleGraph("0:1,0:5,1:2,2:3,3:4,4:5,0:3,1:6,6:7,7:2");
+        FrozenSimpleGraph frozen = graph.freeze();
+        SimpleGraphSignature mutableSignature = new SimpleGraphSignature(graph);
+        SimpleGraphSignature frozenSignature = new SimpleGraphSignature(frozen);
+        Assert.assertEquals(mutableSignature.toCanonicalString(), 
+                frozenSignature.toCanonicalString());
+        for (int i = 0; i < graph.getVertexCount(); i++) {
+            Assert.assertEquals(
+                    new SimpleVertexSignature(i, 2, graph).toCanonicalString(),
+                    new SimpleVertexSignature(i, 2, frozen).toCanonicalString());
+        }
+    }
+    
+    @Test
+    public void mutableSignatureFollowsChanges() {
+        SimpleGraph graph = new SimpleGraph("0:1,1:2,2:3");
+        FrozenSimpleGraph frozen = graph.freeze();
+        SimpleGraphSignature signature = new SimpleGraphSignature(graph);
+        String path = signature.toCanonicalString();
+        
+        // the same number of edges, but a star instead of a path
+        graph.edges.get(1).a = 0;
+        graph.edges.get(1).b = 2;
+        graph.edges.get(2).a = 0;
+        String star = signature.toCanonicalString();
+        Assert.assertFalse(path.equals(star));
+        Assert.assertEquals(star, 
+                new SimpleGraphSignature(graph.freeze()).toCanonicalString());
+        Assert.assertEquals(path, 
+                new SimpleGraphSignature(frozen).toCanonicalString());
+    }
+
+}
@@ -39,4 +39,26 @@ public class ReconstructionTest {
         System.out.println(tmp2);
     }
     
+    @Test
+    public void streamingSameAsTreeTest() {
+        SimpleGraph[] graphs = {
+                SimpleGraphFactory.makeBowtieane(),
+                SimpleGraphFactory.make26Fullerene(),
+                SimpleGraphFactory.makePetersensGraph()
+        };
+        SimpleGraphBuilder builder = new SimpleGraphBuilder();
+        for (SimpleGraph graph : graphs) {
+            SimpleGraphSignature signature = new SimpleGraphSignature(graph);
+            for (int i = 0; i < graph.getVertexCount(); i++) {
+                String signatureString = signature.signatureStringForVertex(i);
+                SimpleGraph fromTree = builder.fromTree(
+                        AbstractVertexSignature.parse(signatureString));
+                SimpleGraph streamed = builder.fromSignature(signatureString);
+                Assert.assertEquals(fromTree.toString(), streamed.toString());
+                Assert.assertEquals(
+                        graph.getVertexCount(), streamed.getVertexCount());
+            }
+        }
+    }
+    
 }
@@ -1,10 +1,20 @@
 package signature.simple;
 
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
 
+import signature.CanonicalBound;
+import signature.CanonicalResult;
 import signature.ColoredTree;
+import signature.OrbitPartition;
+import signature.RootSelectionStatistics;
+import signature.SignatureWorkspace;
 import signature.simple.SimpleGraph;
 import signature.simple.SimpleGraphBuilder;
 import signature.simple.SimpleGraphSignature;
@@ -60,4 +70,233 @@ public class SimpleGraphTest {
         }
     }
 	
+    @Test
+    public void automorphismPruningTest() {
+        SimpleGraph g = SimpleGraphFactory.make4Cube();
+        SimpleVertexSignature full = new SimpleVertexSignature(0, g);
+        full.setUsingAutomorphisms(false);
+        SimpleVertexSignature pruned = new SimpleVertexSignature(0, g);
+        Assert.assertEquals(full.toCanonicalString(), pruned.toCanonicalString());
+        Assert.assertEquals(0, full.getStatistics().getPrunedBranchCount());
+        Assert.assertTrue(pruned.getStatistics().getAutomorphismCount() > 0);
+        Assert.assertTrue(pruned.getStatistics().getPrunedBranchCount() > 0);
+        Assert.assertTrue(pruned.getStatistics().getLeafCount()
+                < full.getStatistics().getLeafCount());
+    }
+
+    @Test
+    public void parallelCanonizationTest() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        SimpleGraph g = SimpleGraphFactory.make4Cube();
+        for (int i = 0; i < g.getVertexCount(); i++) {
+            SimpleVertexSignature sequential = new SimpleVertexSignature(i, g);
+            SimpleVertexSignature parallel = new SimpleVertexSignature(i, g);
+            parallel.setParallelDepth(2);
+            Assert.assertEquals(sequential.toCanonicalString(), 
+                                parallel.toCanonicalString(pool));
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void executorTest() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        SimpleGraph g = SimpleGraphFactory.makePetersensGraph();
+        SimpleGraphSignature sequential = new SimpleGraphSignature(g);
+        SimpleGraphSignature parallel = new SimpleGraphSignature(g);
+        parallel.setExecutor(executor);
+        Assert.assertEquals(
+                sequential.toCanonicalString(), parallel.toCanonicalString());
+        Assert.assertEquals(
+                sequential.getSymmetryClasses().toString(), 
+                parallel.getSymmetryClasses().toString());
+        executor.shutdown();
+    }
+
+    @Test
+    public void workspaceTest() {
+        // released DAGs are built again for graphs of different sizes
+        SimpleGraph[] graphs = new SimpleGraph[] {
+                SimpleGraphFactory.makePetersensGraph(),
+                SimpleGraphFactory.makePrism(3),
+                SimpleGraphFactory.make4Cube() };
+        SignatureWorkspace workspace = SignatureWorkspace.getWorkspace();
+        workspace.resetCounts();
+        for (SimpleGraph g : graphs) {
+            SimpleGraphSignature graphSignature = new SimpleGraphSignature(g);
+            for (int i = 0; i < g.getVertexCount(); i++) {
+                for (int height = 1; height <= 3; height++) {
+                    String expected = 
+                        new SimpleVertexSignature(i, height, g).toCanonicalString();
+                    Assert.assertEquals(expected, 
+                            graphSignature.signatureStringForVertex(i, height));
+                }
+            }
+        }
+        Assert.assertTrue(workspace.getReusedDAGCount() > 0);
+    }
+
+    @Test
+    public void deepChainTest() throws InterruptedException {
+        // a long chain, printed and rebuilt on a thread with a small stack
+        final SimpleGraph chain = new SimpleGraph();
+        final int length = 2000;
+        for (int i = 0; i < length - 1; i++) {
+            chain.makeEdge(i, i + 1);
+        }
+        final String[] result = new String[2];
+        final int[] rebuiltCount = new int[1];
+        Thread thread = new Thread(null, new Runnable() {
+            public void run() {
+                SimpleVertexSignature signature = 
+                    new SimpleVertexSignature(0, chain);
+                String signatureString = signature.toCanonicalString();
+                ColoredTree tree = 
+                    SimpleVertexSignature.parse(signatureString);
+                SimpleGraph rebuilt = new SimpleGraphBuilder().fromTree(tree);
+                result[0] = signatureString;
+                result[1] = tree.toString();
+                rebuiltCount[0] = rebuilt.getVertexCount();
+            }
+        }, "deep", 128 * 1024);
+        thread.start();
+        thread.join();
+        Assert.assertNotNull(result[0]);
+        Assert.assertEquals(result[0], result[1]);
+        Assert.assertEquals(length, rebuiltCount[0]);
+    }
+    
+    @Test
+    public void orbitSymmetryClassesTest() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        SimpleGraph[] graphs = {
+                SimpleGraphFactory.make4Cube(),
+                SimpleGraphFactory.make26Fullerene(),
+                SimpleGraphFactory.makePetersensGraph(),
+                SimpleGraphFactory.makeTwistane(),
+                SimpleGraphFactory.makeDiSpiroOctane()
+        };
+        for (SimpleGraph graph : graphs) {
+            SimpleGraphSignature byOrbits = new SimpleGraphSignature(graph);
+            
+            // with an executor, every vertex is canonized
+            SimpleGraphSignature byStrings = new SimpleGraphSignature(graph);
+            byStrings.setExecutor(executor);
+            Assert.assertEquals(byStrings.getSymmetryClasses().toString(), 
+                    byOrbits.getSymmetryClasses().toString());
+        }
+        executor.shutdown();
+    }
+    
+    @Test
+    public void automorphismsTest() {
+        SimpleGraph cube = SimpleGraphFactory.make4Cube();
+        int n = cube.getVertexCount();
+        SimpleVertexSignature signature = new SimpleVertexSignature(0, cube);
+        signature.toCanonicalString();
+        OrbitPartition orbits = new OrbitPartition(n);
+        for (int[] automorphism : signature.getAutomorphisms(n)) {
+            Assert.assertEquals(0, automorphism[0]);
+            for (int i = 0; i < n; i++) {
+                for (int j : cube.getConnected(i)) {
+                    Assert.assertTrue(
+                            cube.isConnected(automorphism[i], automorphism[j]));
+                }
+            }
+            orbits.addAutomorphism(automorphism);
+        }
+        
+        // the stabilizer of a vertex of the 4-cube fixes it, and moves its 
+        // neighbours, and the vertices at each distance, into one orbit
+        Assert.assertEquals(0, orbits.find(0));
+        Assert.assertEquals(5, orbits.getOrbitCount());
+    }
+    
+    @Test
+    public void automorphismsWithoutBranchingTest() {
+        SimpleGraph star = new SimpleGraph("0:1,0:2,0:3");
+        int n = star.getVertexCount();
+        
+        // the leaves of a star can be swapped, but a tree has no ties to 
+        // break, so the search never branches and finds no automorphisms
+        SimpleVertexSignature signature = new SimpleVertexSignature(0, star);
+        signature.toCanonicalString();
+        Assert.assertTrue(signature.getAutomorphisms(n).isEmpty());
+        CanonicalResult result = 
+            new SimpleGraphSignature(star).toCanonicalResult();
+        Assert.assertTrue(result.getAutomorphisms().isEmpty());
+        
+        // the orbits come from the strings as well, so they are still joined
+        Assert.assertEquals(2, result.getOrbits().size());
+        Assert.assertEquals(3, result.getOrbits().get(1).length);
+    }
+    
+    @Test
+    public void rootSelectionTest() {
+        SimpleGraph[] graphs = {
+                SimpleGraphFactory.make4Cube(),
+                SimpleGraphFactory.make26Fullerene(),
+                SimpleGraphFactory.makeTwistane()
+        };
+        for (SimpleGraph graph : graphs) {
+            SimpleGraphSignature signature = new SimpleGraphSignature(graph);
+            String canonicalString = signature.toCanonicalString();
+            Assert.assertEquals(Collections.min(
+                    signature.getVertexSignatureStrings()), canonicalString);
+            
+            // every vertex is canonized or skipped, and some are skipped or 
+            // cut
+            RootSelectionStatistics statistics = 
+                signature.getRootSelectionStatistics();
+            int n = graph.getVertexCount();
+            Assert.assertEquals(n, statistics.getRootCount());
+            Assert.assertEquals(n, statistics.getCanonizedRootCount()
+                    + statistics.getSkippedRootCount());
+            Assert.assertTrue(statistics.getOrbitSkippedRootCount()
+                    + statistics.getBoundCutRootCount() > 0);
+        }
+        
+        // an isolated vertex has the smallest key, so it is the only root
+        FrozenSimpleGraph triangle = new FrozenSimpleGraph(
+                4, new int[] { 0, 1, 0 }, new int[] { 1, 2, 2 });
+        SimpleGraphSignature signature = new SimpleGraphSignature(triangle);
+        Assert.assertEquals("[.]", signature.toCanonicalString());
+        Assert.assertEquals(1, 
+                signature.getRootSelectionStatistics().getCanonizedRootCount());
+        Assert.assertEquals(3, 
+                signature.getRootSelectionStatistics().getKeySkippedRootCount());
+    }
+    
+    @Test
+    public void boundedCanonizationTest() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        SimpleGraph graph = SimpleGraphFactory.makeTwistane();
+        SimpleGraphSignature sequential = new SimpleGraphSignature(graph);
+        SimpleGraphSignature parallel = new SimpleGraphSignature(graph);
+        parallel.setExecutor(executor);
+        String canonicalString = sequential.toCanonicalString();
+        Assert.assertEquals(canonicalString, parallel.toCanonicalString());
+        Assert.assertEquals(Collections.min(
+                sequential.getVertexSignatureStrings()), canonicalString);
+        Assert.assertTrue(
+                sequential.getRootSelectionStatistics().getBoundCutRootCount() > 0);
+        executor.shutdown();
+        
+        // a root is cut against a smaller string, and gives its string
+        // against an equal one
+        CanonicalBound bound = new CanonicalBound();
+        bound.offer(canonicalString);
+        for (int i = 0; i < graph.getVertexCount(); i++) {
+            SimpleVertexSignature signature = new SimpleVertexSignature(i, graph);
+            String signatureString = signature.toBoundedCanonicalString(bound);
+            String fullString = 
+                new SimpleVertexSignature(i, graph).toCanonicalString();
+            if (fullString.equals(canonicalString)) {
+                Assert.assertEquals(canonicalString, signatureString);
+            } else {
+                Assert.assertNull(signatureString);
+            }
+        }
+        Assert.assertEquals(canonicalString, bound.getSignature());
+    }
 }
@@ -277,5 +277,23 @@ public class SimpleQuotientGraphTest {
         checkParameters(quotientGraph, 6, 8, 2);
     }
     
+    @Test
+    public void edgesSameAsPairsTest() {
+        SimpleGraph[] graphs = { 
+                SimpleGraphFactory.make26Fullerene(),
+                SimpleGraphFactory.makeTricycloPropaIndene(),
+                SimpleGraphFactory.makeDiSpiroOctane(),
+                SimpleGraphFactory.makeTwistane()
+        };
+        for (SimpleGraph graph : graphs) {
+            SimpleQuotientGraph fromEdges = new SimpleQuotientGraph(graph);
+            SimpleQuotientGraph fromPairs = new SimpleQuotientGraph(graph) {
+                public int[] getConnected(int vertexIndex) {
+                    return null;
+                }
+            };
+            Assert.assertEquals(fromPairs.toString(), fromEdges.toString());
+        }
+    }
 
 }